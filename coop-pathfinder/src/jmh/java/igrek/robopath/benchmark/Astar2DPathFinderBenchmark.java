@@ -0,0 +1,64 @@
+package igrek.robopath.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.pathfinder.astar.Astar2DPathFinder;
+import igrek.robopath.pathfinder.astar.Path;
+
+/**
+ * Single 2D path searches between random free cells.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Astar2DPathFinderBenchmark {
+	
+	private static final int QUERIES = 64;
+	
+	@Param({"32", "128"})
+	public int mapSize;
+	
+	@Param({"0.0", "0.2"})
+	public double obstacleDensity;
+	
+	private int[][] queries;
+	private int next = 0;
+	private Astar2DPathFinder astar;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		TileMap map = BenchmarkMaps.randomObstacles(mapSize, obstacleDensity, random);
+		queries = BenchmarkMaps.randomQueries(map, QUERIES, random);
+		astar = new Astar2DPathFinder(map);
+	}
+	
+	private int[] nextQuery() {
+		next = (next + 1) % QUERIES;
+		return queries[next];
+	}
+	
+	@Benchmark
+	public Path findPath() {
+		int[] q = nextQuery();
+		return astar.findPath(q[0], q[1], q[2], q[3]);
+	}
+	
+}
@@ -0,0 +1,57 @@
+package igrek.robopath.benchmark;
+
+import java.util.Random;
+
+import igrek.robopath.common.Point;
+import igrek.robopath.common.TileMap;
+
+/**
+ * Reproducible maps and queries for the benchmarks.
+ */
+public class BenchmarkMaps {
+	
+	public static final long SEED = 2017;
+	
+	private BenchmarkMaps() {
+	}
+	
+	/**
+	 * @param density fraction of the cells occupied by the obstacles
+	 */
+	public static TileMap randomObstacles(int size, double density, Random random) {
+		TileMap map = new TileMap(size, size);
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (random.nextDouble() < density)
+					map.setCell(x, y, true);
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * @return random free cell of the map
+	 */
+	public static Point randomFreeCell(TileMap map, Random random) {
+		while (true) {
+			int x = random.nextInt(map.getWidthInTiles());
+			int y = random.nextInt(map.getHeightInTiles());
+			if (!map.blocked(x, y))
+				return new Point(x, y);
+		}
+	}
+	
+	/**
+	 * @return pairs of random free cells: {sx, sy, tx, ty}
+	 */
+	public static int[][] randomQueries(TileMap map, int count, Random random) {
+		int[][] queries = new int[count][];
+		for (int i = 0; i < count; i++) {
+			Point start = randomFreeCell(map, random);
+			Point target = randomFreeCell(map, random);
+			queries[i] = new int[]{start.x, start.y, target.x, target.y};
+		}
+		return queries;
+	}
+	
+}
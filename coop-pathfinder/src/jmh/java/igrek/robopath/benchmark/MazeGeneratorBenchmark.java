@@ -0,0 +1,49 @@
+package igrek.robopath.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.mazegenerator.MazeGenerator;
+
+/**
+ * Maze generation on a new map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MazeGeneratorBenchmark {
+	
+	@Param({"21", "51", "101", "1001"})
+	public int mapSize;
+	
+	private MazeGenerator mazegen;
+	
+	@Setup
+	public void setup() {
+		mazegen = new MazeGenerator(new Random(BenchmarkMaps.SEED));
+	}
+	
+	@Benchmark
+	public TileMap generateMaze() {
+		TileMap map = new TileMap(mapSize, mapSize);
+		mazegen.generateMaze(map);
+		return map;
+	}
+	
+}
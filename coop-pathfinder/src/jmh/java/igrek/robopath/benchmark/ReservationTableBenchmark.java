@@ -0,0 +1,155 @@
+package igrek.robopath.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.common.Point;
+import igrek.robopath.common.TileMap;
+import igrek.robopath.pathfinder.whca.DenseReservationTable;
+import igrek.robopath.pathfinder.whca.Path;
+import igrek.robopath.pathfinder.whca.ReservationTable;
+import igrek.robopath.pathfinder.whca.RollingReservationTable;
+import igrek.robopath.pathfinder.whca.SparseReservationTable;
+import igrek.robopath.pathfinder.whca.TaggedReservationTable;
+
+/**
+ * Reservation table operations with the robots' paths (random walks) reserved.
+ * Dense table is rebuilt for each planning, tagged tables are cleared and reused.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationTableBenchmark {
+	
+	private static final int QUERIES = 1024;
+	
+	@Param({"dense", "sparse", "rolling"})
+	public String table;
+	
+	@Param({"64", "512"})
+	public int mapSize;
+	
+	@Param({"16", "64"})
+	public int timeDimension;
+	
+	@Param({"32"})
+	public int robots;
+	
+	private TileMap map;
+	private Path[] paths;
+	/** random nodes: {x, y, t} */
+	private int[][] nodes;
+	private ReservationTable reservations;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		map = BenchmarkMaps.randomObstacles(mapSize, 0.1, random);
+		paths = new Path[robots];
+		for (int i = 0; i < robots; i++) {
+			paths[i] = randomWalk(BenchmarkMaps.randomFreeCell(map, random), random);
+		}
+		nodes = new int[QUERIES][];
+		for (int i = 0; i < QUERIES; i++) {
+			nodes[i] = new int[]{random.nextInt(mapSize), random.nextInt(mapSize), random.nextInt(timeDimension)};
+		}
+		reservations = newTable();
+		reservePaths(reservations);
+	}
+	
+	private Path randomWalk(Point start, Random random) {
+		Path path = new Path();
+		int x = start.x;
+		int y = start.y;
+		for (int t = 0; t < timeDimension; t++) {
+			path.appendStep(x, y, t);
+			int nx = x + random.nextInt(3) - 1;
+			int ny = y + random.nextInt(3) - 1;
+			if (nx >= 0 && ny >= 0 && nx < mapSize && ny < mapSize && !map.blocked(nx, ny)) {
+				x = nx;
+				y = ny;
+			}
+		}
+		return path;
+	}
+	
+	private ReservationTable newTable() {
+		ReservationTable reservationTable;
+		switch (table) {
+			case "sparse":
+				reservationTable = new SparseReservationTable(mapSize, mapSize, timeDimension, robots);
+				break;
+			case "rolling":
+				reservationTable = new RollingReservationTable(mapSize, mapSize, timeDimension);
+				break;
+			default:
+				reservationTable = new DenseReservationTable(mapSize, mapSize, timeDimension);
+		}
+		reservationTable.setBlocked(map);
+		return reservationTable;
+	}
+	
+	private void reservePaths(ReservationTable reservationTable) {
+		for (int i = 0; i < paths.length; i++) {
+			if (reservationTable instanceof TaggedReservationTable) {
+				((TaggedReservationTable) reservationTable).replacePath(i, paths[i]);
+			} else {
+				for (int s = 0; s < paths[i].getLength(); s++) {
+					reservationTable.setBlocked(paths[i].getX(s), paths[i].getY(s), paths[i].getT(s));
+					reservationTable.setBlocked(paths[i].getX(s), paths[i].getY(s), paths[i].getT(s) + 1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * prepares the table for a new planning and reserves all the paths
+	 */
+	@Benchmark
+	public ReservationTable reserve() {
+		ReservationTable reservationTable = reservations;
+		if (reservationTable instanceof TaggedReservationTable) {
+			((TaggedReservationTable) reservationTable).clearReservations();
+		} else {
+			reservationTable = newTable();
+		}
+		reservePaths(reservationTable);
+		return reservationTable;
+	}
+	
+	@Benchmark
+	public int isBlocked() {
+		int blocked = 0;
+		for (int[] node : nodes) {
+			if (reservations.isBlocked(node[0], node[1], node[2]))
+				blocked++;
+		}
+		return blocked;
+	}
+	
+	@Benchmark
+	public int isFreeFrom() {
+		int free = 0;
+		for (int[] node : nodes) {
+			if (reservations.isFreeFrom(node[0], node[1], node[2]))
+				free++;
+		}
+		return free;
+	}
+	
+}
@@ -0,0 +1,71 @@
+package igrek.robopath.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.pathfinder.whca.DenseReservationTable;
+import igrek.robopath.pathfinder.whca.Path;
+import igrek.robopath.pathfinder.whca.WHCAPathFinder;
+
+/**
+ * Single space-time path searches between random free cells against static obstacles.
+ * Distance fields are cached - it measures the searches with the targets already known.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WHCAPathFinderBenchmark {
+	
+	private static final int QUERIES = 64;
+	
+	@Param({"32", "128"})
+	public int mapSize;
+	
+	@Param({"0.0", "0.2"})
+	public double obstacleDensity;
+	
+	@Param({"8", "32"})
+	public int timeDimension;
+	
+	private int[][] queries;
+	private int next = 0;
+	private WHCAPathFinder whca;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		TileMap map = BenchmarkMaps.randomObstacles(mapSize, obstacleDensity, random);
+		queries = BenchmarkMaps.randomQueries(map, QUERIES, random);
+		DenseReservationTable reservation = new DenseReservationTable(mapSize, mapSize, timeDimension);
+		reservation.setBlocked(map);
+		whca = new WHCAPathFinder(reservation, map);
+	}
+	
+	private int[] nextQuery() {
+		next = (next + 1) % QUERIES;
+		return queries[next];
+	}
+	
+	@Benchmark
+	public Path findPath() {
+		int[] q = nextQuery();
+		return whca.findPath(q[0], q[1], q[2], q[3]);
+	}
+	
+}
@@ -0,0 +1,67 @@
+package igrek.robopath.simulation.lra;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.benchmark.BenchmarkMaps;
+import igrek.robopath.mazegenerator.MazeGenerator;
+
+/**
+ * LRA* simulation steps on a maze (robots get new targets when they reach theirs, so the simulation doesn't end).
+ * Robots in the maze corridors block each other, so they're replanned often - A* from scratch vs incremental D* Lite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LRAControllerBenchmark {
+	
+	@Param({"31", "63"})
+	public int mapSize;
+	
+	@Param({"10", "40"})
+	public int robots;
+	
+	@Param({"ASTAR", "DSTAR_LITE"})
+	public LRAController.Planner planner;
+	
+	private LRAController controller;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		LRASimulationParams params = new LRASimulationParams();
+		params.mapSizeW = mapSize;
+		params.mapSizeH = mapSize;
+		params.robotsCount = robots;
+		params.robotAutoTarget = true;
+		controller = new LRAController(params);
+		controller.setRandom(random);
+		controller.setMazegen(new MazeGenerator(random));
+		controller.setPlanner(planner);
+		controller.generateMaze();
+		controller.placeRobots();
+		controller.randomTargetPressed();
+	}
+	
+	@Benchmark
+	public LRAController stepSimulation() {
+		controller.stepSimulation();
+		return controller;
+	}
+	
+}
@@ -0,0 +1,82 @@
+package igrek.robopath.simulation.whca;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.benchmark.BenchmarkMaps;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.pathfinder.whca.Path;
+
+/**
+ * Planning paths of all the robots (one simulation step replanning).
+ * Priorities promotion and time window scaling are disabled, so every invocation does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WHCAControllerBenchmark {
+	
+	@Param({"32", "128"})
+	public int mapSize;
+	
+	@Param({"0.0", "0.2"})
+	public double obstacleDensity;
+	
+	@Param({"5", "20"})
+	public int robots;
+	
+	@Param({"8", "16"})
+	public int timeDimension;
+	
+	@Param({"sequential", "parallel", "clustered"})
+	public String mode;
+	
+	private WHCAController controller;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		WHCASimulationParams params = new WHCASimulationParams();
+		params.mapSizeW = mapSize;
+		params.mapSizeH = mapSize;
+		params.robotsCount = robots;
+		params.timeDimension = timeDimension;
+		controller = new WHCAController(params);
+		controller.setRandom(random);
+		controller.setMazegen(new MazeGenerator(random));
+		controller.setPrioritiesPromotion(false);
+		controller.setTimeWindowScaling(false);
+		controller.setParallelPlanning(mode.equals("parallel"));
+		controller.setSpatialClustering(mode.equals("clustered"));
+		for (int x = 0; x < mapSize; x++) {
+			for (int y = 0; y < mapSize; y++) {
+				if (random.nextDouble() < obstacleDensity)
+					controller.getMap().setCell(x, y, true);
+			}
+		}
+		controller.placeRobots();
+		controller.randomTargetPressed();
+	}
+	
+	@Benchmark
+	public List<Path> findPaths() {
+		return controller.findPaths();
+	}
+	
+}
@@ -0,0 +1,72 @@
+package igrek.robopath.simulation.whca;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import igrek.robopath.benchmark.BenchmarkMaps;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.pathfinder.whca.Path;
+
+/**
+ * Planning paths of all the robots on a large map with a bounded heap -
+ * search state of the planners (also the parallel workers) mustn't depend on the map size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class WHCALargeMapBenchmark {
+	
+	@Param({"1000"})
+	public int mapSize;
+	
+	@Param({"100"})
+	public int robots;
+	
+	@Param({"32"})
+	public int timeDimension;
+	
+	@Param({"sequential", "parallel"})
+	public String mode;
+	
+	private WHCAController controller;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkMaps.SEED);
+		WHCASimulationParams params = new WHCASimulationParams();
+		params.mapSizeW = mapSize;
+		params.mapSizeH = mapSize;
+		params.robotsCount = robots;
+		params.timeDimension = timeDimension;
+		controller = new WHCAController(params);
+		controller.setRandom(random);
+		controller.setMazegen(new MazeGenerator(random));
+		controller.setPrioritiesPromotion(false);
+		controller.setTimeWindowScaling(false);
+		controller.setParallelPlanning(mode.equals("parallel"));
+		controller.placeRobots();
+		controller.randomTargetPressed();
+	}
+	
+	@Benchmark
+	public List<Path> findPaths() {
+		return controller.findPaths();
+	}
+	
+}
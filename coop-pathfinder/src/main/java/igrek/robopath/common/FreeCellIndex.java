@@ -0,0 +1,124 @@
+package igrek.robopath.common;
+
+import java.util.Random;
+
+/**
+ * Cells of the map, which are not blocked - neither by an obstacle nor by any of the occupants (e.g. robots).
+ * Free cells are kept in a dense array (swap-remove), so uniform random sampling takes O(1).
+ * Obstacles are followed by listening to the map changes, occupants have to be reported by {@link #occupy(Point)} and {@link #release(Point)}.
+ */
+public class FreeCellIndex implements TileMap.CellListener {
+	
+	private final TileMap map;
+	private final int width;
+	private final int height;
+	/** number of blockers (obstacle, occupants) of each cell */
+	private final int[] blockers;
+	/** free cells (y * width + x) */
+	private final int[] frees;
+	/** index of each cell in the frees array, -1 if it's blocked */
+	private final int[] positions;
+	private int size = 0;
+	
+	public FreeCellIndex(TileMap map) {
+		this.map = map;
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+		blockers = new int[width * height];
+		frees = new int[width * height];
+		positions = new int[width * height];
+		// the same order as in TileMap.foreach
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int cell = y * width + x;
+				positions[cell] = -1;
+				if (map.blocked(x, y)) {
+					blockers[cell] = 1;
+				} else {
+					add(cell);
+				}
+			}
+		}
+		map.addCellListener(this);
+	}
+	
+	/**
+	 * stops following the map changes
+	 */
+	public void detach() {
+		map.removeCellListener(this);
+	}
+	
+	@Override
+	public void cellChanged(int x, int y, boolean occupied) {
+		if (occupied) {
+			block(y * width + x);
+		} else {
+			unblock(y * width + x);
+		}
+	}
+	
+	public void occupy(Point point) {
+		if (valid(point))
+			block(point.y * width + point.x);
+	}
+	
+	public void release(Point point) {
+		if (valid(point))
+			unblock(point.y * width + point.x);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean isFree(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return false;
+		return positions[y * width + x] >= 0;
+	}
+	
+	/**
+	 * @return uniformly random free cell, null if there is no free cell
+	 */
+	public Point random(Random random) {
+		if (size == 0)
+			return null;
+		int cell = frees[random.nextInt(size)];
+		return new Point(cell % width, cell / width);
+	}
+	
+	private boolean valid(Point point) {
+		return point != null && point.x >= 0 && point.y >= 0 && point.x < width && point.y < height;
+	}
+	
+	private void block(int cell) {
+		if (blockers[cell]++ == 0)
+			remove(cell);
+	}
+	
+	private void unblock(int cell) {
+		if (blockers[cell] == 0)
+			return;
+		if (--blockers[cell] == 0)
+			add(cell);
+	}
+	
+	private void add(int cell) {
+		positions[cell] = size;
+		frees[size++] = cell;
+	}
+	
+	private void remove(int cell) {
+		int index = positions[cell];
+		int last = frees[--size];
+		frees[index] = last;
+		positions[last] = index;
+		positions[cell] = -1;
+	}
+	
+}
@@ -0,0 +1,200 @@
+package igrek.robopath.common;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of integer identifiers (e.g. cell indices) ordered by float keys, supporting
+ * decrease-key. Optional secondary keys break ties of the keys (e.g. D* Lite key pairs).
+ * Elements with equal keys are polled in the order they were (re)inserted, which
+ * reproduces the behaviour of a stable sorted open list.
+ */
+public class IndexedHeap {
+	
+	/** heap position -> element id */
+	private int[] heap;
+	/** element id -> heap position + 1 (0 - not in heap) */
+	private int[] positions;
+	/** element id -> key */
+	private float[] keys;
+	/** element id -> secondary key */
+	private float[] secondaryKeys;
+	/** element id -> insertion order, used to break ties between equal keys */
+	private long[] orders;
+	private int size = 0;
+	private long insertions = 0;
+	
+	public IndexedHeap(int capacity) {
+		heap = new int[Math.max(capacity, 1)];
+		positions = new int[Math.max(capacity, 1)];
+		keys = new float[Math.max(capacity, 1)];
+		secondaryKeys = new float[Math.max(capacity, 1)];
+		orders = new long[Math.max(capacity, 1)];
+	}
+	
+	/**
+	 * makes sure that ids from range [0, capacity) can be stored
+	 * @param capacity number of possible ids
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= positions.length)
+			return;
+		heap = Arrays.copyOf(heap, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		secondaryKeys = Arrays.copyOf(secondaryKeys, capacity);
+		orders = Arrays.copyOf(orders, capacity);
+	}
+	
+	public int capacity() {
+		return positions.length;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * removes all elements - costs O(size), not O(capacity)
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = 0;
+		}
+		size = 0;
+		insertions = 0;
+	}
+	
+	public boolean contains(int id) {
+		return positions[id] != 0;
+	}
+	
+	public float getKey(int id) {
+		return keys[id];
+	}
+	
+	public float getSecondaryKey(int id) {
+		return secondaryKeys[id];
+	}
+	
+	/**
+	 * Inserts an element or changes the key of already stored one.
+	 * In both cases the element is treated as the most recently inserted among equal keys.
+	 * @param id  element id
+	 * @param key new key
+	 */
+	public void push(int id, float key) {
+		push(id, key, 0);
+	}
+	
+	/**
+	 * Inserts an element or changes the keys of already stored one.
+	 * @param id           element id
+	 * @param key          new key
+	 * @param secondaryKey new secondary key, compared when the keys are equal
+	 */
+	public void push(int id, float key, float secondaryKey) {
+		keys[id] = key;
+		secondaryKeys[id] = secondaryKey;
+		orders[id] = insertions++;
+		int pos = positions[id] - 1;
+		if (pos < 0) {
+			pos = size++;
+			heap[pos] = id;
+			positions[id] = pos + 1;
+			siftUp(pos);
+		} else {
+			siftDown(siftUp(pos));
+		}
+	}
+	
+	/**
+	 * @return id of the element with the lowest key
+	 */
+	public int peek() {
+		if (size == 0)
+			throw new IllegalStateException("heap is empty");
+		return heap[0];
+	}
+	
+	/**
+	 * removes the element with the lowest key
+	 * @return removed element id
+	 */
+	public int poll() {
+		int top = peek();
+		removeAt(0);
+		return top;
+	}
+	
+	public void remove(int id) {
+		int pos = positions[id] - 1;
+		if (pos >= 0)
+			removeAt(pos);
+	}
+	
+	private void removeAt(int pos) {
+		int id = heap[pos];
+		positions[id] = 0;
+		size--;
+		if (pos == size)
+			return;
+		int last = heap[size];
+		heap[pos] = last;
+		positions[last] = pos + 1;
+		siftDown(siftUp(pos));
+	}
+	
+	private boolean less(int id1, int id2) {
+		float k1 = keys[id1];
+		float k2 = keys[id2];
+		if (k1 != k2)
+			return k1 < k2;
+		float s1 = secondaryKeys[id1];
+		float s2 = secondaryKeys[id2];
+		if (s1 != s2)
+			return s1 < s2;
+		return orders[id1] < orders[id2];
+	}
+	
+	private int siftUp(int pos) {
+		int id = heap[pos];
+		while (pos > 0) {
+			int parentPos = (pos - 1) >>> 1;
+			int parent = heap[parentPos];
+			if (!less(id, parent))
+				break;
+			heap[pos] = parent;
+			positions[parent] = pos + 1;
+			pos = parentPos;
+		}
+		heap[pos] = id;
+		positions[id] = pos + 1;
+		return pos;
+	}
+	
+	private int siftDown(int pos) {
+		int id = heap[pos];
+		int half = size >>> 1;
+		while (pos < half) {
+			int childPos = 2 * pos + 1;
+			int child = heap[childPos];
+			int rightPos = childPos + 1;
+			if (rightPos < size && less(heap[rightPos], child)) {
+				childPos = rightPos;
+				child = heap[childPos];
+			}
+			if (!less(child, id))
+				break;
+			heap[pos] = child;
+			positions[child] = pos + 1;
+			pos = childPos;
+		}
+		heap[pos] = id;
+		positions[id] = pos + 1;
+		return pos;
+	}
+}
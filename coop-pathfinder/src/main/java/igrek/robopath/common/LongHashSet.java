@@ -0,0 +1,140 @@
+package igrek.robopath.common;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive long keys - open addressing with linear probing, without boxing.
+ * Long.MIN_VALUE is reserved as the empty slot marker and can't be stored.
+ */
+public class LongHashSet {
+	
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private long[] slots;
+	private int mask;
+	private int size = 0;
+	
+	public LongHashSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 8) - 1) << 1;
+		slots = new long[capacity];
+		Arrays.fill(slots, EMPTY);
+		mask = capacity - 1;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @return approximate number of bytes occupied by the set
+	 */
+	public long getMemorySize() {
+		return 8L * slots.length;
+	}
+	
+	public boolean contains(long key) {
+		int i = slot(key);
+		while (true) {
+			long slotKey = slots[i];
+			if (slotKey == key)
+				return true;
+			if (slotKey == EMPTY)
+				return false;
+			i = (i + 1) & mask;
+		}
+	}
+	
+	/**
+	 * @return true if the key has been added, false if it was already present
+	 */
+	public boolean add(long key) {
+		if (key == EMPTY)
+			throw new IllegalArgumentException("key not allowed: " + key);
+		int i = slot(key);
+		while (true) {
+			long slotKey = slots[i];
+			if (slotKey == key)
+				return false;
+			if (slotKey == EMPTY)
+				break;
+			i = (i + 1) & mask;
+		}
+		slots[i] = key;
+		size++;
+		if (size > slots.length * LOAD_FACTOR)
+			rehash(slots.length * 2);
+		return true;
+	}
+	
+	/**
+	 * @return true if the key has been removed
+	 */
+	public boolean remove(long key) {
+		int i = slot(key);
+		while (true) {
+			long slotKey = slots[i];
+			if (slotKey == EMPTY)
+				return false;
+			if (slotKey == key)
+				break;
+			i = (i + 1) & mask;
+		}
+		// backward shift deletion - following keys of the cluster are moved to fill the gap
+		int gap = i;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			long next = slots[j];
+			if (next == EMPTY)
+				break;
+			int home = slot(next);
+			// key can be moved to the gap if its home slot is not between the gap and its position
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				slots[gap] = next;
+				gap = j;
+			}
+		}
+		slots[gap] = EMPTY;
+		size--;
+		return true;
+	}
+	
+	public void clear() {
+		if (size == 0)
+			return;
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+	
+	private int slot(long key) {
+		// 64-bit mix (murmur3 finalizer)
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+	
+	private void rehash(int capacity) {
+		long[] old = slots;
+		slots = new long[capacity];
+		Arrays.fill(slots, EMPTY);
+		mask = capacity - 1;
+		for (long key : old) {
+			if (key == EMPTY)
+				continue;
+			int i = slot(key);
+			while (slots[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = key;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package igrek.robopath.common;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive long keys to int values - open addressing with linear probing, without boxing.
+ * Long.MIN_VALUE is reserved as the empty slot marker and can't be used as a key.
+ */
+public class LongIntHashMap {
+	
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private final int missingValue;
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+	
+	/**
+	 * @param expectedSize expected number of entries
+	 * @param missingValue value returned for keys, which are not present
+	 */
+	public LongIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 8) - 1) << 1;
+		allocate(capacity);
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @return approximate number of bytes occupied by the map
+	 */
+	public long getMemorySize() {
+		return 12L * keys.length;
+	}
+	
+	public int get(long key) {
+		int i = slot(key);
+		while (true) {
+			long slotKey = keys[i];
+			if (slotKey == key)
+				return values[i];
+			if (slotKey == EMPTY)
+				return missingValue;
+			i = (i + 1) & mask;
+		}
+	}
+	
+	public boolean containsKey(long key) {
+		int i = slot(key);
+		while (true) {
+			long slotKey = keys[i];
+			if (slotKey == key)
+				return true;
+			if (slotKey == EMPTY)
+				return false;
+			i = (i + 1) & mask;
+		}
+	}
+	
+	/**
+	 * @return previous value or missing value if the key was not present
+	 */
+	public int put(long key, int value) {
+		if (key == EMPTY)
+			throw new IllegalArgumentException("key not allowed: " + key);
+		int i = slot(key);
+		while (true) {
+			long slotKey = keys[i];
+			if (slotKey == key) {
+				int previous = values[i];
+				values[i] = value;
+				return previous;
+			}
+			if (slotKey == EMPTY)
+				break;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if (size > keys.length * LOAD_FACTOR)
+			rehash(keys.length * 2);
+		return missingValue;
+	}
+	
+	/**
+	 * @return removed value or missing value if the key was not present
+	 */
+	public int remove(long key) {
+		int i = slot(key);
+		while (true) {
+			long slotKey = keys[i];
+			if (slotKey == EMPTY)
+				return missingValue;
+			if (slotKey == key)
+				break;
+			i = (i + 1) & mask;
+		}
+		int removed = values[i];
+		// backward shift deletion - following keys of the cluster are moved to fill the gap
+		int gap = i;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			long next = keys[j];
+			if (next == EMPTY)
+				break;
+			int home = slot(next);
+			// key can be moved to the gap if its home slot is not between the gap and its position
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = next;
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		keys[gap] = EMPTY;
+		size--;
+		return removed;
+	}
+	
+	public void clear() {
+		if (size == 0)
+			return;
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+	
+	private int slot(long key) {
+		// 64-bit mix (murmur3 finalizer)
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int k = 0; k < oldKeys.length; k++) {
+			long key = oldKeys[k];
+			if (key == EMPTY)
+				continue;
+			int i = slot(key);
+			while (keys[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = oldValues[k];
+		}
+	}
+}
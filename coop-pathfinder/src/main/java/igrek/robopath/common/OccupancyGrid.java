@@ -0,0 +1,102 @@
+package igrek.robopath.common;
+
+import java.util.Arrays;
+
+/**
+ * Occupants (e.g. robots indexes) of the map cells. Every occupant can be in one cell at a time.
+ * Occupants of a cell are kept in a linked list (through the occupants' indexes), so adding, counting
+ * and iterating take O(1) per occupant. Clearing takes O(touched cells).
+ */
+public class OccupancyGrid {
+	
+	public static final int NONE = -1;
+	
+	private final int width;
+	private final int height;
+	private final int[] counts;
+	/** first occupant of each cell */
+	private final int[] heads;
+	/** next occupant in the same cell */
+	private int[] nexts = new int[16];
+	/** cells, which have been occupied since the last clear */
+	private int[] touched = new int[16];
+	private int touchedSize = 0;
+	
+	public OccupancyGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		counts = new int[width * height];
+		heads = new int[width * height];
+		Arrays.fill(heads, NONE);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < touchedSize; i++) {
+			int cell = touched[i];
+			counts[cell] = 0;
+			heads[cell] = NONE;
+		}
+		touchedSize = 0;
+	}
+	
+	/**
+	 * @return number of the occupants in the cell, including the added one
+	 */
+	public int add(int x, int y, int occupant) {
+		int cell = y * width + x;
+		if (occupant >= nexts.length)
+			nexts = Arrays.copyOf(nexts, Math.max(nexts.length * 2, occupant + 1));
+		if (counts[cell] == 0) {
+			if (touchedSize == touched.length)
+				touched = Arrays.copyOf(touched, touched.length * 2);
+			touched[touchedSize++] = cell;
+		}
+		nexts[occupant] = heads[cell];
+		heads[cell] = occupant;
+		return ++counts[cell];
+	}
+	
+	public void remove(int x, int y, int occupant) {
+		int cell = y * width + x;
+		int previous = NONE;
+		for (int o = heads[cell]; o != NONE; o = nexts[o]) {
+			if (o == occupant) {
+				if (previous == NONE) {
+					heads[cell] = nexts[o];
+				} else {
+					nexts[previous] = nexts[o];
+				}
+				counts[cell]--;
+				return;
+			}
+			previous = o;
+		}
+	}
+	
+	public int count(int x, int y) {
+		return counts[y * width + x];
+	}
+	
+	/**
+	 * @return any occupant of the cell, NONE if it's empty
+	 */
+	public int first(int x, int y) {
+		return heads[y * width + x];
+	}
+	
+	/**
+	 * @return next occupant of the same cell, NONE if it's the last one
+	 */
+	public int next(int occupant) {
+		return nexts[occupant];
+	}
+	
+}
@@ -0,0 +1,226 @@
+package igrek.robopath.common;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of (x, y, t) steps packed in one int array - no objects per step.
+ * Paths are built by appending steps (e.g. from the target back to the start) and reversing once.
+ * Removing the first step is O(1), so it serves also as a queue of moves.
+ */
+public class PackedPath {
+	
+	/** ints per step: x, y, t */
+	private static final int STRIDE = 3;
+	
+	private int[] steps;
+	/** index of the first step in the array */
+	private int first = 0;
+	/** number of steps */
+	private int length = 0;
+	
+	public interface StepConsumer {
+		void accept(int x, int y, int t);
+	}
+	
+	public PackedPath() {
+		this(8);
+	}
+	
+	/**
+	 * @param capacity expected number of steps
+	 */
+	public PackedPath(int capacity) {
+		steps = new int[Math.max(capacity, 1) * STRIDE];
+	}
+	
+	/**
+	 * copy of the steps
+	 */
+	public PackedPath(PackedPath source) {
+		steps = Arrays.copyOfRange(source.steps, source.first * STRIDE, (source.first + Math.max(source.length, 1)) * STRIDE);
+		length = source.length;
+	}
+	
+	/**
+	 * Get the length of the path, i.e. the number of steps
+	 * @return The number of steps in this path
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	public boolean isEmpty() {
+		return length == 0;
+	}
+	
+	public int getX(int index) {
+		return steps[offset(index)];
+	}
+	
+	public int getY(int index) {
+		return steps[offset(index) + 1];
+	}
+	
+	public int getT(int index) {
+		return steps[offset(index) + 2];
+	}
+	
+	/**
+	 * @return position of the step in the array
+	 */
+	private int offset(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+		return (first + index) * STRIDE;
+	}
+	
+	/**
+	 * makes room for one more step at the end
+	 */
+	private void growTail() {
+		if ((first + length + 1) * STRIDE <= steps.length)
+			return;
+		if (first > 0) {
+			// move to the beginning (removed steps have left space)
+			System.arraycopy(steps, first * STRIDE, steps, 0, length * STRIDE);
+			first = 0;
+			if ((length + 1) * STRIDE <= steps.length)
+				return;
+		}
+		steps = Arrays.copyOf(steps, Math.max((length + 1) * STRIDE, steps.length * 2));
+	}
+	
+	/**
+	 * Append a step to the path - amortized O(1).
+	 */
+	public void appendStep(int x, int y, int t) {
+		growTail();
+		int i = (first + length) * STRIDE;
+		steps[i] = x;
+		steps[i + 1] = y;
+		steps[i + 2] = t;
+		length++;
+	}
+	
+	/**
+	 * Prepend a step to the path - O(n) unless some first steps have been removed before,
+	 * building paths backwards should use {@link #appendStep} and {@link #reverse()}.
+	 */
+	public void prependStep(int x, int y, int t) {
+		if (first == 0) {
+			growTail();
+			System.arraycopy(steps, 0, steps, STRIDE, length * STRIDE);
+			first = 1;
+		}
+		first--;
+		int i = first * STRIDE;
+		steps[i] = x;
+		steps[i + 1] = y;
+		steps[i + 2] = t;
+		length++;
+	}
+	
+	/**
+	 * removes the first step - O(1)
+	 */
+	public void removeFirst() {
+		if (length == 0)
+			throw new IndexOutOfBoundsException("path is empty");
+		length--;
+		first = length == 0 ? 0 : first + 1;
+	}
+	
+	/**
+	 * removes the steps after the first one
+	 */
+	public void keepFirst() {
+		if (length > 1)
+			length = 1;
+	}
+	
+	/**
+	 * reverses the order of steps
+	 */
+	public void reverse() {
+		int start = first * STRIDE;
+		for (int i = start, j = start + (length - 1) * STRIDE; i < j; i += STRIDE, j -= STRIDE) {
+			for (int k = 0; k < STRIDE; k++) {
+				int tmp = steps[i + k];
+				steps[i + k] = steps[j + k];
+				steps[j + k] = tmp;
+			}
+		}
+	}
+	
+	public void clear() {
+		first = 0;
+		length = 0;
+	}
+	
+	/**
+	 * Check if this path contains the given step
+	 * @return True if the path contains the given step
+	 */
+	public boolean contains(int x, int y, int t) {
+		int end = (first + length) * STRIDE;
+		for (int i = first * STRIDE; i < end; i += STRIDE) {
+			if (steps[i] == x && steps[i + 1] == y && steps[i + 2] == t)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * iterates over the steps without creating any objects
+	 */
+	public void forEachStep(StepConsumer consumer) {
+		int end = (first + length) * STRIDE;
+		for (int i = first * STRIDE; i < end; i += STRIDE) {
+			consumer.accept(steps[i], steps[i + 1], steps[i + 2]);
+		}
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o == null || o.getClass() != getClass())
+			return false;
+		PackedPath other = (PackedPath) o;
+		if (length != other.length)
+			return false;
+		for (int i = 0; i < length * STRIDE; i++) {
+			if (steps[first * STRIDE + i] != other.steps[other.first * STRIDE + i])
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = 1;
+		int end = (first + length) * STRIDE;
+		for (int i = first * STRIDE; i < end; i++) {
+			result = 31 * result + steps[i];
+		}
+		return result;
+	}
+	
+	/**
+	 * @return step as text, e.g. (x, y, t)
+	 */
+	protected String stepToString(int index) {
+		return "(" + getX(index) + ", " + getY(index) + ", " + getT(index) + ")";
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("[");
+		for (int i = 0; i < length; i++) {
+			if (i > 0)
+				s.append(", ");
+			s.append(stepToString(i));
+		}
+		return s.append("]").toString();
+	}
+}
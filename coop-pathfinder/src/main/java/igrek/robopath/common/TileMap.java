@@ -1,25 +1,32 @@
 package igrek.robopath.common;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TileMap {
 	
+	private static final AtomicLong versionSequence = new AtomicLong();
+	
 	private int width;
 	private int height;
 	/**
-	 * is blocked
+	 * is blocked - bitset of the cells in rows order: cell y * width + x is the bit (cell % 64) of the word (cell / 64),
+	 * bits after the last cell are always 0
+	 */
+	private long[] tiles;
+	/**
+	 * stamp of the map content, unique among all maps - changes with every modification
 	 */
-	private boolean[][] tiles;
+	private long version = versionSequence.incrementAndGet();
+	/** not copied with the map */
+	private List<CellListener> listeners = new ArrayList<>();
 	
 	public TileMap(int width, int height) {
 		this.width = width;
 		this.height = height;
-		tiles = new boolean[getWidthInTiles()][getHeightInTiles()];
-		for (int x = 0; x < tiles.length; x++) {
-			for (int y = 0; y < tiles[x].length; y++) {
-				tiles[x][y] = false;
-			}
-		}
+		tiles = new long[(width * height + 63) >>> 6];
 	}
 	
 	/**
@@ -29,20 +36,30 @@ public class TileMap {
 	public TileMap(TileMap source) {
 		this.width = source.width;
 		this.height = source.height;
-		tiles = new boolean[this.width][];
-		for (int x = 0; x < tiles.length; x++) {
-			tiles[x] = Arrays.copyOf(source.tiles[x], source.tiles[x].length);
-		}
+		this.version = source.version;
+		tiles = source.tiles.clone();
 	}
 	
 	public interface MapCellExecutor {
 		void execute(int x, int y, boolean occupied);
 	}
 	
+	public interface CellListener {
+		void cellChanged(int x, int y, boolean occupied);
+	}
+	
+	public void addCellListener(CellListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeCellListener(CellListener listener) {
+		listeners.remove(listener);
+	}
+	
 	public void foreach(MapCellExecutor executor) {
 		for (int x = 0; x < width; x++) {
 			for (int y = 0; y < height; y++) {
-				executor.execute(x, y, tiles[x][y]);
+				executor.execute(x, y, blocked(x, y));
 			}
 		}
 	}
@@ -50,7 +67,16 @@ public class TileMap {
 	public void setCell(int x, int y, boolean occupied) {
 		if (x < 0 || y < 0 || x >= getWidthInTiles() || y >= getHeightInTiles())
 			return;
-		tiles[x][y] = occupied;
+		if (blocked(x, y) != occupied) {
+			version = versionSequence.incrementAndGet();
+			flip(x, y);
+		}
+	}
+	
+	private void notifyListeners(int x, int y, boolean occupied) {
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).cellChanged(x, y, occupied);
+		}
 	}
 	
 	public void setCell(Point point, boolean occupied) {
@@ -60,13 +86,159 @@ public class TileMap {
 	public Boolean getCell(int x, int y) {
 		if (x < 0 || y < 0 || x >= getWidthInTiles() || y >= getHeightInTiles())
 			return null;
-		return tiles[x][y];
+		return blocked(x, y);
 	}
 	
 	public Boolean getCell(Point p) {
 		return getCell(p.x, p.y);
 	}
 	
+	/**
+	 * sets all cells (word by word if there are no listeners, otherwise they're notified in the same order as in foreach)
+	 */
+	public void fill(boolean occupied) {
+		if ((occupied ? countFreeCells() : countBlockedCells()) == 0)
+			return;
+		if (listeners.isEmpty()) {
+			Arrays.fill(tiles, occupied ? -1L : 0L);
+			if (occupied)
+				tiles[tiles.length - 1] &= lastWordMask();
+		} else {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					if (blocked(x, y) != occupied)
+						flip(x, y);
+				}
+			}
+		}
+		version = versionSequence.incrementAndGet();
+	}
+	
+	/**
+	 * copies the content of the map with the same size (word by word if there are no listeners)
+	 */
+	public void copyFrom(TileMap source) {
+		if (source.width != width || source.height != height)
+			throw new IllegalArgumentException("map sizes differ: " + source.width + "x" + source.height + " and " + width + "x" + height);
+		if (!contentEquals(source)) {
+			if (listeners.isEmpty()) {
+				System.arraycopy(source.tiles, 0, tiles, 0, tiles.length);
+			} else {
+				for (int x = 0; x < width; x++) {
+					for (int y = 0; y < height; y++) {
+						if (blocked(x, y) != source.blocked(x, y))
+							flip(x, y);
+					}
+				}
+			}
+		}
+		version = source.version;
+	}
+	
+	/**
+	 * changes the cell state and notifies the listeners (without changing the version)
+	 */
+	private void flip(int x, int y) {
+		int cell = y * width + x;
+		tiles[cell >>> 6] ^= 1L << cell;
+		notifyListeners(x, y, blocked(x, y));
+	}
+	
+	/**
+	 * @return bits of the cells in the last word
+	 */
+	private long lastWordMask() {
+		int cells = width * height;
+		return (cells & 63) == 0 ? -1L : (1L << cells) - 1;
+	}
+	
+	/**
+	 * @return true if the maps have the same size and the same obstacles
+	 */
+	public boolean contentEquals(TileMap other) {
+		return width == other.width && height == other.height && Arrays.equals(tiles, other.tiles);
+	}
+	
+	public int countBlockedCells() {
+		int count = 0;
+		for (long word : tiles) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+	
+	public int countFreeCells() {
+		return width * height - countBlockedCells();
+	}
+	
+	/**
+	 * @return x of the first free cell in the row y, starting from x (inclusive), -1 if there is none
+	 */
+	public int nextFreeInRow(int x, int y) {
+		return nextInRow(x, y, false);
+	}
+	
+	/**
+	 * @return x of the first blocked cell in the row y, starting from x (inclusive), -1 if there is none
+	 */
+	public int nextBlockedInRow(int x, int y) {
+		return nextInRow(x, y, true);
+	}
+	
+	private int nextInRow(int x, int y, boolean occupied) {
+		if (y < 0 || y >= height || x >= width)
+			return -1;
+		x = Math.max(x, 0);
+		int cell = y * width + x;
+		int rowEnd = (y + 1) * width;
+		int wordIndex = cell >>> 6;
+		// cells before the start are skipped
+		long word = (occupied ? tiles[wordIndex] : ~tiles[wordIndex]) & (-1L << cell);
+		while (true) {
+			if (word != 0) {
+				int found = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+				return found < rowEnd ? found - y * width : -1;
+			}
+			wordIndex++;
+			if (wordIndex << 6 >= rowEnd)
+				return -1;
+			word = occupied ? tiles[wordIndex] : ~tiles[wordIndex];
+		}
+	}
+	
+	/**
+	 * @return y of the first free cell in the column x, starting from y (inclusive), -1 if there is none
+	 */
+	public int nextFreeInColumn(int x, int y) {
+		if (x < 0 || x >= width)
+			return -1;
+		for (y = Math.max(y, 0); y < height; y++) {
+			if (!blocked(x, y))
+				return y;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return y of the first blocked cell in the column x, starting from y (inclusive), -1 if there is none
+	 */
+	public int nextBlockedInColumn(int x, int y) {
+		if (x < 0 || x >= width)
+			return -1;
+		for (y = Math.max(y, 0); y < height; y++) {
+			if (blocked(x, y))
+				return y;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return stamp of the current map content - maps with the same version have the same content
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
 	public int getWidthInTiles() {
 		return width;
 	}
@@ -76,13 +248,14 @@ public class TileMap {
 	}
 	
 	/**
-	 * Check if the given location is blocked
+	 * Check if the given location is blocked (without checking the map bounds)
 	 * @param x The x coordinate of the tile to check
 	 * @param y The y coordinate of the tile to check
 	 * @return True if the location is blocked
 	 */
 	public boolean blocked(int x, int y) {
-		return getCell(x, y);
+		int cell = y * width + x;
+		return (tiles[cell >>> 6] & (1L << cell)) != 0;
 	}
 	
 	@Override
@@ -90,7 +263,7 @@ public class TileMap {
 		StringBuilder sb = new StringBuilder("Map:\n");
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
-				if (tiles[x][y]) {
+				if (blocked(x, y)) {
 					sb.append("X");
 				} else {
 					sb.append(".");
@@ -100,4 +273,4 @@ public class TileMap {
 		}
 		return sb.toString();
 	}
-}
\ No newline at end of file
+}
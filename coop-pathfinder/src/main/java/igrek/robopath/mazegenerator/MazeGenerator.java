@@ -3,13 +3,18 @@ package igrek.robopath.mazegenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
-import igrek.robopath.common.Point;
 import igrek.robopath.common.TileMap;
 
+/**
+ * Maze growing from a random point: random unvisited point is connected with the closest (Manhattan metrics) visited point.
+ * Points are every second cell (lattice), the lists of unvisited / visited points are replaced with:
+ * a Fenwick tree of the unvisited points - picking the k-th unvisited point in O(log n),
+ * and the lattice of visit numbers - the closest visited point is searched in the growing rings around the point.
+ * The rings are small as soon as there are some visited points around, so the whole generation takes about O(n log n)
+ * and gives exactly the same maze as the lists (the same random numbers, the earliest visited point among the closest).
+ */
 @Component
 public class MazeGenerator {
 	
@@ -21,72 +26,132 @@ public class MazeGenerator {
 	}
 	
 	public void generateMaze(TileMap map) {
+		int width = map.getWidthInTiles();
+		int height = map.getHeightInTiles();
 		// set all blocked
-		for (int x = 0; x < map.getWidthInTiles(); x++) {
-			for (int y = 0; y < map.getHeightInTiles(); y++) {
-				map.setCell(x, y, true);
+		map.fill(true);
+		if (width <= 0 || height <= 0)
+			return;
+		//co drugi punkt należy do labiryntu - punkty (2 * i, 2 * j), numerowane w kolejności: i * rows + j
+		int columns = (width + 1) / 2;
+		int rows = (height + 1) / 2;
+		for (int i = 0; i < columns; i++) {
+			for (int j = 0; j < rows; j++) {
+				map.setCell(2 * i, 2 * j, false); //wypełnij pustym polem
 			}
 		}
-		//dwie pomocnicze listy do wygenerowania labiryntu
-		List<Point> unvisited = new ArrayList<>(); //lista nieodwiedzonych punktów w labiryncie do połączenia z odwiedzonymi punktami
-		List<Point> visited = new ArrayList<>(); //lista odwiedzonych i należących już do labiryntu
-		//dodaj co drugi punkt do listy odwiedzonych
-		for (int x = 0; x < map.getWidthInTiles(); x += 2) {
-			for (int y = 0; y < map.getHeightInTiles(); y += 2) {
-				unvisited.add(new Point(x, y));
-				map.setCell(x, y, false); //wypełnij pustym polem
-			}
-		}
-		//wylosuj jeden punkt z listy odwiedzonych - początek rozrostu labiryntu
-		int index = random.nextInt(unvisited.size()); //losuj numer od 0 do (liczba elementów na liście nieodwiedzonych)
-		Point current = unvisited.get(index); //wyciągnij element o tym numerze z listy
-		//i przepisz go z listy nieodwiedzonych do listy odwiedzonych
-		visited.add(current);
-		unvisited.remove(current);
+		UnvisitedPoints unvisited = new UnvisitedPoints(columns * rows);
+		//numery kolejnych odwiedzonych punktów (od 1), 0 - nieodwiedzony
+		int[] visitNumbers = new int[columns * rows];
+		//wylosuj jeden punkt - początek rozrostu labiryntu
+		int current = unvisited.remove(random.nextInt(unvisited.size()));
+		int visitedCount = 0;
+		visitNumbers[current] = ++visitedCount;
 		//połączenie punktów nieodwiedzonych z punktami odwiedzonymi
-		while (!unvisited.isEmpty()) { //dopóki są jeszcze nieodwiedzone punkty do połączenia
-			//wybierz pierwszy punkt: wylosuj dowolny punkt z listy nieodwiedzonych
-			index = random.nextInt(unvisited.size());
-			Point p1 = unvisited.get(index);
-			//połącz z najbliższym punktem na liście odwiedzonych
-			//wybierz drugi punkt jako wyznaczonego najbliższego sąsiada z listy odwiedzonych
-			Point p2 = getClosestFromVisited(p1, visited);
-			//połącz ze sobą wybrane 2 punkty: p1, p2
-			int p1x = p1.x; //aktualna pozycja w drodze między punktami
-			int p1y = p1.y;
-			while (p1x < p2.x) { //idź w prawo
+		while (unvisited.size() > 0) {
+			//wylosuj dowolny punkt z nieodwiedzonych
+			int p1 = unvisited.remove(random.nextInt(unvisited.size()));
+			//połącz z najbliższym punktem odwiedzonym
+			int p2 = closestVisited(p1, visitNumbers, columns, rows);
+			int p1x = 2 * (p1 / rows); //aktualna pozycja w drodze między punktami
+			int p1y = 2 * (p1 % rows);
+			int p2x = 2 * (p2 / rows);
+			int p2y = 2 * (p2 % rows);
+			while (p1x < p2x) { //idź w prawo
 				map.setCell(p1x, p1y, false); //wyburzenie ściany
 				p1x++;
 			}
-			while (p1x > p2.x) { //idź w lewo
-				map.setCell(p1x, p1y, false); //wyburzenie ściany
+			while (p1x > p2x) { //idź w lewo
+				map.setCell(p1x, p1y, false);
 				p1x--;
 			}
-			while (p1y < p2.y) { //idź w dół
-				map.setCell(p1x, p1y, false); //wyburzenie ściany
+			while (p1y < p2y) { //idź w dół
+				map.setCell(p1x, p1y, false);
 				p1y++;
 			}
-			while (p1y > p2.y) { //idź w górę
-				map.setCell(p1x, p1y, false); //wyburzenie ściany
+			while (p1y > p2y) { //idź w górę
+				map.setCell(p1x, p1y, false);
 				p1y--;
 			}
-			//przepisz punkt z listy nieodwiedzonych do odwiedzonych
-			visited.add(p1);
-			unvisited.remove(p1);
+			visitNumbers[p1] = ++visitedCount;
 		}
 	}
 	
-	private Point getClosestFromVisited(Point p1, List<Point> visited) {
-		Point minP = visited.get(0);
-		for (Point p2 : visited) {
-			if (distance(p1, p2) < distance(p1, minP)) // new minimum
-				minP = p2;
+	/**
+	 * @return the closest visited point (the earliest visited among the equally close), there must be any visited point
+	 */
+	private int closestVisited(int point, int[] visitNumbers, int columns, int rows) {
+		int pi = point / rows;
+		int pj = point % rows;
+		int maxDistance = columns + rows - 2;
+		for (int d = 1; d <= maxDistance; d++) {
+			int closest = -1;
+			// points in distance d: |di| + |dj| = d
+			for (int i = Math.max(pi - d, 0); i <= Math.min(pi + d, columns - 1); i++) {
+				int dj = d - Math.abs(i - pi);
+				closest = earlierVisited(closest, i, pj - dj, visitNumbers, rows);
+				if (dj != 0)
+					closest = earlierVisited(closest, i, pj + dj, visitNumbers, rows);
+			}
+			if (closest >= 0)
+				return closest;
 		}
-		return minP;
+		throw new NoNextFieldException("no visited point");
+	}
+	
+	private int earlierVisited(int closest, int i, int j, int[] visitNumbers, int rows) {
+		if (j < 0 || j >= rows)
+			return closest;
+		int point = i * rows + j;
+		if (visitNumbers[point] == 0)
+			return closest;
+		if (closest < 0 || visitNumbers[point] < visitNumbers[closest])
+			return point;
+		return closest;
 	}
 	
-	private int distance(Point p1, Point p2) {
-		// Manhattan metrics
-		return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+	/**
+	 * set of the points 0..n-1 in their order, with removing the k-th point in O(log n) (Fenwick tree of counts)
+	 */
+	private static class UnvisitedPoints {
+		
+		private final int[] tree;
+		private int size;
+		/** the highest power of 2 not greater than n */
+		private int topBit;
+		
+		UnvisitedPoints(int n) {
+			tree = new int[n + 1];
+			for (int i = 1; i <= n; i++) {
+				tree[i] = i & -i; // all points present
+			}
+			size = n;
+			topBit = Integer.highestOneBit(Math.max(n, 1));
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		/**
+		 * removes and returns the k-th (from 0) remaining point
+		 */
+		int remove(int k) {
+			// find the last position with less than k + 1 points before
+			int position = 0;
+			int remaining = k;
+			for (int bit = topBit; bit > 0; bit >>= 1) {
+				int next = position + bit;
+				if (next < tree.length && tree[next] <= remaining) {
+					position = next;
+					remaining -= tree[next];
+				}
+			}
+			for (int i = position + 1; i < tree.length; i += i & -i) {
+				tree[i]--;
+			}
+			size--;
+			return position;
+		}
 	}
 }
@@ -0,0 +1,231 @@
+package igrek.robopath.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers of the path planning, safe to update from many planning threads.
+ * Searches count their nodes locally and add them once per search, so the overhead is a few
+ * LongAdder updates per search, not per node.
+ * Exposed via JMX (as a Spring bean) and dumpable as CSV rows.
+ */
+public class PlanningMetrics implements PlanningMetricsMBean {
+	
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder nodesExpanded = new LongAdder();
+	private final LongAdder nodesGenerated = new LongAdder();
+	private final LongAdder heapOperations = new LongAdder();
+	private final LongAdder heuristicHits = new LongAdder();
+	private final LongAdder heuristicMisses = new LongAdder();
+	private final LongAdder reservationLookups = new LongAdder();
+	private final LongAdder plannedRobots = new LongAdder();
+	private final LongAdder robotPlanningNanos = new LongAdder();
+	private final LongAccumulator maxRobotPlanningNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder steps = new LongAdder();
+	private final LongAdder stepNanos = new LongAdder();
+	private final LongAdder replannedRobots = new LongAdder();
+	private final LongAdder collisionResets = new LongAdder();
+	private final LongAdder vertexConflicts = new LongAdder();
+	private final LongAdder swapConflicts = new LongAdder();
+	
+	/**
+	 * adds counters of one search
+	 * @param expanded nodes taken from the open list
+	 * @param generated nodes added (or updated) on the open list
+	 * @param lookups reservation table (or map) queries
+	 */
+	public void addSearch(int expanded, int generated, int lookups) {
+		searches.increment();
+		nodesExpanded.add(expanded);
+		nodesGenerated.add(generated);
+		heapOperations.add(expanded + generated);
+		reservationLookups.add(lookups);
+	}
+	
+	public void addHeuristicHit() {
+		heuristicHits.increment();
+	}
+	
+	public void addHeuristicMiss() {
+		heuristicMisses.increment();
+	}
+	
+	public void addRobotPlanning(long nanos) {
+		plannedRobots.increment();
+		robotPlanningNanos.add(nanos);
+		maxRobotPlanningNanos.accumulate(nanos);
+	}
+	
+	/**
+	 * @param nanos           whole simulation step time
+	 * @param replanned       robots replanned in the step
+	 * @param collisionResets robots, which plans were reset due to collisions
+	 */
+	public void addStep(long nanos, int replanned, int collisionResets) {
+		steps.increment();
+		stepNanos.add(nanos);
+		replannedRobots.add(replanned);
+		this.collisionResets.add(collisionResets);
+	}
+	
+	/**
+	 * @param vertex cells, which robots were going to enter together (or while occupied by other robots)
+	 * @param swap   pairs of robots, which were going to swap their positions
+	 */
+	public void addConflicts(int vertex, int swap) {
+		vertexConflicts.add(vertex);
+		swapConflicts.add(swap);
+	}
+	
+	@Override
+	public long getSearches() {
+		return searches.sum();
+	}
+	
+	@Override
+	public long getNodesExpanded() {
+		return nodesExpanded.sum();
+	}
+	
+	@Override
+	public long getNodesGenerated() {
+		return nodesGenerated.sum();
+	}
+	
+	@Override
+	public long getHeapOperations() {
+		return heapOperations.sum();
+	}
+	
+	@Override
+	public long getHeuristicHits() {
+		return heuristicHits.sum();
+	}
+	
+	@Override
+	public long getHeuristicMisses() {
+		return heuristicMisses.sum();
+	}
+	
+	@Override
+	public long getReservationLookups() {
+		return reservationLookups.sum();
+	}
+	
+	@Override
+	public long getPlannedRobots() {
+		return plannedRobots.sum();
+	}
+	
+	@Override
+	public double getAverageRobotPlanningMicros() {
+		long planned = plannedRobots.sum();
+		return planned == 0 ? 0 : robotPlanningNanos.sum() / 1e3 / planned;
+	}
+	
+	@Override
+	public double getMaxRobotPlanningMicros() {
+		return maxRobotPlanningNanos.get() / 1e3;
+	}
+	
+	@Override
+	public long getSteps() {
+		return steps.sum();
+	}
+	
+	@Override
+	public double getAverageStepMillis() {
+		long stepsCount = steps.sum();
+		return stepsCount == 0 ? 0 : stepNanos.sum() / 1e6 / stepsCount;
+	}
+	
+	@Override
+	public long getReplannedRobots() {
+		return replannedRobots.sum();
+	}
+	
+	@Override
+	public long getCollisionResets() {
+		return collisionResets.sum();
+	}
+	
+	@Override
+	public long getVertexConflicts() {
+		return vertexConflicts.sum();
+	}
+	
+	@Override
+	public long getSwapConflicts() {
+		return swapConflicts.sum();
+	}
+	
+	@Override
+	public void reset() {
+		searches.reset();
+		nodesExpanded.reset();
+		nodesGenerated.reset();
+		heapOperations.reset();
+		heuristicHits.reset();
+		heuristicMisses.reset();
+		reservationLookups.reset();
+		plannedRobots.reset();
+		robotPlanningNanos.reset();
+		maxRobotPlanningNanos.reset();
+		steps.reset();
+		stepNanos.reset();
+		replannedRobots.reset();
+		collisionResets.reset();
+		vertexConflicts.reset();
+		swapConflicts.reset();
+	}
+	
+	/**
+	 * @return current values by names (in the CSV columns order)
+	 */
+	public Map<String, Number> snapshot() {
+		Map<String, Number> values = new LinkedHashMap<>();
+		values.put("searches", getSearches());
+		values.put("nodes_expanded", getNodesExpanded());
+		values.put("nodes_generated", getNodesGenerated());
+		values.put("heap_operations", getHeapOperations());
+		values.put("heuristic_hits", getHeuristicHits());
+		values.put("heuristic_misses", getHeuristicMisses());
+		values.put("reservation_lookups", getReservationLookups());
+		values.put("planned_robots", getPlannedRobots());
+		values.put("avg_robot_planning_us", getAverageRobotPlanningMicros());
+		values.put("max_robot_planning_us", getMaxRobotPlanningMicros());
+		values.put("steps", getSteps());
+		values.put("avg_step_ms", getAverageStepMillis());
+		values.put("replanned_robots", getReplannedRobots());
+		values.put("collision_resets", getCollisionResets());
+		values.put("vertex_conflicts", getVertexConflicts());
+		values.put("swap_conflicts", getSwapConflicts());
+		return values;
+	}
+	
+	public static String csvHeader() {
+		return String.join(",", new PlanningMetrics().snapshot().keySet());
+	}
+	
+	public String csvRow() {
+		StringBuilder row = new StringBuilder();
+		for (Number value : snapshot().values()) {
+			if (row.length() > 0)
+				row.append(',');
+			if (value instanceof Double) {
+				row.append(String.format(Locale.ROOT, "%.3f", value.doubleValue()));
+			} else {
+				row.append(value);
+			}
+		}
+		return row.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,41 @@
+package igrek.robopath.metrics;
+
+/**
+ * JMX view of the planning metrics
+ */
+public interface PlanningMetricsMBean {
+	
+	long getSearches();
+	
+	long getNodesExpanded();
+	
+	long getNodesGenerated();
+	
+	long getHeapOperations();
+	
+	long getHeuristicHits();
+	
+	long getHeuristicMisses();
+	
+	long getReservationLookups();
+	
+	long getPlannedRobots();
+	
+	double getAverageRobotPlanningMicros();
+	
+	double getMaxRobotPlanningMicros();
+	
+	long getSteps();
+	
+	double getAverageStepMillis();
+	
+	long getReplannedRobots();
+	
+	long getCollisionResets();
+	
+	long getVertexConflicts();
+	
+	long getSwapConflicts();
+	
+	void reset();
+}
@@ -3,27 +3,89 @@ package igrek.robopath.pathfinder.astar;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
+import igrek.robopath.common.IndexedHeap;
 import igrek.robopath.common.TileMap;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.pathfinder.rra.ReverseResumableAstar;
 
+/**
+ * A* search on 2D grid. Search state is kept in flat arrays indexed by cell (y * width + x),
+ * which are reused between queries - the instance can (and should) be reused for many searches.
+ * Arrays are not cleared between queries: each cell is stamped with a search generation number
+ * and cells with an outdated stamp are treated as not visited yet.
+ */
 public class Astar2DPathFinder {
 	
-	private Logger logger = LoggerFactory.getLogger(this.getClass());
+	private static final byte NEW = 0;
+	private static final byte OPEN = 1;
+	private static final byte CLOSED = 2;
 	
-	private List<Node> closed = new ArrayList<>();
-	private PriorityQueue<Node> open = new PriorityQueue<>();
-	private Node[][] nodes;
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	
 	private TileMap map;
+	/** obstacles, which are not on the map (e.g. other robots) */
+	private DynamicObstacles dynamicObstacles;
+	
+	/** The path cost for the node (g) */
+	private float[] costs = new float[0];
+	/** The heuristic cost of the node (h) */
+	private float[] heuristics = new float[0];
+	/** The parent cell of the node, how we reached it in the search */
+	private int[] parents = new int[0];
+	private byte[] states = new byte[0];
+	/** search generation, in which the cell was visited last time */
+	private int[] stamps = new int[0];
+	private int generation = 0;
+	private IndexedHeap open = new IndexedHeap(0);
+	/** optional distance field to the target on the static map, improving the heuristic */
+	private ReverseResumableAstar distanceField;
+	/** counters of the current search, added to the metrics when it's finished */
+	private PlanningMetrics metrics;
+	private int expandedCount;
+	private int generatedCount;
+	private int lookupsCount;
+	
+	/**
+	 * layer of obstacles over the static map - checked without copying the map
+	 */
+	public interface DynamicObstacles {
+		boolean blocked(int x, int y);
+	}
 	
 	public Astar2DPathFinder(TileMap map) {
 		this.map = map;
 	}
 	
+	public TileMap getMap() {
+		return map;
+	}
+	
+	/**
+	 * changes the searched map, search buffers are kept
+	 * @param map new map
+	 */
+	public void setMap(TileMap map) {
+		this.map = map;
+	}
+	
+	/**
+	 * @param dynamicObstacles cells blocked in addition to the map obstacles, may be null
+	 */
+	public void setDynamicObstacles(DynamicObstacles dynamicObstacles) {
+		this.dynamicObstacles = dynamicObstacles;
+	}
+	
+	/**
+	 * Sets distance field (computed on the static map) used as the heuristic for the searches to its target.
+	 * Map with additional obstacles (e.g. other robots) only makes the paths longer, so the heuristic stays admissible.
+	 * @param distanceField distance field or null - Euclidean distance only
+	 */
+	public void setDistanceField(ReverseResumableAstar distanceField) {
+		this.distanceField = distanceField;
+	}
+	
 	private int width() {
 		return map.getWidthInTiles();
 	}
@@ -32,110 +94,159 @@ public class Astar2DPathFinder {
 		return map.getHeightInTiles();
 	}
 	
+	/**
+	 * @param metrics metrics collecting the search counters, may be null
+	 */
+	public void setMetrics(PlanningMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
 	public Path findPath(int sx, int sy, int tx, int ty) {
-		// initial state for A*. The closed group is empty. Only the starting
-		// tile is in the open list and it'e're already there
-		closed.clear();
-		open.clear();
-		
-		nodes = new Node[width()][height()];
-		for (int x = 0; x < width(); x++) {
-			for (int y = 0; y < height(); y++) {
-				nodes[x][y] = new Node(x, y);
-				nodes[x][y].setCost(Float.MAX_VALUE);
-			}
-		}
-		
-		nodes[sx][sy].setCost(0);
-		nodes[sx][sy].setHeuristic(getHeuristicCost(sx, sy, tx, ty));
-		//Dodajemy pole startowe (lub węzeł) do Listy Otwartych.
-		open.add(nodes[sx][sy]);
-		
+		expandedCount = 0;
+		generatedCount = 0;
+		lookupsCount = 0;
+		Path path = search(sx, sy, tx, ty);
+		if (metrics != null)
+			metrics.addSearch(expandedCount, generatedCount, lookupsCount);
+		return path;
+	}
+	
+	private Path search(int sx, int sy, int tx, int ty) {
 		// first check, if the destination is blocked, we can't get there
-		if (map.blocked(tx, ty))
+		if (blocked(tx, ty))
 			return null;
 		//jeśli punkt docelowy jest punktem startowym - brak ścieżki
 		if (sx == tx && sy == ty)
 			return null;
 		
+		// initial state for A*. The closed group is empty. Only the starting
+		// tile is in the open list
+		nextGeneration();
+		int width = width();
+		int start = sy * width + sx;
+		int target = ty * width + tx;
+		touch(start);
+		costs[start] = 0;
+		heuristics[start] = getHeuristicCost(sx, sy, tx, ty);
+		//Dodajemy pole startowe (lub węzeł) do Listy Otwartych.
+		states[start] = OPEN;
+		open.push(start, heuristics[start]);
+		
 		//dopóki lista otwartych nie jest pusta
 		while (!open.isEmpty()) {
 			// pull out the first node in our open list, this is determined to
 			// be the most likely to be the next step based on our heuristic
 			//Szukamy pola o najniższej wartości F na Liście Otwartych. Czynimy je aktualnym polem
-			Node current = open.peek();
+			int current = open.poll();
+			expandedCount++;
 			//jeśli current jest węzłem docelowym
-			if (current.getX() == tx && current.getY() == ty) {
-				// At this point we've definitely found a path so we can uses the parent
-				// references of the nodes to find out way from the target location back
-				// to the start recording the nodes on the way.
-				//Zapisujemy ścieżkę. Krocząc w kierunku od pola docelowego do startowego, przeskakujemy z kolejnych pól na im przypisane pola rodziców, aż do osiągnięcia pola startowego.
-				Path path = new Path();
-				Node node = nodes[tx][ty];
-				while (node != nodes[sx][sy]) {
-					path.prependStep(node.getX(), node.getY());
-					node = node.getParent();
-					if (node == null) {
-						logger.error("node (parent) = null");
-					}
-				}
-				path.prependStep(sx, sy);
-				return path;
+			if (current == target) {
+				return buildPath(start, target);
 			}
 			//Aktualne pole przesuwamy do Listy Zamkniętych.
-			open.remove(current);
-			closed.add(current);
+			states[current] = CLOSED;
+			int cx = current % width;
+			int cy = current / width;
 			// search through all the neighbours of the current node evaluating
-			// them as next steps
-			//Dla każdego z wybranych przyległych pól (sasiad) do pola aktualnego
-			List<Node> neighbours = availableNeighbours(current);
-			for (Node neighbour : neighbours) {
-				
-				//jeśli NIE-MOŻNA go przejść, ignorujemy je.
-				if (!isValidLocation(sx, sy, neighbour.getX(), neighbour.getY()))
-					continue;
-				
-				if (!isValidMove(current.getX(), current.getY(), neighbour.getX(), neighbour.getY()))
-					continue;
-				
-				// the cost to get to this node is cost the current plus the movement
-				// cost to reach this node. Note that the heursitic value is only used
-				// in the sorted open list
-				float newCost = current.getCost() + getMovementCost(current.getX(), current.getY(), neighbour
-						.getX(), neighbour.getY());
-				
-				// if the new cost we've determined for this node is lower than
-				// it has been previously makes sure the node hasn'e've
-				// determined that there might have been a better path to get to
-				// this node so it needs to be re-evaluated
-				if (newCost < neighbour.getCost()) {
-					if (open.contains(neighbour))
-						open.remove(neighbour);
-					if (closed.contains(neighbour))
-						closed.remove(neighbour);
-				}
-				// if the node hasn't already been processed and discarded then
-				// reset it's cost to our current cost and add it as a next possible
-				// step (i.e. to the open list)
-				if (!open.contains(neighbour) && !closed.contains(neighbour)) {
-					neighbour.setCost(newCost);
-					neighbour.setHeuristic(getHeuristicCost(neighbour.getX(), neighbour.getY(), tx, ty));
-					neighbour.setParent(current);
-					open.add(neighbour);
+			// them as next steps (waiting in the same place never lowers the cost)
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					if (dx == 0 && dy == 0)
+						continue;
+					int nx = cx + dx;
+					int ny = cy + dy;
+					//jeśli NIE-MOŻNA go przejść, ignorujemy je.
+					if (!isValidMove(cx, cy, nx, ny))
+						continue;
+					int neighbour = ny * width + nx;
+					touch(neighbour);
+					// the cost to get to this node is cost the current plus the movement
+					// cost to reach this node. Note that the heursitic value is only used
+					// in the sorted open list
+					float newCost = costs[current] + getMovementCost(cx, cy, nx, ny);
+					// if the node hasn't been processed yet or we've found a cheaper way to it,
+					// it needs to be (re)evaluated
+					if (states[neighbour] == NEW) {
+						heuristics[neighbour] = getHeuristicCost(nx, ny, tx, ty);
+					} else if (newCost >= costs[neighbour]) {
+						continue;
+					}
+					costs[neighbour] = newCost;
+					parents[neighbour] = current;
+					states[neighbour] = OPEN;
+					open.push(neighbour, newCost + heuristics[neighbour]);
+					generatedCount++;
 				}
-				
 			}
 		}
 		
-		// since we'e've run out of search there was no path
+		// since we've run out of search there was no path
 		return null;
 	}
 	
+	private Path buildPath(int start, int target) {
+		// At this point we've definitely found a path so we can uses the parent
+		// references of the nodes to find out way from the target location back
+		// to the start recording the nodes on the way.
+		int width = width();
+		// steps are appended backwards, then reversed
+		Path path = new Path();
+		int node = target;
+		while (node != start) {
+			path.appendStep(node % width, node / width);
+			node = parents[node];
+			if (node < 0) {
+				logger.error("node (parent) = null");
+				path.reverse();
+				return path;
+			}
+		}
+		path.appendStep(start % width, start / width);
+		path.reverse();
+		return path;
+	}
+	
+	/**
+	 * prepares buffers for the next search
+	 */
+	private void nextGeneration() {
+		int cells = width() * height();
+		if (stamps.length < cells) {
+			costs = new float[cells];
+			heuristics = new float[cells];
+			parents = new int[cells];
+			states = new byte[cells];
+			stamps = new int[cells];
+			generation = 0;
+		}
+		open.ensureCapacity(cells);
+		open.clear();
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// stamps overflow - forget all
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+	}
+	
+	/**
+	 * resets the cell state if it hasn't been visited during the current search yet
+	 */
+	private void touch(int cell) {
+		if (stamps[cell] != generation) {
+			stamps[cell] = generation;
+			costs[cell] = Float.MAX_VALUE;
+			parents[cell] = -1;
+			states[cell] = NEW;
+		}
+	}
+	
 	protected boolean isValidLocation(int sx, int sy, int x, int y) {
 		if (x < 0 || y < 0 || x >= width() || y >= height())
 			return false;
 		
-		if (map.blocked(x, y))
+		lookupsCount++;
+		if (blocked(x, y))
 			return false;
 		
 		return true;
@@ -150,7 +261,8 @@ public class Astar2DPathFinder {
 		int dy = abs(sy - y);
 		// diagonal move
 		if (dx == 1 && dy == 1) {
-			if (map.blocked(x, y) || map.blocked(sx, sy) || map.blocked(sx, y) || map.blocked(x, sy)) {
+			lookupsCount += 4;
+			if (blocked(x, y) || blocked(sx, sy) || blocked(sx, y) || blocked(x, sy)) {
 				return false;
 			}
 		}
@@ -158,6 +270,10 @@ public class Astar2DPathFinder {
 		return true;
 	}
 	
+	private boolean blocked(int x, int y) {
+		return map.blocked(x, y) || (dynamicObstacles != null && dynamicObstacles.blocked(x, y));
+	}
+	
 	private int abs(int x) {
 		return x >= 0 ? x : -x;
 	}
@@ -171,27 +287,14 @@ public class Astar2DPathFinder {
 	protected float getHeuristicCost(int x, int y, int tx, int ty) {
 		//		return (float) Math.max(Math.abs(tx - x), Math.abs(ty - y));
 		//		return (float) Math.abs(tx - x) + Math.abs(ty - y);
-		return (float) Math.hypot(tx - x, ty - y);
-	}
-	
-	private List<Node> availableNeighbours(Node current) {
-		List<Node> neighbours = new LinkedList<>();
-		for (int dx = -1; dx <= 1; dx++) {
-			for (int dy = -1; dy <= 1; dy++) {
-				if (dx == 0 && dy == 0)
-					continue;
-				// determine the location of the neighbour and evaluate it
-				int xp = current.getX() + dx;
-				int yp = current.getY() + dy;
-				// validate out of bounds
-				if ((xp < 0) || (yp < 0) || (xp >= width()) || (yp >= height()))
-					continue;
-				neighbours.add(nodes[xp][yp]);
-			}
+		float euclidean = (float) Math.hypot(tx - x, ty - y);
+		if (distanceField != null && distanceField.getTargetX() == tx && distanceField.getTargetY() == ty) {
+			// number of steps - every step costs at least 1
+			int steps = distanceField.getDistance(x, y);
+			if (steps > euclidean)
+				return steps;
 		}
-		// możliwe czekanie w tym samym miejscu - jako ostatnia propozycja
-		neighbours.add(nodes[current.getX()][current.getY()]);
-		return neighbours;
+		return euclidean;
 	}
 	
 }
@@ -0,0 +1,381 @@
+package igrek.robopath.pathfinder.dstar;
+
+import java.util.Arrays;
+
+import igrek.robopath.common.IndexedHeap;
+import igrek.robopath.common.TileMap;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.pathfinder.astar.Path;
+
+/**
+ * D* Lite (S. Koenig, M. Likhachev) on 2D grid - incremental replanning of one robot going to one target.
+ * The search goes backwards from the target, so the search tree stays valid while the robot moves.
+ * When the dynamic obstacles (e.g. other robots) change, only the affected part of the tree is repaired.
+ * Moves and costs are the same as in Astar2DPathFinder (8 directions, no cutting corners).
+ * The search state takes O(map cells) memory - an instance should be kept per robot.
+ * The search starts from scratch, when the target or the static map changes.
+ */
+public class DStarLitePathFinder {
+	
+	private static final float INF = Float.POSITIVE_INFINITY;
+	private static final float SQRT2 = (float) Math.sqrt(2);
+	
+	private TileMap map;
+	private long mapVersion;
+	private int width = 0;
+	private int height = 0;
+	/** target cell of the current search tree, -1 - no search tree */
+	private int goal = -1;
+	private int start;
+	/** start cell at the time of the last key modifier update */
+	private int last;
+	/** key modifier - sum of the heuristic changes due to the robot moves */
+	private float km;
+	private float[] g = new float[0];
+	private float[] rhs = new float[0];
+	/** search generation, in which the cell values were set last time */
+	private int[] stamps = new int[0];
+	private int generation = 0;
+	private IndexedHeap open = new IndexedHeap(0);
+	/** dynamic obstacles, which the search tree takes into account */
+	private boolean[] dynamic = new boolean[0];
+	private int[] dynamicCells = new int[0];
+	private int dynamicCount = 0;
+	/** cells marked as the current dynamic obstacles (with the marks generation) */
+	private int[] marks = new int[0];
+	private int markGeneration = 0;
+	private int[] changedCells = new int[16];
+	/** counters of the current search, added to the metrics when it's finished */
+	private PlanningMetrics metrics;
+	private int expandedCount;
+	private int generatedCount;
+	private int lookupsCount;
+	
+	public DStarLitePathFinder(TileMap map) {
+		this.map = map;
+	}
+	
+	/**
+	 * changes the searched map, the search tree is rebuilt if the map content is different
+	 * @param map new map
+	 */
+	public void setMap(TileMap map) {
+		this.map = map;
+	}
+	
+	/**
+	 * @param metrics metrics collecting the search counters, may be null
+	 */
+	public void setMetrics(PlanningMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @param dynamicCells cells (y * width + x), which are blocked in addition to the map obstacles (duplicates allowed)
+	 * @param count        number of the dynamic cells in the array
+	 * @return path from the start to the target (both included), null if there is no path
+	 */
+	public Path findPath(int sx, int sy, int tx, int ty, int[] dynamicCells, int count) {
+		expandedCount = 0;
+		generatedCount = 0;
+		lookupsCount = 0;
+		Path path = search(sx, sy, tx, ty, dynamicCells, count);
+		if (metrics != null)
+			metrics.addSearch(expandedCount, generatedCount, lookupsCount);
+		return path;
+	}
+	
+	private Path search(int sx, int sy, int tx, int ty, int[] cells, int count) {
+		if (width != map.getWidthInTiles() || height != map.getHeightInTiles())
+			allocate();
+		int changedCount = updateDynamicObstacles(cells, count);
+		start = sy * width + sx;
+		int target = ty * width + tx;
+		if (target != goal || mapVersion != map.getVersion()) {
+			initialize(target);
+		} else {
+			km += heuristic(last, start);
+			last = start;
+			for (int i = 0; i < changedCount; i++) {
+				int cell = changedCells[i];
+				int cx = cell % width;
+				int cy = cell / width;
+				// costs of the edges to the cell and of the diagonal edges around it have changed
+				for (int x = cx - 1; x <= cx + 1; x++) {
+					for (int y = cy - 1; y <= cy + 1; y++) {
+						if (inBounds(x, y)) {
+							int u = y * width + x;
+							if (u != goal)
+								setRhs(u, minSuccessorCost(u));
+							updateVertex(u);
+						}
+					}
+				}
+			}
+		}
+		// if the destination is blocked, we can't get there
+		if (blocked(tx, ty) || start == goal)
+			return null;
+		computeShortestPath();
+		if (rhs(start) == INF)
+			return null;
+		return buildPath();
+	}
+	
+	private void allocate() {
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+		int cells = width * height;
+		g = new float[cells];
+		rhs = new float[cells];
+		stamps = new int[cells];
+		generation = 0;
+		open = new IndexedHeap(cells);
+		dynamic = new boolean[cells];
+		dynamicCount = 0;
+		marks = new int[cells];
+		markGeneration = 0;
+		goal = -1;
+	}
+	
+	/**
+	 * starts a new search tree
+	 */
+	private void initialize(int target) {
+		goal = target;
+		mapVersion = map.getVersion();
+		open.clear();
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// stamps overflow - forget all
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+		km = 0;
+		last = start;
+		setRhs(goal, 0);
+		open.push(goal, heuristic(start, goal), 0);
+		generatedCount++;
+	}
+	
+	/**
+	 * @return number of the cells, which have changed their state (stored in changedCells)
+	 */
+	private int updateDynamicObstacles(int[] cells, int count) {
+		markGeneration++;
+		if (markGeneration == Integer.MAX_VALUE) {
+			Arrays.fill(marks, 0);
+			markGeneration = 1;
+		}
+		for (int i = 0; i < count; i++) {
+			marks[cells[i]] = markGeneration;
+		}
+		int changedCount = 0;
+		// not blocked anymore
+		for (int i = 0; i < dynamicCount; i++) {
+			int cell = dynamicCells[i];
+			if (dynamic[cell] && marks[cell] != markGeneration) {
+				dynamic[cell] = false;
+				changedCount = addChanged(changedCount, cell);
+			}
+		}
+		// newly blocked
+		for (int i = 0; i < count; i++) {
+			int cell = cells[i];
+			if (!dynamic[cell]) {
+				dynamic[cell] = true;
+				changedCount = addChanged(changedCount, cell);
+			}
+		}
+		if (dynamicCells.length < count)
+			dynamicCells = new int[Math.max(count, dynamicCells.length * 2)];
+		System.arraycopy(cells, 0, dynamicCells, 0, count);
+		dynamicCount = count;
+		return changedCount;
+	}
+	
+	private int addChanged(int changedCount, int cell) {
+		if (changedCount == changedCells.length)
+			changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+		changedCells[changedCount] = cell;
+		return changedCount + 1;
+	}
+	
+	private void computeShortestPath() {
+		while (!open.isEmpty()) {
+			int u = open.peek();
+			float k1 = open.getKey(u);
+			float k2 = open.getSecondaryKey(u);
+			float startRhs = rhs(start);
+			float startG = g(start);
+			float startK2 = Math.min(startG, startRhs);
+			if (!lessKey(k1, k2, startK2 + km, startK2) && startRhs <= startG)
+				break;
+			expandedCount++;
+			float gu = g(u);
+			float rhsU = rhs(u);
+			float newK2 = Math.min(gu, rhsU);
+			float newK1 = newK2 + heuristic(start, u) + km;
+			if (lessKey(k1, k2, newK1, newK2)) {
+				// outdated key (the robot has moved)
+				open.push(u, newK1, newK2);
+			} else if (gu > rhsU) {
+				// overconsistent - distance gets lower
+				setG(u, rhsU);
+				open.remove(u);
+				int ux = u % width;
+				int uy = u / width;
+				for (int x = ux - 1; x <= ux + 1; x++) {
+					for (int y = uy - 1; y <= uy + 1; y++) {
+						if ((x == ux && y == uy) || !inBounds(x, y))
+							continue;
+						int s = y * width + x;
+						if (s != goal)
+							setRhs(s, Math.min(rhs(s), cost(x, y, ux, uy) + rhsU));
+						updateVertex(s);
+					}
+				}
+			} else {
+				// underconsistent - distance gets higher
+				setG(u, INF);
+				int ux = u % width;
+				int uy = u / width;
+				for (int x = ux - 1; x <= ux + 1; x++) {
+					for (int y = uy - 1; y <= uy + 1; y++) {
+						if (!inBounds(x, y))
+							continue;
+						int s = y * width + x;
+						boolean self = x == ux && y == uy;
+						if (s != goal && (self || rhs(s) == cost(x, y, ux, uy) + gu))
+							setRhs(s, minSuccessorCost(s));
+						updateVertex(s);
+					}
+				}
+			}
+		}
+	}
+	
+	private void updateVertex(int u) {
+		float gu = g(u);
+		float rhsU = rhs(u);
+		if (gu != rhsU) {
+			float k2 = Math.min(gu, rhsU);
+			open.push(u, k2 + heuristic(start, u) + km, k2);
+			generatedCount++;
+		} else {
+			open.remove(u);
+		}
+	}
+	
+	private float minSuccessorCost(int u) {
+		int ux = u % width;
+		int uy = u / width;
+		float min = INF;
+		for (int x = ux - 1; x <= ux + 1; x++) {
+			for (int y = uy - 1; y <= uy + 1; y++) {
+				if ((x == ux && y == uy) || !inBounds(x, y))
+					continue;
+				float value = cost(ux, uy, x, y) + g(y * width + x);
+				if (value < min)
+					min = value;
+			}
+		}
+		return min;
+	}
+	
+	private Path buildPath() {
+		Path path = new Path();
+		int current = start;
+		path.appendStep(current % width, current / width);
+		int steps = 0;
+		while (current != goal) {
+			int cx = current % width;
+			int cy = current / width;
+			int next = -1;
+			float min = INF;
+			// the same neighbours order as in Astar2DPathFinder
+			for (int x = cx - 1; x <= cx + 1; x++) {
+				for (int y = cy - 1; y <= cy + 1; y++) {
+					if ((x == cx && y == cy) || !inBounds(x, y))
+						continue;
+					float value = cost(cx, cy, x, y) + g(y * width + x);
+					if (value < min) {
+						min = value;
+						next = y * width + x;
+					}
+				}
+			}
+			if (next < 0 || ++steps > width * height)
+				return null;
+			current = next;
+			path.appendStep(current % width, current / width);
+		}
+		return path;
+	}
+	
+	private boolean lessKey(float k1, float k2, float l1, float l2) {
+		if (k1 != l1)
+			return k1 < l1;
+		return k2 < l2;
+	}
+	
+	/**
+	 * cost of the move from (x1, y1) to the neighbouring cell (x2, y2)
+	 */
+	private float cost(int x1, int y1, int x2, int y2) {
+		if (blocked(x2, y2))
+			return INF;
+		if (x1 != x2 && y1 != y2) {
+			// diagonal move not possible when one cell is blocked
+			if (blocked(x1, y1) || blocked(x1, y2) || blocked(x2, y1))
+				return INF;
+			return SQRT2;
+		}
+		return 1;
+	}
+	
+	/**
+	 * octile distance - consistent with the movement costs
+	 */
+	private float heuristic(int cell1, int cell2) {
+		int dx = Math.abs(cell1 % width - cell2 % width);
+		int dy = Math.abs(cell1 / width - cell2 / width);
+		return Math.max(dx, dy) + (SQRT2 - 1) * Math.min(dx, dy);
+	}
+	
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+	
+	private boolean blocked(int x, int y) {
+		lookupsCount++;
+		return dynamic[y * width + x] || map.blocked(x, y);
+	}
+	
+	private float g(int cell) {
+		return stamps[cell] == generation ? g[cell] : INF;
+	}
+	
+	private float rhs(int cell) {
+		return stamps[cell] == generation ? rhs[cell] : INF;
+	}
+	
+	private void touch(int cell) {
+		if (stamps[cell] != generation) {
+			stamps[cell] = generation;
+			g[cell] = INF;
+			rhs[cell] = INF;
+		}
+	}
+	
+	private void setG(int cell, float value) {
+		touch(cell);
+		g[cell] = value;
+	}
+	
+	private void setRhs(int cell, float value) {
+		touch(cell);
+		rhs[cell] = value;
+	}
+	
+}
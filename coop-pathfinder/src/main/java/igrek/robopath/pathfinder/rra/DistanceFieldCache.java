@@ -0,0 +1,153 @@
+package igrek.robopath.pathfinder.rra;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.metrics.PlanningMetrics;
+
+/**
+ * Distance fields to targets (reverse searches), shared by all robots and planners.
+ * Field is identified by the map version and the target cell, so it survives between simulation steps
+ * as long as the map is not changed. Least recently used fields are evicted, when the memory budget is exceeded.
+ */
+@Component
+public class DistanceFieldCache {
+	
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	
+	private final long memoryBudget;
+	private long memoryUsed = 0;
+	/** field -> memory size at the time of last access */
+	private final Map<ReverseResumableAstar, Long> sizes = new LinkedHashMap<>();
+	private final Map<Key, ReverseResumableAstar> fields = new LinkedHashMap<>(16, 0.75f, true);
+	private long hits = 0;
+	private long misses = 0;
+	
+	public DistanceFieldCache() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+	
+	@Autowired
+	public DistanceFieldCache(@Value("${distancefields.memorybudget:67108864}") long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * @param map     static map (without robots)
+	 * @param targetX target cell
+	 * @param targetY target cell
+	 * @param originX position of the robot, from which the search is started (if there is no field yet)
+	 * @param originY position of the robot, from which the search is started (if there is no field yet)
+	 * @return distance field to the target, valid for the current map version
+	 */
+	public ReverseResumableAstar get(TileMap map, int targetX, int targetY, int originX, int originY) {
+		return get(map, targetX, targetY, originX, originY, null);
+	}
+	
+	/**
+	 * @param metrics metrics of the planner, collecting the cache hits and misses, may be null
+	 * @see #get(TileMap, int, int, int, int)
+	 */
+	public synchronized ReverseResumableAstar get(TileMap map, int targetX, int targetY, int originX, int originY, PlanningMetrics metrics) {
+		Key key = new Key(map, targetX, targetY);
+		ReverseResumableAstar field = fields.get(key);
+		if (field == null) {
+			misses++;
+			if (metrics != null)
+				metrics.addHeuristicMiss();
+			field = new ReverseResumableAstar(map, targetX, targetY, originX, originY);
+			fields.put(key, field);
+		} else {
+			hits++;
+			if (metrics != null)
+				metrics.addHeuristicHit();
+		}
+		// searches grow or get compacted in the meantime
+		long size = field.getMemorySize();
+		Long oldSize = sizes.put(field, size);
+		memoryUsed += size - (oldSize == null ? 0 : oldSize);
+		evict(field);
+		return field;
+	}
+	
+	private void evict(ReverseResumableAstar keep) {
+		Iterator<ReverseResumableAstar> it = fields.values().iterator();
+		while (memoryUsed > memoryBudget && it.hasNext()) {
+			ReverseResumableAstar eldest = it.next();
+			if (eldest == keep)
+				continue;
+			it.remove();
+			memoryUsed -= sizes.remove(eldest);
+		}
+	}
+	
+	public synchronized void clear() {
+		fields.clear();
+		sizes.clear();
+		memoryUsed = 0;
+	}
+	
+	public synchronized int size() {
+		return fields.size();
+	}
+	
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	public synchronized long getMemoryUsed() {
+		return memoryUsed;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	private static class Key {
+		
+		private final long mapVersion;
+		private final int width;
+		private final int height;
+		private final int targetX;
+		private final int targetY;
+		
+		Key(TileMap map, int targetX, int targetY) {
+			this.mapVersion = map.getVersion();
+			this.width = map.getWidthInTiles();
+			this.height = map.getHeightInTiles();
+			this.targetX = targetX;
+			this.targetY = targetY;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return mapVersion == key.mapVersion && width == key.width && height == key.height && targetX == key.targetX && targetY == key.targetY;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = (int) (mapVersion ^ (mapVersion >>> 32));
+			result = 31 * result + width;
+			result = 31 * result + height;
+			result = 31 * result + targetX;
+			result = 31 * result + targetY;
+			return result;
+		}
+	}
+	
+}
@@ -0,0 +1,240 @@
+package igrek.robopath.pathfinder.rra;
+
+import igrek.robopath.common.IndexedHeap;
+import igrek.robopath.common.TileMap;
+
+/**
+ * Reverse Resumable A* (RRA*) - true distance heuristic for the space-time search.
+ * A* search runs backwards from the target (towards the origin - the first queried position)
+ * and it's resumed only when a distance to a not yet closed cell is requested.
+ * Distance of a closed cell is known, so it's answered in O(1).
+ * <p>
+ * The distance is the number of steps along the cheapest path from the cell to the target,
+ * the same as the length of the path found by Astar2DPathFinder (with the same movement rules).
+ * Results are valid only for the map version the search has been started on.
+ * When the search is exhausted, its state is dropped and only a compact distance field is kept.
+ */
+public class ReverseResumableAstar {
+	
+	public static final int UNREACHABLE = -1;
+	
+	private static final byte NEW = 0;
+	private static final byte OPEN = 1;
+	private static final byte CLOSED = 2;
+	
+	private final TileMap map;
+	private final long mapVersion;
+	private final int width;
+	private final int height;
+	private final int targetX;
+	private final int targetY;
+	private final int originX;
+	private final int originY;
+	
+	/** cost of the cheapest path from the cell to the target (g of the reverse search) */
+	private float[] costs;
+	/** number of steps of the cheapest path from the cell to the target */
+	private int[] steps;
+	private byte[] states;
+	private IndexedHeap open;
+	/** distances of all cells, when the search is finished (short or int array) */
+	private short[] shortField;
+	private int[] intField;
+	
+	public ReverseResumableAstar(TileMap map, int targetX, int targetY, int originX, int originY) {
+		this.map = map;
+		this.mapVersion = map.getVersion();
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.targetX = targetX;
+		this.targetY = targetY;
+		this.originX = originX;
+		this.originY = originY;
+		int cells = width * height;
+		costs = new float[cells];
+		steps = new int[cells];
+		states = new byte[cells];
+		open = new IndexedHeap(cells);
+		// the destination is blocked, we can't get there from anywhere
+		if (!map.blocked(targetX, targetY)) {
+			int target = targetY * width + targetX;
+			costs[target] = 0;
+			steps[target] = 0;
+			states[target] = OPEN;
+			open.push(target, getHeuristicCost(targetX, targetY));
+		}
+	}
+	
+	public int getTargetX() {
+		return targetX;
+	}
+	
+	public int getTargetY() {
+		return targetY;
+	}
+	
+	/**
+	 * @return true if search results are valid for given map and target
+	 */
+	public boolean matches(TileMap map, int targetX, int targetY) {
+		return this.targetX == targetX && this.targetY == targetY && this.mapVersion == map.getVersion() && this.width == map
+				.getWidthInTiles() && this.height == map.getHeightInTiles();
+	}
+	
+	/**
+	 * @return number of steps from (x, y) to the target or UNREACHABLE if there is no path
+	 */
+	public synchronized int getDistance(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return UNREACHABLE;
+		int cell = y * width + x;
+		if (shortField != null)
+			return shortField[cell];
+		if (intField != null)
+			return intField[cell];
+		if (states[cell] == CLOSED)
+			return steps[cell];
+		int distance;
+		if (map.blocked(x, y)) {
+			distance = blockedCellDistance(x, y);
+		} else if (resume(cell)) {
+			distance = steps[cell];
+		} else {
+			distance = UNREACHABLE;
+		}
+		if (open.isEmpty())
+			compact();
+		return distance;
+	}
+	
+	public synchronized boolean isFinished() {
+		return shortField != null || intField != null;
+	}
+	
+	/**
+	 * @return approximate number of bytes occupied by the search state or the distance field
+	 */
+	public synchronized long getMemorySize() {
+		if (shortField != null)
+			return 2L * shortField.length;
+		if (intField != null)
+			return 4L * intField.length;
+		// costs, steps, states and the open list (heap, positions, keys, orders)
+		return (4L + 4 + 1 + 4 + 4 + 4 + 8) * width * height;
+	}
+	
+	/**
+	 * The search is exhausted - every reachable cell is closed. The search state is replaced
+	 * with a distance field, as compact as possible.
+	 */
+	private void compact() {
+		int cells = width * height;
+		int[] distances = new int[cells];
+		int maxDistance = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			int x = cell % width;
+			int y = cell / width;
+			if (states[cell] == CLOSED) {
+				distances[cell] = steps[cell];
+			} else if (map.blocked(x, y)) {
+				distances[cell] = blockedCellDistance(x, y);
+			} else {
+				distances[cell] = UNREACHABLE;
+			}
+			maxDistance = Math.max(maxDistance, distances[cell]);
+		}
+		if (maxDistance <= Short.MAX_VALUE) {
+			shortField = new short[cells];
+			for (int cell = 0; cell < cells; cell++) {
+				shortField[cell] = (short) distances[cell];
+			}
+		} else {
+			intField = distances;
+		}
+		costs = null;
+		steps = null;
+		states = null;
+		open = null;
+	}
+	
+	/**
+	 * Robot standing on a blocked cell can only leave it with a straight move
+	 * (diagonal moves need all 4 cells to be free)
+	 */
+	private int blockedCellDistance(int x, int y) {
+		int best = -1;
+		float bestCost = Float.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int nx = x + (i == 0 ? -1 : (i == 1 ? 1 : 0));
+			int ny = y + (i == 2 ? -1 : (i == 3 ? 1 : 0));
+			if (nx < 0 || ny < 0 || nx >= width || ny >= height || map.blocked(nx, ny))
+				continue;
+			int neighbour = ny * width + nx;
+			if (states[neighbour] != CLOSED && !resume(neighbour))
+				continue;
+			if (costs[neighbour] < bestCost) {
+				bestCost = costs[neighbour];
+				best = neighbour;
+			}
+		}
+		return best < 0 ? UNREACHABLE : steps[best] + 1;
+	}
+	
+	/**
+	 * continues the search until the given cell is closed
+	 * @return false if the cell is unreachable
+	 */
+	private boolean resume(int wanted) {
+		while (!open.isEmpty()) {
+			int current = open.poll();
+			states[current] = CLOSED;
+			int cx = current % width;
+			int cy = current / width;
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					if (dx == 0 && dy == 0)
+						continue;
+					int nx = cx + dx;
+					int ny = cy + dy;
+					// reversed move: from (nx, ny) to (cx, cy)
+					if (!isValidMove(nx, ny, cx, cy))
+						continue;
+					int neighbour = ny * width + nx;
+					float newCost = costs[current] + getMovementCost(cx, cy, nx, ny);
+					if (states[neighbour] == NEW || (states[neighbour] == OPEN && newCost < costs[neighbour])) {
+						costs[neighbour] = newCost;
+						steps[neighbour] = steps[current] + 1;
+						states[neighbour] = OPEN;
+						open.push(neighbour, newCost + getHeuristicCost(nx, ny));
+					}
+				}
+			}
+			if (current == wanted)
+				return true;
+		}
+		return false;
+	}
+	
+	private boolean isValidMove(int sx, int sy, int x, int y) {
+		if (sx < 0 || sy < 0 || sx >= width || sy >= height)
+			return false;
+		if (map.blocked(sx, sy))
+			return false;
+		// diagonal move not possible when one cell is blocked
+		if (sx != x && sy != y) {
+			if (map.blocked(sx, y) || map.blocked(x, sy)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private float getMovementCost(int x, int y, int tx, int ty) {
+		return (float) Math.hypot(tx - x, ty - y);
+	}
+	
+	private float getHeuristicCost(int x, int y) {
+		return (float) Math.hypot(originX - x, originY - y);
+	}
+	
+}
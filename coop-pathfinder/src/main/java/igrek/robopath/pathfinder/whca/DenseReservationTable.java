@@ -0,0 +1,142 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.Arrays;
+
+import igrek.robopath.common.TileMap;
+
+/**
+ * Dense reservation table for all (x, y, t) nodes. Each cell has its time axis packed into long words (bit t set - blocked),
+ * so whole-window queries (blocked all the time, free from t onward) are answered with a few word operations.
+ */
+public class DenseReservationTable implements ReservationTable {
+	
+	private static final long ALL = -1L;
+	
+	private int width;
+	private int height;
+	private int timeDimension;
+	/** number of long words for one cell */
+	private int cellWords;
+	/** mask of the used bits in the last word of the cell */
+	private long lastWordMask;
+	
+	/** bit (t % 64) of word (y * width + x) * cellWords + t / 64 */
+	private long[] reserved;
+	
+	public DenseReservationTable(int width, int height, int timeDimension) {
+		this.width = width;
+		this.height = height;
+		this.timeDimension = timeDimension;
+		cellWords = Math.max((timeDimension + 63) >>> 6, 1);
+		lastWordMask = timeDimension == 0 ? 0 : (ALL >>> (63 - ((timeDimension - 1) & 63)));
+		reserved = new long[width * height * cellWords];
+	}
+	
+	/**
+	 * @return number of bytes occupied by the table
+	 */
+	public static long estimateMemory(int width, int height, int timeDimension) {
+		return 8L * width * height * Math.max((timeDimension + 63) >>> 6, 1);
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getTimeDimension() {
+		return timeDimension;
+	}
+	
+	private int firstWord(int x, int y) {
+		return (y * width + x) * cellWords;
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t) {
+		return (reserved[firstWord(x, y) + (t >>> 6)] & (1L << t)) != 0;
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y) {
+		int word = firstWord(x, y);
+		int last = word + cellWords - 1;
+		for (; word < last; word++) {
+			if (reserved[word] != ALL)
+				return false;
+		}
+		return (reserved[last] & lastWordMask) == lastWordMask;
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t) {
+		if (t >= timeDimension)
+			return true;
+		int first = firstWord(x, y);
+		int word = first + (t >>> 6);
+		if ((reserved[word] & (ALL << t)) != 0)
+			return false;
+		int end = first + cellWords;
+		for (word++; word < end; word++) {
+			if (reserved[word] != 0)
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int t) {
+		if (xytValid(x, y, t))
+			reserved[firstWord(x, y) + (t >>> 6)] |= 1L << t;
+	}
+	
+	@Override
+	public void setBlocked(int x, int y) {
+		if (!xytValid(x, y, 0))
+			return;
+		int word = firstWord(x, y);
+		Arrays.fill(reserved, word, word + cellWords - 1, ALL);
+		reserved[word + cellWords - 1] |= lastWordMask;
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int fromT, int toT) {
+		if (!xytValid(x, y, 0))
+			return;
+		fromT = Math.max(fromT, 0);
+		toT = Math.min(toT, timeDimension);
+		if (fromT >= toT)
+			return;
+		int first = firstWord(x, y);
+		int fromWord = fromT >>> 6;
+		int toWord = (toT - 1) >>> 6;
+		long fromMask = ALL << fromT;
+		long toMask = ALL >>> (63 - ((toT - 1) & 63));
+		if (fromWord == toWord) {
+			reserved[first + fromWord] |= fromMask & toMask;
+			return;
+		}
+		reserved[first + fromWord] |= fromMask;
+		Arrays.fill(reserved, first + fromWord + 1, first + toWord, ALL);
+		reserved[first + toWord] |= toMask;
+	}
+	
+	@Override
+	public void setBlocked(TileMap map) {
+		int w = Math.min(width, map.getWidthInTiles());
+		int h = Math.min(height, map.getHeightInTiles());
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (map.blocked(x, y))
+					setBlocked(x, y);
+			}
+		}
+	}
+	
+}
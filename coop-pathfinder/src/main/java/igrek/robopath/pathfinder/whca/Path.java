@@ -1,151 +1,23 @@
 package igrek.robopath.pathfinder.whca;
 
-import java.util.ArrayList;
-import java.util.List;
+import igrek.robopath.common.PackedPath;
 
-public class Path {
-	/** The list of steps building up this path */
-	private List<Step> steps = new ArrayList<>();
+/**
+ * Path in space-time: (x, y, t) steps
+ */
+public class Path extends PackedPath {
 	
 	/**
 	 * Create an empty path
 	 */
 	public Path() {
-	
-	}
-	
-	/**
-	 * Get the length of the path, i.e. the number of steps
-	 * @return The number of steps in this path
-	 */
-	public int getLength() {
-		return steps.size();
 	}
 	
 	/**
-	 * Get the step at a given index in the path
-	 * @param index The index of the step to retrieve. Note this should
-	 *              be >= 0 and < getLength();
-	 * @return The step information, the position on the map.
+	 * @param capacity expected number of steps
 	 */
-	public Step getStep(int index) {
-		return steps.get(index);
-	}
-	
-	/**
-	 * Get the x coordinate for the step at the given index
-	 * @param index The index of the step whose x coordinate should be retrieved
-	 * @return The x coordinate at the step
-	 */
-	public int getX(int index) {
-		return getStep(index).x;
-	}
-	
-	/**
-	 * Get the y coordinate for the step at the given index
-	 * @param index The index of the step whose y coordinate should be retrieved
-	 * @return The y coordinate at the step
-	 */
-	public int getY(int index) {
-		return getStep(index).y;
-	}
-	
-	public int getT(int index) {
-		return getStep(index).t;
+	public Path(int capacity) {
+		super(capacity);
 	}
 	
-	/**
-	 * Prepend a step to the path.
-	 * @param x The x coordinate of the new step
-	 * @param y The y coordinate of the new step
-	 */
-	public void prependStep(int x, int y, int t) {
-		steps.add(0, new Step(x, y, t));
-	}
-	
-	/**
-	 * Check if this path contains the given step
-	 * @param x The x coordinate of the step to check for
-	 * @param y The y coordinate of the step to check for
-	 * @return True if the path contains the given step
-	 */
-	public boolean contains(int x, int y, int t) {
-		return steps.contains(new Step(x, y, t));
-	}
-	
-	@Override
-	public String toString() {
-		String stepsStr = steps.stream()
-				.map(Step::toString)
-				.reduce((s1, s2) -> s1 + ", " + s2)
-				.orElse("");
-		return "[" + stepsStr + "]";
-	}
-	
-	/**
-	 * A single step within the path
-	 * @author Kevin Glass
-	 */
-	public class Step {
-		/** The x coordinate at the given step */
-		private int x;
-		/** The y coordinate at the given step */
-		private int y;
-		private int t;
-		
-		/**
-		 * Create a new step
-		 * @param x The x coordinate of the new step
-		 * @param y The y coordinate of the new step
-		 */
-		public Step(int x, int y, int t) {
-			this.x = x;
-			this.y = y;
-			this.t = t;
-		}
-		
-		/**
-		 * Get the x coordinate of the new step
-		 * @return The x coodindate of the new step
-		 */
-		public int getX() {
-			return x;
-		}
-		
-		/**
-		 * Get the y coordinate of the new step
-		 * @return The y coodindate of the new step
-		 */
-		public int getY() {
-			return y;
-		}
-		
-		public int getT() {
-			return t;
-		}
-		
-		/**
-		 * @see Object#hashCode()
-		 */
-		public int hashCode() {
-			return x * y;
-		}
-		
-		/**
-		 * @see Object#equals(Object)
-		 */
-		public boolean equals(Object other) {
-			if (other instanceof Step) {
-				Step o = (Step) other;
-				return (o.x == x) && (o.y == y) && (o.t == t);
-			}
-			return false;
-		}
-		
-		@Override
-		public String toString() {
-			return "(" + x + ", " + y + ", " + t + ")";
-		}
-	}
 }
-
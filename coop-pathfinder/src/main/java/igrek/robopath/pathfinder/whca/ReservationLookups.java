@@ -0,0 +1,69 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Reservation queries of a search along with their answers.
+ * The search is deterministic, so it finds the same path against another table (or another predicate),
+ * if all its queries give the same answers there.
+ */
+public class ReservationLookups {
+	
+	private static final int BLOCKED = 0;
+	private static final int FREE_FROM = 1;
+	
+	/** recorded queries: x, y, (t, kind, answer) */
+	private int[] lookups = new int[3 * 64];
+	private int size = 0;
+	
+	void addBlocked(int x, int y, int t, boolean blocked) {
+		add(x, y, t, BLOCKED, blocked);
+	}
+	
+	void addFreeFrom(int x, int y, int t, boolean free) {
+		add(x, y, t, FREE_FROM, free);
+	}
+	
+	private void add(int x, int y, int t, int kind, boolean answer) {
+		if (size + 3 > lookups.length)
+			lookups = Arrays.copyOf(lookups, lookups.length * 2);
+		lookups[size++] = x;
+		lookups[size++] = y;
+		lookups[size++] = t << 2 | kind << 1 | (answer ? 1 : 0);
+	}
+	
+	/**
+	 * @return number of the recorded queries
+	 */
+	public int size() {
+		return size / 3;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * @param blockingOwners predicate for the reservations of other owners, null - all reservations are blocking
+	 * @return true if all the queries give the same answers against the reservations
+	 */
+	public boolean replay(ReservationView reservation, IntPredicate blockingOwners) {
+		for (int i = 0; i < size; i += 3) {
+			int x = lookups[i];
+			int y = lookups[i + 1];
+			int t = lookups[i + 2] >>> 2;
+			int kind = (lookups[i + 2] >>> 1) & 1;
+			boolean answer = (lookups[i + 2] & 1) != 0;
+			if (kind == BLOCKED) {
+				if (reservation.isBlocked(x, y, t, blockingOwners) != answer)
+					return false;
+			} else {
+				if (reservation.isFreeFrom(x, y, t, blockingOwners) != answer)
+					return false;
+			}
+		}
+		return true;
+	}
+	
+}
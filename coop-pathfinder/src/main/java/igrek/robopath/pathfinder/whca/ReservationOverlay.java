@@ -0,0 +1,221 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import igrek.robopath.common.LongHashSet;
+
+/**
+ * Private view of a shared reservation table. Reads go through to the base table,
+ * changes are kept aside and written to the base table by {@link #commit()}.
+ * Many overlays may be used concurrently, as long as the base table isn't modified meanwhile.
+ */
+public class ReservationOverlay implements TaggedReservationView {
+	
+	private static final int OP_RESERVE = 0;
+	private static final int OP_TAKE_OVER = 1;
+	private static final int OP_RELEASE = 2;
+	
+	private final TaggedReservationView base;
+	private final int width;
+	private final int cells;
+	/** nodes reserved in the overlay */
+	private ReservationOwners owners;
+	/** owners (robot ids), which base reservations have been released */
+	private final BitSet released = new BitSet();
+	/** base nodes taken over in the overlay (they stay free when the new owner releases them) */
+	private LongHashSet shadowed = new LongHashSet(16);
+	/** changes to replay on the base table: operation, owner, x, y, t */
+	private int[] log = new int[5 * 16];
+	private int logSize = 0;
+	
+	public ReservationOverlay(TaggedReservationView base, int expectedSize) {
+		this.base = base;
+		width = base.getWidth();
+		cells = base.getWidth() * base.getHeight();
+		owners = new ReservationOwners(cells, base.getTimeDimension(), expectedSize);
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return base.getHeight();
+	}
+	
+	@Override
+	public int getTimeDimension() {
+		return base.getTimeDimension();
+	}
+	
+	@Override
+	public boolean isObstacle(int x, int y) {
+		return base.isObstacle(x, y);
+	}
+	
+	private long key(int cell, int t) {
+		return (long) t * cells + cell;
+	}
+	
+	/**
+	 * @return owner of the node in the overlay, if it's not changed - in the base table
+	 */
+	private int ownerAt(int x, int y, int t) {
+		int cell = y * width + x;
+		int owner = owners.get(cell, t);
+		if (owner != NO_OWNER)
+			return owner;
+		if (!shadowed.isEmpty() && shadowed.contains(key(cell, t)))
+			return NO_OWNER;
+		owner = base.getOwner(x, y, t);
+		if (owner != NO_OWNER && owner != ANONYMOUS && owner >= 0 && released.get(owner))
+			return NO_OWNER;
+		return owner;
+	}
+	
+	private boolean isReserved(int x, int y, int t, IntPredicate blockingOwners) {
+		int owner = ownerAt(x, y, t);
+		if (owner == NO_OWNER)
+			return false;
+		return blockingOwners == null || owner == ANONYMOUS || blockingOwners.test(owner);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t) {
+		return isBlocked(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t, IntPredicate blockingOwners) {
+		return isObstacle(x, y) || isReserved(x, y, t, blockingOwners);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y) {
+		if (isObstacle(x, y))
+			return true;
+		for (int t = 0; t < getTimeDimension(); t++) {
+			if (!isReserved(x, y, t, null))
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t) {
+		return isFreeFrom(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t, IntPredicate blockingOwners) {
+		if (t >= getTimeDimension())
+			return true;
+		if (isObstacle(x, y))
+			return false;
+		for (; t < getTimeDimension(); t++) {
+			if (isReserved(x, y, t, blockingOwners))
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public int getOwner(int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		return ownerAt(x, y, t);
+	}
+	
+	@Override
+	public boolean reserve(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return false;
+		int previous = ownerAt(x, y, t);
+		if (previous != NO_OWNER && previous != owner)
+			return false;
+		owners.reserve(owner, y * width + x, t, true);
+		log(OP_RESERVE, owner, x, y, t);
+		return true;
+	}
+	
+	@Override
+	public int takeOver(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		int cell = y * width + x;
+		int previous = ownerAt(x, y, t);
+		if (previous == ANONYMOUS)
+			return previous;
+		if (previous != NO_OWNER && owners.get(cell, t) == NO_OWNER)
+			shadowed.add(key(cell, t));
+		owners.reserve(owner, cell, t, true);
+		log(OP_TAKE_OVER, owner, x, y, t);
+		return previous;
+	}
+	
+	@Override
+	public void release(int owner) {
+		if (owner >= 0)
+			released.set(owner);
+		owners.release(owner, (cell, t) -> {
+		});
+		log(OP_RELEASE, owner, 0, 0, 0);
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int t) {
+		reserve(ANONYMOUS, x, y, t);
+	}
+	
+	@Override
+	public void setBlocked(int x, int y) {
+		setBlocked(x, y, 0, getTimeDimension());
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int fromT, int toT) {
+		fromT = Math.max(fromT, 0);
+		toT = Math.min(toT, getTimeDimension());
+		for (int t = fromT; t < toT; t++) {
+			setBlocked(x, y, t);
+		}
+	}
+	
+	private void log(int operation, int owner, int x, int y, int t) {
+		if (logSize + 5 > log.length)
+			log = Arrays.copyOf(log, log.length * 2);
+		log[logSize++] = operation;
+		log[logSize++] = owner;
+		log[logSize++] = x;
+		log[logSize++] = y;
+		log[logSize++] = t;
+	}
+	
+	/**
+	 * Writes the changes to the base table, in the same order as they were made in the overlay.
+	 * The base table ends up as seen through the overlay, if the nodes changed in the overlay
+	 * haven't been changed in the base table meanwhile.
+	 */
+	public void commit() {
+		for (int i = 0; i < logSize; i += 5) {
+			int owner = log[i + 1];
+			switch (log[i]) {
+				case OP_RESERVE:
+					base.reserve(owner, log[i + 2], log[i + 3], log[i + 4]);
+					break;
+				case OP_TAKE_OVER:
+					base.takeOver(owner, log[i + 2], log[i + 3], log[i + 4]);
+					break;
+				case OP_RELEASE:
+					base.release(owner);
+					break;
+			}
+		}
+		logSize = 0;
+	}
+	
+}
@@ -0,0 +1,154 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import igrek.robopath.common.LongIntHashMap;
+
+import static igrek.robopath.pathfinder.whca.TaggedReservationTable.ANONYMOUS;
+import static igrek.robopath.pathfinder.whca.TaggedReservationTable.NO_OWNER;
+
+/**
+ * Owners of the reserved space-time nodes. Node key is (absolute time * cells + cell),
+ * so the time window can be advanced without rewriting the keys.
+ */
+class ReservationOwners {
+	
+	interface NodeConsumer {
+		void accept(int cell, int t);
+	}
+	
+	private final int cells;
+	private final int timeDimension;
+	/** absolute time of the time 0 */
+	private long timeOffset = 0;
+	/** node -> owner */
+	private final LongIntHashMap owners;
+	/** reserved cells of each time slot (absolute time % timeDimension), may contain already released cells */
+	private int[][] slotCells;
+	private int[] slotSizes;
+	/** nodes of each owner, may contain nodes already taken over by another owner */
+	private Map<Integer, NodeList> ownerNodes = new HashMap<>();
+	
+	ReservationOwners(int cells, int timeDimension, int expectedSize) {
+		this.cells = cells;
+		this.timeDimension = timeDimension;
+		owners = new LongIntHashMap(expectedSize, NO_OWNER);
+		slotCells = new int[timeDimension][];
+		slotSizes = new int[timeDimension];
+		for (int slot = 0; slot < timeDimension; slot++) {
+			slotCells[slot] = new int[8];
+		}
+	}
+	
+	private long key(int cell, int t) {
+		return (timeOffset + t) * cells + cell;
+	}
+	
+	boolean isEmpty() {
+		return owners.isEmpty();
+	}
+	
+	int get(int cell, int t) {
+		return owners.get(key(cell, t));
+	}
+	
+	/**
+	 * @param takeOver true if the node can be taken over from another owner (but never from ANONYMOUS)
+	 * @return previous owner of the node or NO_OWNER
+	 */
+	int reserve(int owner, int cell, int t, boolean takeOver) {
+		long key = key(cell, t);
+		int previous = owners.get(key);
+		if (previous == owner)
+			return previous;
+		if (previous != NO_OWNER && (!takeOver || previous == ANONYMOUS))
+			return previous;
+		owners.put(key, owner);
+		if (previous == NO_OWNER) {
+			int slot = (int) ((timeOffset + t) % timeDimension);
+			if (slotSizes[slot] == slotCells[slot].length)
+				slotCells[slot] = Arrays.copyOf(slotCells[slot], slotSizes[slot] * 2);
+			slotCells[slot][slotSizes[slot]++] = cell;
+		}
+		NodeList nodes = ownerNodes.get(owner);
+		if (nodes == null) {
+			nodes = new NodeList();
+			ownerNodes.put(owner, nodes);
+		}
+		nodes.add(owner, key);
+		return previous;
+	}
+	
+	/**
+	 * removes all reservations of the owner
+	 * @param removed notified about every removed node within the time window
+	 */
+	void release(int owner, NodeConsumer removed) {
+		NodeList nodes = ownerNodes.remove(owner);
+		if (nodes == null)
+			return;
+		for (int i = 0; i < nodes.size; i++) {
+			long key = nodes.keys[i];
+			if (owners.get(key) != owner)
+				continue;
+			owners.remove(key);
+			long t = key / cells - timeOffset;
+			if (t >= 0 && removed != null)
+				removed.accept((int) (key % cells), (int) t);
+		}
+	}
+	
+	/**
+	 * removes the reservations of the time 0 and moves the time window
+	 * @param removed notified about every cell reserved in the time 0 (the slot can be cleared)
+	 */
+	void advance(NodeConsumer removed) {
+		clearSlot(0, removed);
+		timeOffset++;
+	}
+	
+	void clear(NodeConsumer removed) {
+		for (int t = 0; t < timeDimension; t++) {
+			clearSlot(t, removed);
+		}
+		owners.clear();
+		ownerNodes.clear();
+	}
+	
+	private void clearSlot(int t, NodeConsumer removed) {
+		int slot = (int) ((timeOffset + t) % timeDimension);
+		int[] slotCells = this.slotCells[slot];
+		for (int i = 0; i < slotSizes[slot]; i++) {
+			owners.remove(key(slotCells[i], t));
+			if (removed != null)
+				removed.accept(slotCells[i], t);
+		}
+		slotSizes[slot] = 0;
+	}
+	
+	/**
+	 * growing list of the owner's node keys
+	 */
+	private class NodeList {
+		
+		private long[] keys = new long[8];
+		private int size = 0;
+		
+		void add(int owner, long key) {
+			if (size == keys.length) {
+				// forget nodes taken over or rolled off the time window
+				int kept = 0;
+				for (int i = 0; i < size; i++) {
+					if (owners.get(keys[i]) == owner)
+						keys[kept++] = keys[i];
+				}
+				size = kept;
+				if (size > keys.length / 2)
+					keys = Arrays.copyOf(keys, keys.length * 2);
+			}
+			keys[size++] = key;
+		}
+	}
+}
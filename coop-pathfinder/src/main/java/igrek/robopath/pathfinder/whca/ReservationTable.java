@@ -1,87 +1,50 @@
 package igrek.robopath.pathfinder.whca;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import igrek.robopath.common.TileMap;
 
-public class ReservationTable {
-	
-	private int width;
-	private int height;
-	private int timeDimension;
-	
-	private boolean availability[][][];
-	
-	public ReservationTable(int width, int height, int timeDimension) {
-		this.width = width;
-		this.height = height;
-		this.timeDimension = timeDimension;
-		availability = new boolean[width][height][timeDimension];
-		clear();
-	}
-	
-	private void clear() {
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				for (int t = 0; t < timeDimension; t++) {
-					availability[x][y][t] = true;
-				}
-			}
-		}
-	}
-	
-	public int getWidth() {
-		return width;
-	}
-	
-	public int getHeight() {
-		return height;
-	}
-	
-	public int getTimeDimension() {
-		return timeDimension;
-	}
-	
-	public boolean isBlocked(int x, int y, int t) {
-		return !availability[x][y][t];
-	}
-	
-	public boolean isBlocked(int x, int y) {
-		// is blocked all the time
-		for (int t = 0; t < timeDimension; t++) {
-			if (availability[x][y][t])
-				return false;
+/**
+ * Reserved (blocked) nodes of the space-time grid: static obstacles and other robots' paths.
+ */
+public interface ReservationTable extends ReservationView {
+	
+	/**
+	 * Dense table is used while it takes less than this number of bytes,
+	 * otherwise the one which needs less memory is chosen.
+	 */
+	long DENSE_MEMORY_LIMIT = 1 << 20;
+	
+	/**
+	 * Creates the table suitable for expected density of reservations.
+	 * Static obstacles from the map are blocked all the time.
+	 * @param map           static obstacles
+	 * @param timeDimension time window
+	 * @param robots        number of robots, which are going to reserve their paths
+	 */
+	static ReservationTable create(TileMap map, int timeDimension, int robots) {
+		int width = map.getWidthInTiles();
+		int height = map.getHeightInTiles();
+		ReservationTable table;
+		if (preferSparse(width, height, timeDimension, robots)) {
+			table = new SparseReservationTable(width, height, timeDimension, robots);
+		} else {
+			table = new DenseReservationTable(width, height, timeDimension);
 		}
-		return true;
+		table.setBlocked(map);
+		return table;
 	}
 	
-	public void setBlocked(int x, int y, int t) {
-		if (xytValid(x, y, t))
-			availability[x][y][t] = false;
+	/**
+	 * @return true if the sparse table should be used for expected number of reservations
+	 */
+	static boolean preferSparse(int width, int height, int timeDimension, int robots) {
+		long denseMemory = DenseReservationTable.estimateMemory(width, height, timeDimension);
+		return denseMemory > DENSE_MEMORY_LIMIT && SparseReservationTable.estimateMemory(timeDimension, robots) < denseMemory;
 	}
 	
-	public void setBlocked(int x, int y) {
-		for (int t = 0; t < timeDimension; t++) {
-			setBlocked(x, y, t);
-		}
-	}
-	
-	public boolean xytValid(int x, int y, int t) {
-		return x >= 0 && y >= 0 && t >= 0 && x < width && y < height && t < timeDimension;
-	}
+	/**
+	 * blocks all the time cells, which are occupied on the map
+	 * @param map static obstacles
+	 */
+	void setBlocked(TileMap map);
 	
-	public void log() {
-		Logger logger = LoggerFactory.getLogger(this.getClass());
-		logger.debug("Reservation table:");
-		for (int t = 0; t < getTimeDimension(); t++) {
-			logger.debug("t = " + t);
-			for (int y = 0; y < getHeight(); y++) {
-				StringBuilder line = new StringBuilder("  ");
-				for (int x = 0; x < getWidth(); x++) {
-					line.append(isBlocked(x, y, t) ? "X" : ".");
-					line.append(" ");
-				}
-				logger.debug(line.toString());
-			}
-		}
-	}
 }
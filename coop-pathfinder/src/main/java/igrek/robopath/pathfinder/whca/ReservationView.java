@@ -0,0 +1,81 @@
+package igrek.robopath.pathfinder.whca;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Reserved nodes of the space-time grid, as seen by the path search.
+ * Static obstacles are set up by the owner of the table ({@link ReservationTable}).
+ */
+public interface ReservationView {
+	
+	int getWidth();
+	
+	int getHeight();
+	
+	int getTimeDimension();
+	
+	boolean isBlocked(int x, int y, int t);
+	
+	/**
+	 * @return true if the cell is blocked all the time
+	 */
+	boolean isBlocked(int x, int y);
+	
+	/**
+	 * @return true if the cell is not reserved in any time from t to the end of the time window
+	 */
+	boolean isFreeFrom(int x, int y, int t);
+	
+	/**
+	 * Reservations of other owners are taken into account only if they satisfy the predicate
+	 * (e.g. to ignore robots with lower priorities).
+	 * ANONYMOUS reservations are always blocking, tables without the owners ignore the predicate.
+	 * @param blockingOwners predicate or null - all reservations are blocking
+	 */
+	default boolean isBlocked(int x, int y, int t, IntPredicate blockingOwners) {
+		return isBlocked(x, y, t);
+	}
+	
+	/**
+	 * @param blockingOwners predicate or null - all reservations are blocking
+	 * @see #isBlocked(int, int, int, IntPredicate)
+	 */
+	default boolean isFreeFrom(int x, int y, int t, IntPredicate blockingOwners) {
+		return isFreeFrom(x, y, t);
+	}
+	
+	void setBlocked(int x, int y, int t);
+	
+	/**
+	 * blocks the cell all the time
+	 */
+	void setBlocked(int x, int y);
+	
+	/**
+	 * blocks the cell from time fromT (inclusive) to toT (exclusive)
+	 */
+	void setBlocked(int x, int y, int fromT, int toT);
+	
+	default boolean xytValid(int x, int y, int t) {
+		return x >= 0 && y >= 0 && t >= 0 && x < getWidth() && y < getHeight() && t < getTimeDimension();
+	}
+	
+	default void log() {
+		Logger logger = LoggerFactory.getLogger(this.getClass());
+		logger.debug("Reservation table:");
+		for (int t = 0; t < getTimeDimension(); t++) {
+			logger.debug("t = " + t);
+			for (int y = 0; y < getHeight(); y++) {
+				StringBuilder line = new StringBuilder("  ");
+				for (int x = 0; x < getWidth(); x++) {
+					line.append(isBlocked(x, y, t) ? "X" : ".");
+					line.append(" ");
+				}
+				logger.debug(line.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import igrek.robopath.common.TileMap;
+
+/**
+ * Reservation table reused between the simulation steps. Time axis is a circular buffer of slots,
+ * {@link #advance()} moves the window by one step and clears only the slot which rolls off.
+ * Static obstacles are kept in a separate layer, rewritten only when the map version changes.
+ * Cells blocked all the time have their own layer too, so they stay blocked after the window is moved.
+ * Reservations are kept as bits of the time slots packed per cell (the time window of a cell is one word up to 64 steps),
+ * so checking the cell through the whole window is a word compare. ANONYMOUS reservations have their own bits,
+ * they block regardless of the owners filter, so the owners are looked up only for the reserved bits of the robots.
+ * Owners are kept aside, so clearing costs O(reservations), not O(width * height).
+ */
+public class RollingReservationTable implements TaggedReservationTable {
+	
+	private int width;
+	private int height;
+	private int timeDimension;
+	/** number of long words for the time slots of one cell */
+	private int cellWords;
+	
+	/** static obstacles - bit per cell */
+	private long[] obstacles;
+	private long obstaclesVersion = -1;
+	/** cells blocked all the time (besides the obstacles) - bit per cell, kept until the reservations are cleared */
+	private long[] blockedCells;
+	/** reservations - bit per time slot, cell c has the words c * cellWords .. (c + 1) * cellWords - 1 */
+	private long[] reserved;
+	/** ANONYMOUS reservations - bits as in reserved */
+	private long[] anonymous;
+	/** slot of the time 0 */
+	private int head = 0;
+	private ReservationOwners owners;
+	
+	public RollingReservationTable(int width, int height, int timeDimension) {
+		this.width = width;
+		this.height = height;
+		this.timeDimension = timeDimension;
+		cellWords = (timeDimension + 63) >>> 6;
+		obstacles = new long[(width * height + 63) >>> 6];
+		blockedCells = new long[obstacles.length];
+		reserved = new long[width * height * cellWords];
+		anonymous = new long[reserved.length];
+		owners = new ReservationOwners(width * height, timeDimension, 64);
+	}
+	
+	@Override
+	public boolean matches(TileMap map, int timeDimension) {
+		return this.width == map.getWidthInTiles() && this.height == map.getHeightInTiles() && this.timeDimension == timeDimension;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getTimeDimension() {
+		return timeDimension;
+	}
+	
+	@Override
+	public void advance() {
+		if (timeDimension == 0)
+			return;
+		owners.advance(this::clearBit);
+		head = (head + 1) % timeDimension;
+	}
+	
+	@Override
+	public void clearReservations() {
+		owners.clear(this::clearBit);
+		Arrays.fill(blockedCells, 0);
+	}
+	
+	@Override
+	public void release(int owner) {
+		owners.release(owner, this::clearBit);
+	}
+	
+	private int slot(int t) {
+		int slot = head + t;
+		return slot >= timeDimension ? slot - timeDimension : slot;
+	}
+	
+	private int word(int cell, int slot) {
+		return cell * cellWords + (slot >>> 6);
+	}
+	
+	private void clearBit(int cell, int t) {
+		int slot = slot(t);
+		reserved[word(cell, slot)] &= ~(1L << slot);
+		anonymous[word(cell, slot)] &= ~(1L << slot);
+	}
+	
+	private boolean isObstacle(int cell) {
+		return ((obstacles[cell >>> 6] | blockedCells[cell >>> 6]) & (1L << cell)) != 0;
+	}
+	
+	private boolean isReserved(int cell, int t, IntPredicate blockingOwners) {
+		int slot = slot(t);
+		int word = word(cell, slot);
+		if ((reserved[word] & (1L << slot)) == 0)
+			return false;
+		if (blockingOwners == null || (anonymous[word] & (1L << slot)) != 0)
+			return true;
+		return blockingOwners.test(owners.get(cell, t));
+	}
+	
+	/**
+	 * @return bits of the slots from (inclusive) to (exclusive) in the word w of a cell
+	 */
+	private static long slotsMask(int from, int to, int w) {
+		from = Math.max(from - (w << 6), 0);
+		to = Math.min(to - (w << 6), 64);
+		if (from >= to)
+			return 0;
+		return (to == 64 ? -1L : (1L << to) - 1) & (-1L << from);
+	}
+	
+	/**
+	 * @return bits of the slots of the times t .. timeDimension - 1 in the word w of a cell
+	 */
+	private long windowMask(int t, int w) {
+		int from = head + t;
+		if (from >= timeDimension)
+			return slotsMask(from - timeDimension, head, w);
+		return slotsMask(from, timeDimension, w) | slotsMask(0, head, w);
+	}
+	
+	/**
+	 * @param bits reserved slots of the cell in its word w
+	 * @return bits of the slots reserved by the blocking owners
+	 */
+	private long blockingBits(int cell, int w, long bits, IntPredicate blockingOwners) {
+		long blocking = 0;
+		for (; bits != 0; bits &= bits - 1) {
+			int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+			int t = slot >= head ? slot - head : slot + timeDimension - head;
+			if (blockingOwners.test(owners.get(cell, t)))
+				blocking |= Long.lowestOneBit(bits);
+		}
+		return blocking;
+	}
+	
+	@Override
+	public boolean isObstacle(int x, int y) {
+		return isObstacle(y * width + x);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t) {
+		return isBlocked(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t, IntPredicate blockingOwners) {
+		int cell = y * width + x;
+		return isObstacle(cell) || isReserved(cell, t, blockingOwners);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y) {
+		int cell = y * width + x;
+		if (isObstacle(cell))
+			return true;
+		for (int w = 0; w < cellWords; w++) {
+			long window = slotsMask(0, timeDimension, w);
+			int word = cell * cellWords + w;
+			if ((reserved[word] & window) != window)
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t) {
+		return isFreeFrom(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t, IntPredicate blockingOwners) {
+		int cell = y * width + x;
+		if (t >= timeDimension)
+			return true;
+		if (isObstacle(cell))
+			return false;
+		for (int w = 0; w < cellWords; w++) {
+			long window = windowMask(t, w);
+			int word = cell * cellWords + w;
+			long bits = reserved[word] & window;
+			if (bits == 0)
+				continue;
+			if (blockingOwners == null || (anonymous[word] & window) != 0 || blockingBits(cell, w, bits, blockingOwners) != 0)
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public int getOwner(int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		int cell = y * width + x;
+		int slot = slot(t);
+		if ((reserved[word(cell, slot)] & (1L << slot)) == 0)
+			return NO_OWNER;
+		return owners.get(cell, t);
+	}
+	
+	@Override
+	public boolean reserve(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return false;
+		int previous = reserve(owner, y * width + x, t, false);
+		return previous == NO_OWNER || previous == owner;
+	}
+	
+	@Override
+	public int takeOver(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		return reserve(owner, y * width + x, t, true);
+	}
+	
+	private int reserve(int owner, int cell, int t, boolean takeOver) {
+		int previous = owners.reserve(owner, cell, t, takeOver);
+		int slot = slot(t);
+		reserved[word(cell, slot)] |= 1L << slot;
+		// ANONYMOUS reservation is never taken over
+		if (owner == ANONYMOUS && (previous == NO_OWNER || previous == ANONYMOUS))
+			anonymous[word(cell, slot)] |= 1L << slot;
+		return previous;
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int t) {
+		if (xytValid(x, y, t))
+			reserve(ANONYMOUS, y * width + x, t, false);
+	}
+	
+	@Override
+	public void setBlocked(int x, int y) {
+		if (xytValid(x, y, 0)) {
+			int cell = y * width + x;
+			blockedCells[cell >>> 6] |= 1L << cell;
+		}
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int fromT, int toT) {
+		fromT = Math.max(fromT, 0);
+		toT = Math.min(toT, timeDimension);
+		for (int t = fromT; t < toT; t++) {
+			setBlocked(x, y, t);
+		}
+	}
+	
+	/**
+	 * Replaces the static obstacles layer with the obstacles of the map.
+	 * It's rewritten only if the map has been changed since the last call.
+	 */
+	@Override
+	public void setBlocked(TileMap map) {
+		if (map.getVersion() == obstaclesVersion)
+			return;
+		Arrays.fill(obstacles, 0);
+		int w = Math.min(width, map.getWidthInTiles());
+		int h = Math.min(height, map.getHeightInTiles());
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (map.blocked(x, y)) {
+					int cell = y * width + x;
+					obstacles[cell >>> 6] |= 1L << cell;
+				}
+			}
+		}
+		obstaclesVersion = map.getVersion();
+	}
+	
+}
@@ -0,0 +1,206 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.function.IntPredicate;
+
+import igrek.robopath.common.LongHashSet;
+import igrek.robopath.common.TileMap;
+
+/**
+ * Reservation table for large maps with few robots. Static obstacles are read from the map,
+ * only the reserved nodes (robots' paths) are stored - in a primitive hash map of nodes to their owners.
+ */
+public class SparseReservationTable implements TaggedReservationTable {
+	
+	private int width;
+	private int height;
+	private int timeDimension;
+	
+	/** static obstacles, blocked all the time */
+	private TileMap obstacles;
+	/** cells blocked all the time (besides the obstacles) */
+	private LongHashSet blockedCells;
+	/** reserved (x, y, t) nodes */
+	private ReservationOwners reserved;
+	
+	public SparseReservationTable(int width, int height, int timeDimension, int robots) {
+		this.width = width;
+		this.height = height;
+		this.timeDimension = timeDimension;
+		blockedCells = new LongHashSet(robots);
+		reserved = new ReservationOwners(width * height, timeDimension, robots * (timeDimension + 1));
+	}
+	
+	/**
+	 * @return estimated number of bytes occupied by the table
+	 */
+	public static long estimateMemory(int timeDimension, int robots) {
+		// each robot reserves about one node in every time step
+		return 24L * robots * (timeDimension + 1) + 16L * robots;
+	}
+	
+	@Override
+	public boolean matches(TileMap map, int timeDimension) {
+		return this.width == map.getWidthInTiles() && this.height == map.getHeightInTiles() && this.timeDimension == timeDimension;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getTimeDimension() {
+		return timeDimension;
+	}
+	
+	private int cell(int x, int y) {
+		return y * width + x;
+	}
+	
+	private boolean isBlockedCell(int x, int y) {
+		if (obstacles != null && obstacles.blocked(x, y))
+			return true;
+		return !blockedCells.isEmpty() && blockedCells.contains(cell(x, y));
+	}
+	
+	private boolean isReserved(int cell, int t, IntPredicate blockingOwners) {
+		int owner = reserved.get(cell, t);
+		if (owner == NO_OWNER)
+			return false;
+		return blockingOwners == null || owner == ANONYMOUS || blockingOwners.test(owner);
+	}
+	
+	@Override
+	public boolean isObstacle(int x, int y) {
+		return isBlockedCell(x, y);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t) {
+		return isBlocked(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y, int t, IntPredicate blockingOwners) {
+		return isBlockedCell(x, y) || (!reserved.isEmpty() && isReserved(cell(x, y), t, blockingOwners));
+	}
+	
+	@Override
+	public boolean isBlocked(int x, int y) {
+		if (isBlockedCell(x, y))
+			return true;
+		int cell = cell(x, y);
+		for (int t = 0; t < timeDimension; t++) {
+			if (!isReserved(cell, t, null))
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t) {
+		return isFreeFrom(x, y, t, null);
+	}
+	
+	@Override
+	public boolean isFreeFrom(int x, int y, int t, IntPredicate blockingOwners) {
+		if (t >= timeDimension)
+			return true;
+		if (isBlockedCell(x, y))
+			return false;
+		if (reserved.isEmpty())
+			return true;
+		int cell = cell(x, y);
+		for (; t < timeDimension; t++) {
+			if (isReserved(cell, t, blockingOwners))
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public int getOwner(int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		return reserved.get(cell(x, y), t);
+	}
+	
+	@Override
+	public boolean reserve(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return false;
+		int previous = reserved.reserve(owner, cell(x, y), t, false);
+		return previous == NO_OWNER || previous == owner;
+	}
+	
+	@Override
+	public int takeOver(int owner, int x, int y, int t) {
+		if (!xytValid(x, y, t))
+			return NO_OWNER;
+		return reserved.reserve(owner, cell(x, y), t, true);
+	}
+	
+	@Override
+	public void release(int owner) {
+		reserved.release(owner, null);
+	}
+	
+	@Override
+	public void clearReservations() {
+		reserved.clear(null);
+		blockedCells.clear();
+	}
+	
+	@Override
+	public void advance() {
+		if (timeDimension > 0)
+			reserved.advance(null);
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int t) {
+		if (xytValid(x, y, t))
+			reserved.reserve(ANONYMOUS, cell(x, y), t, false);
+	}
+	
+	@Override
+	public void setBlocked(int x, int y) {
+		if (xytValid(x, y, 0))
+			blockedCells.add(cell(x, y));
+	}
+	
+	@Override
+	public void setBlocked(int x, int y, int fromT, int toT) {
+		fromT = Math.max(fromT, 0);
+		toT = Math.min(toT, timeDimension);
+		for (int t = fromT; t < toT; t++) {
+			setBlocked(x, y, t);
+		}
+	}
+	
+	/**
+	 * Map of the same size replaces the static obstacles - it's consulted directly, so it shouldn't be modified later.
+	 * Obstacles of other maps are copied.
+	 */
+	@Override
+	public void setBlocked(TileMap map) {
+		if (map.getWidthInTiles() == width && map.getHeightInTiles() == height) {
+			obstacles = map;
+			return;
+		}
+		int w = Math.min(width, map.getWidthInTiles());
+		int h = Math.min(height, map.getHeightInTiles());
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (map.blocked(x, y))
+					setBlocked(x, y);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,27 @@
+package igrek.robopath.pathfinder.whca;
+
+import igrek.robopath.common.TileMap;
+
+/**
+ * Reservation table, which knows the owner (robot id) of each reservation.
+ * Time window is moved along with the simulation by {@link #advance()}.
+ */
+public interface TaggedReservationTable extends TaggedReservationView, ReservationTable {
+	
+	/**
+	 * @return true if the table can be reused for given map and time window
+	 */
+	boolean matches(TileMap map, int timeDimension);
+	
+	/**
+	 * removes all the reservations, static obstacles are kept
+	 */
+	void clearReservations();
+	
+	/**
+	 * Moves the time window one step forward: time 1 becomes time 0 and the new last time step is free
+	 * (except the cells blocked all the time).
+	 */
+	void advance();
+	
+}
@@ -0,0 +1,102 @@
+package igrek.robopath.pathfinder.whca;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Reservations, which know their owners (robot ids).
+ * Owner's reservations can be released or replaced with a new path, without rebuilding the whole table.
+ */
+public interface TaggedReservationView extends ReservationView {
+	
+	/** node is not reserved (free or a static obstacle) */
+	int NO_OWNER = Integer.MIN_VALUE;
+	/** node reserved without the owner (with setBlocked methods) - can't be released or taken over */
+	int ANONYMOUS = Integer.MIN_VALUE + 1;
+	
+	/**
+	 * @return true if the cell is blocked all the time regardless of the owners (e.g. static obstacle)
+	 */
+	boolean isObstacle(int x, int y);
+	
+	/**
+	 * @return id of the owner, which holds the node, ANONYMOUS or NO_OWNER
+	 */
+	int getOwner(int x, int y, int t);
+	
+	/**
+	 * reserves the node, if it's not held by another owner (first owner wins)
+	 * @return true if the node is reserved by the owner
+	 */
+	boolean reserve(int owner, int x, int y, int t);
+	
+	/**
+	 * reserves the node, taking it over from the current owner (unless it's ANONYMOUS)
+	 * @return previous owner of the node or NO_OWNER
+	 */
+	int takeOver(int owner, int x, int y, int t);
+	
+	/**
+	 * removes all reservations of the owner
+	 */
+	void release(int owner);
+	
+	/**
+	 * Replaces the owner's reservations with a new path: every node of the path is reserved along with
+	 * the same position in the next time step, the last position is held till the end of the time window.
+	 * Nodes of the path are taken over from other owners, the other nodes are reserved only if they're free.
+	 * @param path new path or null - only releases the reservations
+	 * @return owners, whose reservations have been taken over (their paths are no longer valid)
+	 */
+	default Set<Integer> replacePath(int owner, Path path) {
+		return replacePath(owner, path, true, null);
+	}
+	
+	/**
+	 * @param holdLast     if false, the last position is reserved only in the next time step
+	 * @param displaceable owners, from which the nodes next to the path can be taken over too
+	 *                     (e.g. robots with lower priorities), null - none
+	 * @see #replacePath(int, Path)
+	 */
+	default Set<Integer> replacePath(int owner, Path path, boolean holdLast, IntPredicate displaceable) {
+		release(owner);
+		Set<Integer> displaced = new HashSet<>();
+		if (path == null || path.getLength() == 0)
+			return displaced;
+		for (int i = 0; i < path.getLength(); i++) {
+			takeOver(owner, path.getX(i), path.getY(i), path.getT(i), displaced);
+			hold(owner, path.getX(i), path.getY(i), path.getT(i) + 1, displaceable, displaced);
+		}
+		if (!holdLast)
+			return displaced;
+		int last = path.getLength() - 1;
+		for (int t = path.getT(last) + 2; t < getTimeDimension(); t++) {
+			hold(owner, path.getX(last), path.getY(last), t, displaceable, displaced);
+		}
+		return displaced;
+	}
+	
+	default void takeOver(int owner, int x, int y, int t, Set<Integer> displaced) {
+		if (!xytValid(x, y, t))
+			return;
+		int previous = takeOver(owner, x, y, t);
+		if (previous != NO_OWNER && previous != ANONYMOUS && previous != owner)
+			displaced.add(previous);
+	}
+	
+	/**
+	 * reserves the node, if it's free or held by a displaceable owner
+	 */
+	default void hold(int owner, int x, int y, int t, IntPredicate displaceable, Set<Integer> displaced) {
+		if (!xytValid(x, y, t))
+			return;
+		int previous = getOwner(x, y, t);
+		if (previous != NO_OWNER && previous != ANONYMOUS && previous != owner && displaceable != null && displaceable.test(previous)) {
+			takeOver(owner, x, y, t, displaced);
+		} else {
+			reserve(owner, x, y, t);
+		}
+	}
+	
+}
@@ -3,182 +3,345 @@ package igrek.robopath.pathfinder.whca;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Optional;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
 
-import igrek.robopath.common.BiHashMap;
+import igrek.robopath.common.IndexedHeap;
 import igrek.robopath.common.TileMap;
-import igrek.robopath.pathfinder.astar.Astar2DPathFinder;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.pathfinder.rra.DistanceFieldCache;
+import igrek.robopath.pathfinder.rra.ReverseResumableAstar;
 
+/**
+ * Space-time A* search against a reservation table.
+ * Robot can't get further than T - 1 cells from the start within the time window,
+ * so the search state is kept only for the box of (2T - 1) x (2T - 1) cells around the start (cut to the map),
+ * in flat arrays indexed by ((t * boxHeight) + y - boxY) * boxWidth + x - boxX.
+ * Memory doesn't depend on the map size, only on the time window.
+ * The arrays are reused between searches (also for different robots and reservation tables)
+ * and only the nodes touched by the current search are reset, using the search generation stamp.
+ */
 public class WHCAPathFinder {
 	
+	private static final byte NEW = 0;
+	private static final byte OPEN = 1;
+	private static final byte CLOSED = 2;
+	/** neighbours offsets in order of evaluation */
+	private static final int[] NEIGHBOUR_DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+	private static final int[] NEIGHBOUR_DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+	
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	
-	/** The set of nodes that have been searched through */
-	private List<Node> closed = new ArrayList<>();
+	/** The path cost for the node (g) */
+	private float[] costs = new float[0];
+	/** The heuristic cost of the node (h) */
+	private float[] heuristics = new float[0];
+	/** The parent node, how we reached it in the search */
+	private int[] parents = new int[0];
+	private byte[] states = new byte[0];
+	/** search generation, in which the node was visited last time */
+	private int[] stamps = new int[0];
+	/** position in the closed nodes list, when the node was closed last time */
+	private int[] closedAt = new int[0];
+	private int generation = 0;
 	/** The set of nodes that we do not yet consider fully searched */
-	private SortedList<Node> open = new SortedList<>();
-	private Node[][][] nodes;
+	private IndexedHeap open = new IndexedHeap(0);
+	/** The nodes that have been searched through, in order of closing */
+	private int[] closed = new int[16];
+	private int closedCount = 0;
+	/** cells reachable from the start in the current search */
+	private int boxX;
+	private int boxY;
+	private int boxWidth;
+	private int boxHeight;
 	
-	private ReservationTable reservation;
+	private ReservationView reservation;
+	/** owners, which reservations block the searches (null - all) */
+	private IntPredicate blockingOwners;
+	/** reservation queries of the last search, null - not recorded */
+	private ReservationLookups lookups;
 	private TileMap map;
-	private BiHashMap<Integer, Integer, igrek.robopath.pathfinder.astar.Path> heuristicCache = new BiHashMap<>();
+	/** true distance heuristics (reverse searches from targets), kept between the searches */
+	private DistanceFieldCache distanceFields;
+	/** heuristic for the current search */
+	private ReverseResumableAstar heuristic;
+	/** counters of the current search, added to the metrics when it's finished */
+	private PlanningMetrics metrics;
+	private int expandedCount;
+	private int generatedCount;
+	private int lookupsCount;
+	
+	public WHCAPathFinder(ReservationView reservation, TileMap map) {
+		this(reservation, map, new DistanceFieldCache());
+	}
 	
-	public WHCAPathFinder(ReservationTable reservation, TileMap map) {
+	public WHCAPathFinder(ReservationView reservation, TileMap map, DistanceFieldCache distanceFields) {
 		this.reservation = reservation;
 		this.map = map;
+		this.distanceFields = distanceFields;
+	}
+	
+	/**
+	 * changes the reservation table for the next searches, search buffers are kept
+	 * @param reservation new reservation table
+	 */
+	public void setReservationTable(ReservationView reservation) {
+		this.reservation = reservation;
+	}
+	
+	/**
+	 * Reservations of other owners are taken into account only if they satisfy the predicate
+	 * (e.g. to ignore robots with lower priorities). Set for each search, as the finders may be shared by the robots.
+	 * @param blockingOwners predicate or null - all reservations are blocking
+	 */
+	public void setBlockingOwners(IntPredicate blockingOwners) {
+		this.blockingOwners = blockingOwners;
+	}
+	
+	/**
+	 * @param lookups record of the reservation queries of the next searches (cleared by each search), null - not recorded
+	 */
+	public void setLookups(ReservationLookups lookups) {
+		this.lookups = lookups;
+	}
+	
+	/**
+	 * changes the static map for the next searches, search buffers are kept
+	 * @param map new map
+	 */
+	public void setMap(TileMap map) {
+		this.map = map;
 	}
 	
+	/**
+	 * @param distanceFields distance fields cache, which may be shared with other planners
+	 */
+	public void setDistanceFieldCache(DistanceFieldCache distanceFields) {
+		this.distanceFields = distanceFields;
+	}
+	
+	/**
+	 * @param metrics metrics collecting the search counters, may be null
+	 */
+	public void setMetrics(PlanningMetrics metrics) {
+		this.metrics = metrics;
+	}
 	
 	public Path findPath(int sx, int sy, int tx, int ty) {
+		expandedCount = 0;
+		generatedCount = 0;
+		lookupsCount = 0;
+		if (lookups != null)
+			lookups.clear();
+		Path path = search(sx, sy, tx, ty);
+		if (metrics != null)
+			metrics.addSearch(expandedCount, generatedCount, lookupsCount);
+		return path;
+	}
+	
+	private Path search(int sx, int sy, int tx, int ty) {
 		// initial state for A*. The closed group is empty. Only the starting
 		// tile is in the open list and it'e're already there
-		closed.clear();
-		open.clear();
-		heuristicCache.clear();
-		
-		nodes = new Node[reservation.getWidth()][reservation.getHeight()][reservation.getTimeDimension()];
-		for (int x = 0; x < reservation.getWidth(); x++) {
-			for (int y = 0; y < reservation.getHeight(); y++) {
-				for (int t = 0; t < reservation.getTimeDimension(); t++) {
-					nodes[x][y][t] = new Node(x, y, t);
-					nodes[x][y][t].setCost(maxF());
-				}
-			}
-		}
+		nextGeneration(sx, sy);
+		heuristic = reverseSearch(sx, sy, tx, ty);
+		int layer = boxWidth * boxHeight;
+		int tMax = reservation.getTimeDimension() - 1;
 		
 		//Dodajemy pole startowe (lub węzeł) do Listy Otwartych.
-		Node startNode = nodes[sx][sy][0];
-		startNode.setCost(0);
-		Float heuristicCost = getHeuristicCost(sx, sy, 0, tx, ty);
-		if (heuristicCost == null) {
-			heuristicCost = maxF(); // FIXME kind of max
-		}
-		startNode.setHeuristic(heuristicCost);
-		open.add(startNode);
-		
-		// first check, if the destination is blocked, we can't get there
-		//		if (reservation.isBlocked(tx, ty))
-		//			return null;
-		//		//jeśli punkt docelowy jest punktem startowym - brak ścieżki
-		//		if (sx == tx && sy == ty)
-		//			return null;
+		int startNode = (sy - boxY) * boxWidth + sx - boxX;
+		touch(startNode);
+		costs[startNode] = 0;
+		float heuristicCost = getHeuristicCost(sx, sy, 0, tx, ty);
+		heuristics[startNode] = heuristicCost;
+		states[startNode] = OPEN;
+		open.push(startNode, heuristicCost);
 		
 		//dopóki lista otwartych nie jest pusta
 		while (!open.isEmpty()) {
 			// pull out the first node in our open list, this is determined to
 			// be the most likely to be the next step based on our heuristic
 			//Szukamy pola o najniższej wartości F na Liście Otwartych. Czynimy je aktualnym polem
-			Node current = open.first();
+			int current = open.poll();
+			expandedCount++;
+			int cx = boxX + current % boxWidth;
+			int cy = boxY + (current / boxWidth) % boxHeight;
+			int ct = current / layer;
 			//jeśli current jest węzłem docelowym
-			if (current.getX() == tx && current.getY() == ty && current.getT() == reservation.getTimeDimension() - 1) {
-				// At this point we've definitely found a path so we can uses the parent
-				// references of the nodes to find out way from the target location back
-				// to the start recording the nodes on the way.
-				//Zapisujemy ścieżkę. Krocząc w kierunku od pola docelowego do startowego, przeskakujemy z kolejnych pól na im przypisane pola rodziców, aż do osiągnięcia pola startowego.
-				Path path = new Path();
-				Node node = nodes[tx][ty][current.getT()];
-				while (node != startNode) {
-					path.prependStep(node.getX(), node.getY(), node.getT());
-					node = node.getParent();
-					if (node == null)
-						throw new AssertionError("target == null");
+			if (cx == tx && cy == ty && ct == tMax) {
+				return buildPath(startNode, current);
+			}
+			// goal is free till the end of the time window - the rest is waiting there at no cost
+			if (cx == tx && cy == ty) {
+				lookupsCount++;
+				if (isFreeFrom(tx, ty, ct + 1)) {
+					Path path = buildPath(startNode, current);
+					for (int t = ct + 1; t <= tMax; t++) {
+						path.appendStep(tx, ty, t);
+					}
+					return path;
 				}
-				path.prependStep(sx, sy, 0);
-				return path;
 			}
 			//Aktualne pole przesuwamy do Listy Zamkniętych.
-			open.remove(current);
-			closed.add(current);
+			close(current);
 			// search through all the neighbours of the current node evaluating
 			// them as next steps
+			int t = ct + 1;
+			if (t > tMax)
+				continue;
 			//Dla każdego z wybranych przyległych pól (sasiad) do pola aktualnego
-			List<Node> neighbours = availableNeighbours(current);
-			for (Node neighbour : neighbours) {
-				
-				//jeśli NIE-MOŻNA go przejść, ignorujemy je.
-				if (!isValidLocation(sx, sy, neighbour.getX(), neighbour.getY(), neighbour.getT()))
+			// possible waiting in the same place - as the last offer
+			for (int n = 0; n < 9; n++) {
+				int nx = n < 8 ? cx + NEIGHBOUR_DX[n] : cx;
+				int ny = n < 8 ? cy + NEIGHBOUR_DY[n] : cy;
+				// validate out of bounds (the box contains all the cells reachable in the time window)
+				if ((nx < boxX) || (ny < boxY) || (nx >= boxX + boxWidth) || (ny >= boxY + boxHeight))
 					continue;
-				
-				if (!isValidMove(current.getX(), current.getY(), current.getT(), neighbour.getX(), neighbour
-						.getY(), neighbour.getT()))
+				//jeśli NIE-MOŻNA go przejść, ignorujemy je.
+				if (!isValidMove(cx, cy, ct, nx, ny, t))
 					continue;
-				
+				int neighbour = t * layer + (ny - boxY) * boxWidth + nx - boxX;
+				touch(neighbour);
 				// the cost to get to this node is cost the current plus the movement
 				// cost to reach this node. Note that the heursitic value is only used
 				// in the sorted open list
-				float nextStepCost = current.getCost() + getMovementCost(current.getX(), current.getY(), neighbour
-						.getX(), neighbour.getY(), tx, ty);
-				
-				// if the new cost we've determined for this node is lower than
-				// it has been previously makes sure the node hasn'e've
-				// determined that there might have been a better path to get to
-				// this node so it needs to be re-evaluated
-				if (nextStepCost < neighbour.getCost()) {
-					if (open.contains(neighbour)) {
-						open.remove(neighbour);
-					}
-					if (closed.contains(neighbour)) {
-						closed.remove(neighbour);
-					}
-				}
-				// if the node hasn't already been processed and discarded then
-				// reset it's cost to our current cost and add it as a next possible
-				// step (i.e. to the open list)
-				if (!open.contains(neighbour) && !closed.contains(neighbour)) {
-					neighbour.setCost(nextStepCost);
-					heuristicCost = getHeuristicCost(neighbour.getX(), neighbour.getY(), neighbour.getT(), tx, ty);
-					if (heuristicCost == null) {
-						heuristicCost = maxF();
-					}
-					neighbour.setHeuristic(heuristicCost);
-					neighbour.setParent(current);
-					open.add(neighbour);
+				float nextStepCost = costs[current] + getMovementCost(cx, cy, nx, ny, tx, ty);
+				// if the node hasn't been processed yet or we've found a cheaper way to it,
+				// it needs to be (re)evaluated
+				if (states[neighbour] == NEW) {
+					heuristics[neighbour] = getHeuristicCost(nx, ny, t, tx, ty);
+				} else if (nextStepCost >= costs[neighbour]) {
+					continue;
 				}
-				
+				costs[neighbour] = nextStepCost;
+				parents[neighbour] = current;
+				states[neighbour] = OPEN;
+				open.push(neighbour, nextStepCost + heuristics[neighbour]);
+				generatedCount++;
 			}
 		}
 		
 		// time window could be too little - find most promising path
-		Optional<Node> mostPromising = closed.stream()
-				.filter(node -> node.getHeuristic() < maxF()) // not max
-				.min((o1, o2) -> {
-					// first - compare H
-					int cmp = Float.compare(o1.getHeuristic(), o2.getHeuristic());
-					if (cmp != 0)
-						return cmp;
-					// if equal - compare F
-					cmp = Float.compare(o1.getF(), o2.getF());
-					if (cmp != 0)
-						return cmp;
-					// if equal - compare T
-					cmp = Integer.compare(o1.getT(), o2.getT());
-					return cmp;
-				});
-		if (mostPromising.isPresent()) {
-			Path path = new Path();
-			Node target = mostPromising.get();
-			while (target != startNode) {
-				path.prependStep(target.getX(), target.getY(), target.getT());
-				target = target.getParent();
-				if (target == null)
-					throw new AssertionError("target = null - this should not happen");
-			}
-			path.prependStep(sx, sy, 0);
-			
+		int mostPromising = -1;
+		for (int i = 0; i < closedCount; i++) {
+			int node = closed[i];
+			if (closedAt[node] != i) // closed once again later
+				continue;
+			if (heuristics[node] >= maxF()) // not max
+				continue;
+			if (mostPromising < 0 || morePromising(node, mostPromising))
+				mostPromising = node;
+		}
+		if (mostPromising >= 0) {
 			//			reservation.log();
-			//			logger.debug("most promising node: " + mostPromising.get());
-			//			logger.debug("path: " + path);
-			
-			return path;
+			//			logger.debug("most promising node: " + mostPromising);
+			return buildPath(startNode, mostPromising);
 		}
 		
 		// since we'e've run out of search there was no path
 		return null;
 	}
 	
+	/**
+	 * checks the path (e.g. planned against other reservations) against the current reservation table
+	 * @return true if all the moves of the path are still possible
+	 */
+	public boolean isValidPath(Path path) {
+		for (int i = 1; i < path.getLength(); i++) {
+			if (!isValidMove(path.getX(i - 1), path.getY(i - 1), path.getT(i - 1), path.getX(i), path.getY(i), path.getT(i)))
+				return false;
+		}
+		return true;
+	}
+	
+	private boolean morePromising(int node, int best) {
+		// first - compare H
+		int cmp = Float.compare(heuristics[node], heuristics[best]);
+		if (cmp != 0)
+			return cmp < 0;
+		// if equal - compare F
+		cmp = Float.compare(costs[node] + heuristics[node], costs[best] + heuristics[best]);
+		if (cmp != 0)
+			return cmp < 0;
+		// if equal - compare T
+		return node / (boxWidth * boxHeight) < best / (boxWidth * boxHeight);
+	}
+	
+	private Path buildPath(int startNode, int target) {
+		// At this point we've definitely found a path so we can uses the parent
+		// references of the nodes to find out way from the target location back
+		// to the start recording the nodes on the way.
+		//Zapisujemy ścieżkę. Krocząc w kierunku od pola docelowego do startowego, przeskakujemy z kolejnych pól na im przypisane pola rodziców, aż do osiągnięcia pola startowego.
+		int layer = boxWidth * boxHeight;
+		// steps are appended backwards, then reversed
+		Path path = new Path(reservation.getTimeDimension());
+		int node = target;
+		while (node != startNode) {
+			path.appendStep(boxX + node % boxWidth, boxY + (node % layer) / boxWidth, node / layer);
+			node = parents[node];
+			if (node < 0)
+				throw new AssertionError("target = null - this should not happen");
+		}
+		path.appendStep(boxX + node % boxWidth, boxY + node / boxWidth, 0);
+		path.reverse();
+		return path;
+	}
+	
+	/**
+	 * prepares buffers for the next search from the start cell
+	 */
+	private void nextGeneration(int sx, int sy) {
+		int range = Math.max(reservation.getTimeDimension() - 1, 0);
+		boxX = Math.max(sx - range, 0);
+		boxY = Math.max(sy - range, 0);
+		boxWidth = Math.min(sx + range, reservation.getWidth() - 1) - boxX + 1;
+		boxHeight = Math.min(sy + range, reservation.getHeight() - 1) - boxY + 1;
+		int nodes = boxWidth * boxHeight * reservation.getTimeDimension();
+		if (stamps.length < nodes) {
+			costs = new float[nodes];
+			heuristics = new float[nodes];
+			parents = new int[nodes];
+			states = new byte[nodes];
+			stamps = new int[nodes];
+			closedAt = new int[nodes];
+			generation = 0;
+		}
+		open.ensureCapacity(nodes);
+		open.clear();
+		closedCount = 0;
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// stamps overflow - forget all
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+	}
+	
+	/**
+	 * @return number of the nodes, which the search buffers can hold
+	 */
+	int nodesCapacity() {
+		return stamps.length;
+	}
+	
+	/**
+	 * resets the node state if it hasn't been visited during the current search yet
+	 */
+	private void touch(int node) {
+		if (stamps[node] != generation) {
+			stamps[node] = generation;
+			parents[node] = -1;
+			states[node] = NEW;
+		}
+	}
+	
+	private void close(int node) {
+		states[node] = CLOSED;
+		if (closedCount == closed.length)
+			closed = Arrays.copyOf(closed, closedCount * 2);
+		closedAt[node] = closedCount;
+		closed[closedCount++] = node;
+	}
+	
 	private float maxF() {
 		return (float) (map.getWidthInTiles() * map.getHeightInTiles() * 2); // FIXME kind of max
 	}
@@ -188,7 +351,8 @@ public class WHCAPathFinder {
 				.getTimeDimension())
 			return false;
 		
-		if (reservation.isBlocked(x, y, t))
+		lookupsCount++;
+		if (isBlocked(x, y, t))
 			return false;
 		
 		return true;
@@ -203,8 +367,8 @@ public class WHCAPathFinder {
 		int dy = abs(sy - y);
 		// diagonal move
 		if (dx == 1 && dy == 1) {
-			if (reservation.isBlocked(x, y, t) || reservation.isBlocked(sx, sy, t) || reservation.isBlocked(sx, y, t) || reservation
-					.isBlocked(x, sy, t)) {
+			lookupsCount += 4;
+			if (isBlocked(x, y, t) || isBlocked(sx, sy, t) || isBlocked(sx, y, t) || isBlocked(x, sy, t)) {
 				return false;
 			}
 		}
@@ -212,6 +376,20 @@ public class WHCAPathFinder {
 		return true;
 	}
 	
+	private boolean isBlocked(int x, int y, int t) {
+		boolean blocked = reservation.isBlocked(x, y, t, blockingOwners);
+		if (lookups != null)
+			lookups.addBlocked(x, y, t, blocked);
+		return blocked;
+	}
+	
+	private boolean isFreeFrom(int x, int y, int t) {
+		boolean free = reservation.isFreeFrom(x, y, t, blockingOwners);
+		if (lookups != null)
+			lookups.addFreeFrom(x, y, t, free);
+		return free;
+	}
+	
 	private int abs(int x) {
 		return x >= 0 ? x : -x;
 	}
@@ -230,48 +408,26 @@ public class WHCAPathFinder {
 		return (float) Math.hypot(tx - x, ty - y);
 	}
 	
-	protected Float getHeuristicCost(int x, int y, int t, int tx, int ty) {
+	/**
+	 * @return reverse search from the target - reused if it's still valid for the current map
+	 */
+	private ReverseResumableAstar reverseSearch(int sx, int sy, int tx, int ty) {
+		return distanceFields.get(map, tx, ty, sx, sy, metrics);
+	}
+	
+	/**
+	 * @return true distance to the target (ignoring other robots) or maxF if target is unreachable
+	 */
+	protected float getHeuristicCost(int x, int y, int t, int tx, int ty) {
 		if (x == tx && y == ty)
 			return 0f;
-		igrek.robopath.pathfinder.astar.Path path = heuristicCache.get(x, y);
-		if (path == null) {
-			Astar2DPathFinder pathFinder = new Astar2DPathFinder(map);
-			path = pathFinder.findPath(x, y, tx, ty);
-			if (path == null) {
-				// there is no path
-				return null;
-			}
-			heuristicCache.put(x, y, path);
+		int distance = heuristic.getDistance(x, y);
+		if (distance == ReverseResumableAstar.UNREACHABLE) {
+			// there is no path
+			return maxF(); // FIXME kind of max
 		}
-		float distance = path.getLength() - 1;
-		if (distance < 0)
-			throw new AssertionError("distance < 0");
 		return distance;
 		//		return (distance) * (1 + ((float) t) / reservation.getTimeDimension());
 	}
 	
-	private List<Node> availableNeighbours(Node current) {
-		List<Node> neighbours = new LinkedList<>();
-		int t = current.getT() + 1;
-		if (t < reservation.getTimeDimension()) {
-			for (int dx = -1; dx <= 1; dx++) {
-				for (int dy = -1; dy <= 1; dy++) {
-					if (dx == 0 && dy == 0)
-						continue;
-					// determine the location of the neighbour and evaluate it
-					int xp = current.getX() + dx;
-					int yp = current.getY() + dy;
-					// validate out of bounds
-					if ((xp < 0) || (yp < 0) || (xp >= reservation.getWidth()) || (yp >= reservation
-							.getHeight()))
-						continue;
-					neighbours.add(nodes[xp][yp][t]);
-				}
-			}
-			// possible waiting in the same place - the last offer
-			neighbours.add(nodes[current.getX()][current.getY()][t]);
-		}
-		return neighbours;
-	}
-	
 }
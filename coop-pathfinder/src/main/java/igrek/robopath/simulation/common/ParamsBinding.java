@@ -0,0 +1,13 @@
+package igrek.robopath.simulation.common;
+
+/**
+ * Two-way binding of the simulation parameters with the UI controls.
+ * Parameters without a binding (e.g. headless simulation) are plain values.
+ */
+public interface ParamsBinding<P> {
+	
+	void readFromUI(P params);
+	
+	void sendToUI(P params);
+	
+}
@@ -0,0 +1,143 @@
+package igrek.robopath.simulation.headless;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import igrek.robopath.mazegenerator.NoNextFieldException;
+import igrek.robopath.metrics.PlanningMetrics;
+
+/**
+ * Command line runner of the headless simulations (no JavaFX nor Spring needed).
+ * Runs the scenario with consecutive seeds and prints the results of each run and a summary, e.g.:
+ * <pre>
+ * --algorithm=whca --map=30x30 --robots=20 --runs=100 --incremental
+ * </pre>
+ */
+public class HeadlessRunner {
+	
+	private static final String USAGE = "usage: [--algorithm=whca|lra] [--map=WxH] [--robots=N] [--window=T] [--maze | --density=D]"
+			+ " [--seed=S] [--runs=N] [--steps=N] [--incremental] [--parallel] [--clusters] [--no-promotion] [--no-scaling] [--dstar-lite] [--states] [--metrics=FILE]";
+	
+	/**
+	 * logging config without Spring Boot defaults - has to be set before any logger is created
+	 */
+	static void useHeadlessLogging() {
+		if (System.getProperty("logback.configurationFile") == null)
+			System.setProperty("logback.configurationFile", "logback-headless.xml");
+	}
+	
+	public static void main(String[] args) throws IOException {
+		useHeadlessLogging();
+		Scenario scenario = new Scenario();
+		int runs = 1;
+		boolean printStates = false;
+		String metricsFile = null;
+		try {
+			scenario.maze = false;
+			for (String arg : args) {
+				String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+				String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : null;
+				switch (name) {
+					case "--algorithm":
+						scenario.algorithm = Scenario.Algorithm.valueOf(value.toUpperCase());
+						break;
+					case "--map":
+						String[] size = value.toLowerCase().split("x");
+						scenario.mapSizeW = Integer.parseInt(size[0]);
+						scenario.mapSizeH = Integer.parseInt(size.length > 1 ? size[1] : size[0]);
+						break;
+					case "--robots":
+						scenario.robotsCount = Integer.parseInt(value);
+						break;
+					case "--window":
+						scenario.timeDimension = Integer.parseInt(value);
+						break;
+					case "--maze":
+						scenario.maze = true;
+						break;
+					case "--density":
+						scenario.obstaclesDensity = Double.parseDouble(value);
+						break;
+					case "--seed":
+						scenario.seed = Long.parseLong(value);
+						break;
+					case "--runs":
+						runs = Integer.parseInt(value);
+						break;
+					case "--steps":
+						scenario.maxSteps = Integer.parseInt(value);
+						break;
+					case "--incremental":
+						scenario.incrementalReplanning = true;
+						break;
+					case "--parallel":
+						scenario.parallelPlanning = true;
+						break;
+					case "--clusters":
+						scenario.spatialClustering = true;
+						break;
+					case "--no-promotion":
+						scenario.prioritiesPromotion = false;
+						break;
+					case "--no-scaling":
+						scenario.timeWindowScaling = false;
+						break;
+					case "--dstar-lite":
+						scenario.dstarLite = true;
+						break;
+					case "--states":
+						printStates = true;
+						break;
+					case "--metrics":
+						metricsFile = value;
+						break;
+					default:
+						throw new IllegalArgumentException("unknown option: " + arg);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage() != null ? e.getMessage() : e.toString());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		
+		int successful = 0;
+		int skipped = 0;
+		long stepsSum = 0;
+		long timeSum = 0;
+		long maxStepTime = 0;
+		// planning metrics of each run
+		try (Writer metricsOut = metricsFile != null ? new BufferedWriter(new FileWriter(metricsFile)) : null) {
+			if (metricsOut != null)
+				metricsOut.write("seed,successful," + PlanningMetrics.csvHeader() + "\n");
+			for (int run = 0; run < runs; run++) {
+				Scenario runScenario = scenario.copy();
+				runScenario.seed = scenario.seed + run;
+				HeadlessSimulation simulation;
+				try {
+					simulation = new HeadlessSimulation(runScenario);
+				} catch (NoNextFieldException e) {
+					System.out.println(runScenario + ": skipped - " + e.getMessage());
+					skipped++;
+					continue;
+				}
+				SimulationResult result = simulation.run(printStates ? System.out::println : null);
+				System.out.println(result);
+				if (metricsOut != null)
+					metricsOut.write(runScenario.seed + "," + result.isSuccessful() + "," + simulation.getMetrics().csvRow() + "\n");
+				if (result.isSuccessful()) {
+					successful++;
+					stepsSum += result.getSteps();
+					timeSum += result.getTotalTimeNanos();
+				}
+				maxStepTime = Math.max(maxStepTime, result.getMaxStepTimeNanos());
+			}
+		}
+		double avgFactor = successful > 0 ? 1.0 / successful : 0;
+		System.out.println(String.format("summary: successful %d/%d, skipped %d, avg steps %f, avg time %.3f ms, max step %.3f ms", successful, runs - skipped, skipped, avgFactor * stepsSum, avgFactor * timeSum / 1e6, maxStepTime / 1e6));
+	}
+	
+}
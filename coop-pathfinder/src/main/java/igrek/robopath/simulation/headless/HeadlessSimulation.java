@@ -0,0 +1,208 @@
+package igrek.robopath.simulation.headless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import igrek.robopath.common.Point;
+import igrek.robopath.common.TileMap;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.mazegenerator.NoNextFieldException;
+import igrek.robopath.simulation.lra.LRAController;
+import igrek.robopath.simulation.lra.LRASimulationParams;
+import igrek.robopath.simulation.whca.WHCAController;
+import igrek.robopath.simulation.whca.WHCASimulationParams;
+
+/**
+ * Simulation of the scenario without the UI and Spring context - steps are done as fast as possible.
+ * Map, robots and targets depend only on the scenario (its seed).
+ */
+public class HeadlessSimulation {
+	
+	private final Scenario scenario;
+	private WHCAController whcaController;
+	private LRAController lraController;
+	private int step = 0;
+	
+	/**
+	 * @throws NoNextFieldException when there are not enough free cells for the robots
+	 */
+	public HeadlessSimulation(Scenario scenario) {
+		this.scenario = scenario;
+		Random random = new Random(scenario.seed);
+		MazeGenerator mazegen = new MazeGenerator(random);
+		createController(random, mazegen);
+		if (whcaController != null) {
+			generateObstacles(whcaController.getMap(), mazegen, random);
+			whcaController.placeRobots();
+			whcaController.randomTargetPressed();
+		} else {
+			generateObstacles(lraController.getMap(), mazegen, random);
+			lraController.placeRobots();
+			lraController.randomTargetPressed();
+		}
+	}
+	
+	/**
+	 * Simulation with the same map, robots and targets as in the other simulation (e.g. to compare the algorithms).
+	 * Map size and robots count of the scenario are taken from the setup.
+	 */
+	public HeadlessSimulation(Scenario scenario, HeadlessSimulation setup) {
+		this.scenario = scenario;
+		scenario.mapSizeW = setup.scenario.mapSizeW;
+		scenario.mapSizeH = setup.scenario.mapSizeH;
+		scenario.robotsCount = setup.scenario.robotsCount;
+		Random random = new Random(scenario.seed);
+		createController(random, new MazeGenerator(random));
+		getMap().copyFrom(setup.getMap());
+		List<Point> positions = setup.robotsPositions();
+		List<Point> targets = setup.robotsTargets();
+		for (int i = 0; i < positions.size(); i++) {
+			if (whcaController != null) {
+				whcaController.createMobileRobot(positions.get(i)).setTarget(targets.get(i));
+			} else {
+				lraController.createMobileRobot(positions.get(i), i).setTarget(targets.get(i));
+			}
+		}
+	}
+	
+	private void createController(Random random, MazeGenerator mazegen) {
+		if (scenario.algorithm == Scenario.Algorithm.WHCA) {
+			WHCASimulationParams params = new WHCASimulationParams();
+			params.mapSizeW = scenario.mapSizeW;
+			params.mapSizeH = scenario.mapSizeH;
+			params.robotsCount = scenario.robotsCount;
+			params.timeDimension = scenario.getTimeDimension();
+			whcaController = new WHCAController(params);
+			whcaController.setRandom(random);
+			whcaController.setMazegen(mazegen);
+			whcaController.setPrioritiesPromotion(scenario.prioritiesPromotion);
+			whcaController.setTimeWindowScaling(scenario.timeWindowScaling);
+			whcaController.setIncrementalReplanning(scenario.incrementalReplanning);
+			whcaController.setParallelPlanning(scenario.parallelPlanning);
+			whcaController.setSpatialClustering(scenario.spatialClustering);
+			whcaController.setStepSummary(false);
+		} else {
+			LRASimulationParams params = new LRASimulationParams();
+			params.mapSizeW = scenario.mapSizeW;
+			params.mapSizeH = scenario.mapSizeH;
+			params.robotsCount = scenario.robotsCount;
+			lraController = new LRAController(params);
+			lraController.setRandom(random);
+			lraController.setMazegen(mazegen);
+			lraController.setPlanner(scenario.dstarLite ? LRAController.Planner.DSTAR_LITE : LRAController.Planner.ASTAR);
+		}
+	}
+	
+	private void generateObstacles(TileMap map, MazeGenerator mazegen, Random random) {
+		if (scenario.maze) {
+			mazegen.generateMaze(map);
+		} else if (scenario.obstaclesDensity > 0) {
+			for (int y = 0; y < map.getHeightInTiles(); y++) {
+				for (int x = 0; x < map.getWidthInTiles(); x++) {
+					if (random.nextDouble() < scenario.obstaclesDensity)
+						map.setCell(x, y, true);
+				}
+			}
+		}
+		int frees = map.countFreeCells();
+		if (frees < scenario.robotsCount)
+			throw new NoNextFieldException("not enough free cells for " + scenario.robotsCount + " robots: " + frees);
+	}
+	
+	public Scenario getScenario() {
+		return scenario;
+	}
+	
+	/**
+	 * @return counters of the planning since the simulation has been created
+	 */
+	public PlanningMetrics getMetrics() {
+		return whcaController != null ? whcaController.getMetrics() : lraController.getMetrics();
+	}
+	
+	public TileMap getMap() {
+		return whcaController != null ? whcaController.getMap() : lraController.getMap();
+	}
+	
+	private List<Point> robotsPositions() {
+		List<Point> positions = new ArrayList<>();
+		if (whcaController != null) {
+			for (igrek.robopath.simulation.whca.MobileRobot robot : whcaController.getRobots()) {
+				positions.add(new Point(robot.getPosition().x, robot.getPosition().y));
+			}
+		} else {
+			for (igrek.robopath.simulation.lra.MobileRobot robot : lraController.getRobots()) {
+				positions.add(new Point(robot.getPosition().x, robot.getPosition().y));
+			}
+		}
+		return positions;
+	}
+	
+	private List<Point> robotsTargets() {
+		List<Point> targets = new ArrayList<>();
+		if (whcaController != null) {
+			for (igrek.robopath.simulation.whca.MobileRobot robot : whcaController.getRobots()) {
+				targets.add(robot.getTarget());
+			}
+		} else {
+			for (igrek.robopath.simulation.lra.MobileRobot robot : lraController.getRobots()) {
+				targets.add(robot.getTarget());
+			}
+		}
+		return targets;
+	}
+	
+	/**
+	 * moves all the robots by one step (replanning their paths if needed)
+	 */
+	public StepState step() {
+		long startTime = System.nanoTime();
+		int replanned = 0;
+		int reached = 0;
+		if (whcaController != null) {
+			whcaController.stepSimulation();
+			replanned = whcaController.getReplannedCount();
+			for (igrek.robopath.simulation.whca.MobileRobot robot : whcaController.getRobots()) {
+				if (robot.hasReachedTarget())
+					reached++;
+			}
+		} else {
+			lraController.stepSimulation();
+			for (igrek.robopath.simulation.lra.MobileRobot robot : lraController.getRobots()) {
+				if (robot.hasReachedTarget())
+					reached++;
+			}
+		}
+		long stepTime = System.nanoTime() - startTime;
+		List<Point> positions = robotsPositions();
+		return new StepState(++step, positions, reached, replanned, stepTime);
+	}
+	
+	/**
+	 * runs the simulation until all the robots reach their targets or the steps limit is exceeded
+	 * @param listener receives the state after each step, may be null
+	 */
+	public SimulationResult run(Consumer<StepState> listener) {
+		long totalTime = 0;
+		long maxStepTime = 0;
+		long replanned = 0;
+		StepState state = null;
+		while (step < scenario.getMaxSteps()) {
+			state = step();
+			totalTime += state.getStepTimeNanos();
+			maxStepTime = Math.max(maxStepTime, state.getStepTimeNanos());
+			replanned += state.getReplannedCount();
+			if (listener != null)
+				listener.accept(state);
+			if (state.allReached())
+				break;
+		}
+		boolean successful = state != null && state.allReached();
+		int reached = state != null ? state.getReachedCount() : 0;
+		return new SimulationResult(scenario, successful, step, reached, replanned, totalTime, maxStepTime);
+	}
+	
+}
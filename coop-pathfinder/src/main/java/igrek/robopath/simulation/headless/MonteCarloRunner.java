@@ -0,0 +1,262 @@
+package igrek.robopath.simulation.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+
+import igrek.robopath.mazegenerator.NoNextFieldException;
+
+/**
+ * Effectiveness comparison of LRA* and WHCA* variants on many random scenarios (Monte Carlo).
+ * Each scenario gets its own seed derived from the master seed, so the scenarios and the aggregated
+ * successes and steps don't depend on the number of threads nor the order of the simulations.
+ * Simulations are run on a work-stealing pool, per-scenario results are written as they are finished.
+ * Output rows have the same format as the tables in tex/test-results.
+ */
+public class MonteCarloRunner {
+	
+	/** compared variants, in the order of the table columns */
+	public enum Variant {
+		LRA, WHCA_1, WHCA_2, WHCA_3
+	}
+	
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+	
+	public long masterSeed = 1;
+	public int simsCount = 100;
+	public int threads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * steps (-1 - failed) and times of the variants in one scenario
+	 */
+	private static class Outcome {
+		
+		final int row;
+		final int sim;
+		final long seed;
+		/** scenario couldn't be generated (too many robots) */
+		boolean skipped = false;
+		final int[] steps = new int[Variant.values().length];
+		final double[] timesMs = new double[Variant.values().length];
+		
+		Outcome(int row, int sim, long seed) {
+			this.row = row;
+			this.sim = sim;
+			this.seed = seed;
+		}
+	}
+	
+	/**
+	 * @param rows scenarios of the table rows (seeds are ignored)
+	 * @param out  per-scenario results (CSV), may be null
+	 * @return table rows
+	 */
+	public List<String> run(List<Scenario> rows, Writer out) throws IOException {
+		// seeds are drawn up front - in the same order for any number of threads
+		SplittableRandom master = new SplittableRandom(masterSeed);
+		long[][] seeds = new long[rows.size()][simsCount];
+		for (int r = 0; r < rows.size(); r++) {
+			for (int s = 0; s < simsCount; s++) {
+				seeds[r][s] = master.split().nextLong();
+			}
+		}
+		if (out != null) {
+			out.write("map,robots,sim,seed");
+			for (Variant variant : Variant.values()) {
+				out.write("," + variant.name().toLowerCase() + "_steps," + variant.name().toLowerCase() + "_time");
+			}
+			out.write("\n");
+		}
+		
+		logger.info("running " + rows.size() * simsCount + " scenarios on " + threads + " threads");
+		Outcome[][] outcomes = new Outcome[rows.size()][simsCount];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			CompletionService<Outcome> completion = new ExecutorCompletionService<>(pool);
+			for (int r = 0; r < rows.size(); r++) {
+				for (int s = 0; s < simsCount; s++) {
+					int row = r;
+					int sim = s;
+					completion.submit(() -> simulate(rows.get(row), row, sim, seeds[row][sim]));
+				}
+			}
+			for (int i = 0; i < rows.size() * simsCount; i++) {
+				Outcome outcome = completion.take().get();
+				outcomes[outcome.row][outcome.sim] = outcome;
+				if (out != null && !outcome.skipped)
+					writeOutcome(out, rows.get(outcome.row), outcome);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		List<String> table = new ArrayList<>();
+		for (int r = 0; r < rows.size(); r++) {
+			table.add(summarize(rows.get(r), outcomes[r]));
+		}
+		return table;
+	}
+	
+	private Outcome simulate(Scenario row, int rowIndex, int sim, long seed) {
+		Outcome outcome = new Outcome(rowIndex, sim, seed);
+		Scenario scenario = row.copy();
+		scenario.seed = seed;
+		scenario.algorithm = Scenario.Algorithm.WHCA;
+		HeadlessSimulation whca3;
+		try {
+			whca3 = new HeadlessSimulation(scenario);
+		} catch (NoNextFieldException e) {
+			outcome.skipped = true;
+			return outcome;
+		}
+		// same map, robots and targets for all the variants
+		for (Variant variant : Variant.values()) {
+			HeadlessSimulation simulation;
+			if (variant == Variant.WHCA_3) {
+				simulation = whca3;
+			} else {
+				Scenario variantScenario = scenario.copy();
+				variantScenario.algorithm = variant == Variant.LRA ? Scenario.Algorithm.LRA : Scenario.Algorithm.WHCA;
+				variantScenario.prioritiesPromotion = variant != Variant.WHCA_1;
+				variantScenario.timeWindowScaling = false;
+				simulation = new HeadlessSimulation(variantScenario, whca3);
+			}
+			SimulationResult result = simulation.run(null);
+			outcome.steps[variant.ordinal()] = result.isSuccessful() ? result.getSteps() : -1;
+			outcome.timesMs[variant.ordinal()] = result.getTotalTimeNanos() / 1e6;
+		}
+		return outcome;
+	}
+	
+	private synchronized void writeOutcome(Writer out, Scenario row, Outcome outcome) throws IOException {
+		StringBuilder line = new StringBuilder();
+		line.append(row.mapSizeW).append('x').append(row.mapSizeH).append(',').append(row.robotsCount);
+		line.append(',').append(outcome.sim).append(',').append(outcome.seed);
+		for (int i = 0; i < outcome.steps.length; i++) {
+			line.append(',').append(outcome.steps[i]).append(',').append(String.format("%.3f", outcome.timesMs[i]));
+		}
+		out.write(line.append('\n').toString());
+		out.flush();
+	}
+	
+	/**
+	 * average steps and time of the successful simulations - same as in PlanningEffectivenessTest
+	 */
+	private String summarize(Scenario row, Outcome[] outcomes) {
+		int variants = Variant.values().length;
+		int[] successful = new int[variants];
+		long[] stepsCount = new long[variants];
+		double[] calcTimes = new double[variants];
+		for (Outcome outcome : outcomes) {
+			if (outcome.skipped)
+				continue;
+			for (int i = 0; i < variants; i++) {
+				if (outcome.steps[i] > 0) {
+					successful[i]++;
+					stepsCount[i] += outcome.steps[i];
+					calcTimes[i] += outcome.timesMs[i];
+				}
+			}
+		}
+		double[] avgFactor = new double[variants];
+		for (int i = 0; i < variants; i++) {
+			avgFactor[i] = successful[i] == 0 ? -1 : 1.0 / successful[i];
+		}
+		String info = String.format("map %dx%d, robots %d", row.mapSizeW, row.mapSizeH, row.robotsCount);
+		info += String.format(", successfulls: \t%d\t%d\t%d\t%d", successful[0], successful[1], successful[2], successful[3]);
+		info += String.format(", steps: \t%f\t%f\t%f\t%f", avgFactor[0] * stepsCount[0], avgFactor[1] * stepsCount[1], avgFactor[2] * stepsCount[2], avgFactor[3] * stepsCount[3]);
+		info += String.format(", time: \t%f\t%f\t%f\t%f", avgFactor[0] * calcTimes[0], avgFactor[1] * calcTimes[1], avgFactor[2] * calcTimes[2], avgFactor[3] * calcTimes[3]);
+		return info;
+	}
+	
+	private static int[] parseRange(String value) {
+		String[] bounds = value.split("-");
+		int from = Integer.parseInt(bounds[0]);
+		int to = bounds.length > 1 ? Integer.parseInt(bounds[1]) : from;
+		return new int[]{from, to};
+	}
+	
+	/**
+	 * e.g. --map=3-15 --robots=5 --sims=100 --maze --threads=8 --out=steps-maze-mapsize.csv
+	 */
+	public static void main(String[] args) throws IOException {
+		HeadlessRunner.useHeadlessLogging();
+		MonteCarloRunner runner = new MonteCarloRunner();
+		int[] mapSizes = {6, 6};
+		int[] robots = {5, 5};
+		boolean maze = false;
+		String outFile = "monte-carlo-results.csv";
+		try {
+			for (String arg : args) {
+				String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+				String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : null;
+				switch (name) {
+					case "--map":
+						mapSizes = parseRange(value);
+						break;
+					case "--robots":
+						robots = parseRange(value);
+						break;
+					case "--maze":
+						maze = true;
+						break;
+					case "--sims":
+						runner.simsCount = Integer.parseInt(value);
+						break;
+					case "--seed":
+						runner.masterSeed = Long.parseLong(value);
+						break;
+					case "--threads":
+						runner.threads = Integer.parseInt(value);
+						break;
+					case "--out":
+						outFile = value;
+						break;
+					default:
+						throw new IllegalArgumentException("unknown option: " + arg);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage() != null ? e.getMessage() : e.toString());
+			System.err.println("usage: [--map=SIZE[-SIZE]] [--robots=N[-N]] [--maze] [--sims=N] [--seed=S] [--threads=N] [--out=FILE]");
+			System.exit(1);
+			return;
+		}
+		
+		List<Scenario> rows = new ArrayList<>();
+		for (int size = mapSizes[0]; size <= mapSizes[1]; size++) {
+			for (int robotsCount = robots[0]; robotsCount <= robots[1]; robotsCount++) {
+				Scenario row = new Scenario();
+				row.mapSizeW = size;
+				row.mapSizeH = size;
+				row.robotsCount = robotsCount;
+				row.maze = maze;
+				rows.add(row);
+			}
+		}
+		try (Writer out = new BufferedWriter(new FileWriter(outFile))) {
+			for (String line : runner.run(rows, out)) {
+				System.out.println(line);
+			}
+		}
+	}
+	
+}
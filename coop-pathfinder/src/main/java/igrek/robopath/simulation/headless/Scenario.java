@@ -0,0 +1,74 @@
+package igrek.robopath.simulation.headless;
+
+/**
+ * Simulation setup for the headless runs
+ */
+public class Scenario {
+	
+	public enum Algorithm {
+		WHCA, LRA
+	}
+	
+	public Algorithm algorithm = Algorithm.WHCA;
+	
+	public int mapSizeW = 15;
+	public int mapSizeH = 15;
+	
+	public int robotsCount = 5;
+	
+	/** WHCA* time window, 0 - robots count + 1 */
+	public int timeDimension = 0;
+	
+	/** generate maze, otherwise obstacles are randomly scattered with the obstacles density */
+	public boolean maze = true;
+	public double obstaclesDensity = 0;
+	
+	public long seed = 1;
+	
+	/** steps limit, 0 - (width + height) * 6 */
+	public int maxSteps = 0;
+	
+	// WHCA* options
+	public boolean incrementalReplanning = false;
+	public boolean parallelPlanning = false;
+	public boolean spatialClustering = false;
+	public boolean prioritiesPromotion = true;
+	public boolean timeWindowScaling = true;
+	
+	// LRA* options
+	/** incremental D* Lite planner instead of A* from scratch */
+	public boolean dstarLite = false;
+	
+	public int getTimeDimension() {
+		return timeDimension > 0 ? timeDimension : robotsCount + 1;
+	}
+	
+	public int getMaxSteps() {
+		return maxSteps > 0 ? maxSteps : (mapSizeW + mapSizeH) * 6;
+	}
+	
+	public Scenario copy() {
+		Scenario copy = new Scenario();
+		copy.algorithm = algorithm;
+		copy.mapSizeW = mapSizeW;
+		copy.mapSizeH = mapSizeH;
+		copy.robotsCount = robotsCount;
+		copy.timeDimension = timeDimension;
+		copy.maze = maze;
+		copy.obstaclesDensity = obstaclesDensity;
+		copy.seed = seed;
+		copy.maxSteps = maxSteps;
+		copy.incrementalReplanning = incrementalReplanning;
+		copy.parallelPlanning = parallelPlanning;
+		copy.spatialClustering = spatialClustering;
+		copy.prioritiesPromotion = prioritiesPromotion;
+		copy.timeWindowScaling = timeWindowScaling;
+		copy.dstarLite = dstarLite;
+		return copy;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s, map %dx%d, robots %d, seed %d", algorithm, mapSizeW, mapSizeH, robotsCount, seed);
+	}
+}
@@ -0,0 +1,64 @@
+package igrek.robopath.simulation.headless;
+
+/**
+ * Metrics of the finished headless simulation
+ */
+public class SimulationResult {
+	
+	private final Scenario scenario;
+	private final boolean successful;
+	private final int steps;
+	private final int reachedCount;
+	private final long replannedCount;
+	private final long totalTimeNanos;
+	private final long maxStepTimeNanos;
+	
+	SimulationResult(Scenario scenario, boolean successful, int steps, int reachedCount, long replannedCount, long totalTimeNanos, long maxStepTimeNanos) {
+		this.scenario = scenario;
+		this.successful = successful;
+		this.steps = steps;
+		this.reachedCount = reachedCount;
+		this.replannedCount = replannedCount;
+		this.totalTimeNanos = totalTimeNanos;
+		this.maxStepTimeNanos = maxStepTimeNanos;
+	}
+	
+	public Scenario getScenario() {
+		return scenario;
+	}
+	
+	/**
+	 * @return all the robots have reached their targets within the steps limit
+	 */
+	public boolean isSuccessful() {
+		return successful;
+	}
+	
+	/**
+	 * @return steps done - to reach all the targets or the steps limit
+	 */
+	public int getSteps() {
+		return steps;
+	}
+	
+	public int getReachedCount() {
+		return reachedCount;
+	}
+	
+	public long getReplannedCount() {
+		return replannedCount;
+	}
+	
+	public long getTotalTimeNanos() {
+		return totalTimeNanos;
+	}
+	
+	public long getMaxStepTimeNanos() {
+		return maxStepTimeNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s: %s, steps %d, reached %d/%d, replanned %d, time %.3f ms, max step %.3f ms", scenario, successful ? "successful" : "failed", steps, reachedCount, scenario.robotsCount, replannedCount, totalTimeNanos / 1e6, maxStepTimeNanos / 1e6);
+	}
+}
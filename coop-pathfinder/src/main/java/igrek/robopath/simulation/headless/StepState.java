@@ -0,0 +1,63 @@
+package igrek.robopath.simulation.headless;
+
+import java.util.List;
+
+import igrek.robopath.common.Point;
+
+/**
+ * State of the simulation after one step
+ */
+public class StepState {
+	
+	private final int step;
+	private final List<Point> positions;
+	private final int reachedCount;
+	private final int replannedCount;
+	private final long stepTimeNanos;
+	
+	StepState(int step, List<Point> positions, int reachedCount, int replannedCount, long stepTimeNanos) {
+		this.step = step;
+		this.positions = positions;
+		this.reachedCount = reachedCount;
+		this.replannedCount = replannedCount;
+		this.stepTimeNanos = stepTimeNanos;
+	}
+	
+	/**
+	 * @return number of the step, starting from 1
+	 */
+	public int getStep() {
+		return step;
+	}
+	
+	/**
+	 * @return robots positions, in the robots order
+	 */
+	public List<Point> getPositions() {
+		return positions;
+	}
+	
+	public int getReachedCount() {
+		return reachedCount;
+	}
+	
+	public boolean allReached() {
+		return reachedCount == positions.size();
+	}
+	
+	/**
+	 * @return number of robots replanned in the step (WHCA* only)
+	 */
+	public int getReplannedCount() {
+		return replannedCount;
+	}
+	
+	public long getStepTimeNanos() {
+		return stepTimeNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("step %d, reached %d/%d, replanned %d, time %.3f ms: %s", step, reachedCount, positions.size(), replannedCount, stepTimeNanos / 1e6, positions);
+	}
+}
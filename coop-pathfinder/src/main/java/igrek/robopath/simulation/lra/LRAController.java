@@ -5,17 +5,32 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
+import igrek.robopath.common.FreeCellIndex;
+import igrek.robopath.common.OccupancyGrid;
 import igrek.robopath.common.Point;
 import igrek.robopath.common.TileMap;
 import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.metrics.PlanningMetrics;
 import igrek.robopath.pathfinder.astar.Astar2DPathFinder;
 import igrek.robopath.pathfinder.astar.Path;
+import igrek.robopath.pathfinder.dstar.DStarLitePathFinder;
+import igrek.robopath.pathfinder.rra.DistanceFieldCache;
 
 public class LRAController {
 	
+	public enum Planner {
+		/** A* search from scratch for every replanning */
+		ASTAR,
+		/** incremental D* Lite search, kept for every robot between the replannings */
+		DSTAR_LITE
+	}
+	
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	private Random random;
 	private MazeGenerator mazegen;
@@ -23,10 +38,69 @@ public class LRAController {
 	private TileMap map;
 	private List<MobileRobot> robots = new ArrayList<>();
 	private LRASimulationParams params;
+	private Astar2DPathFinder pathFinder;
+	private Planner planner = Planner.ASTAR;
+	/** D* Lite search trees of the robots */
+	private Map<MobileRobot, DStarLitePathFinder> incrementalPathFinders = new HashMap<>();
+	/** cells of all the robots (positions and next moves) - dynamic obstacles for D* Lite */
+	private int[] robotsCells = new int[16];
+	private DistanceFieldCache distanceFields = new DistanceFieldCache();
+	private PlanningMetrics metrics = new PlanningMetrics();
+	/** robots replanned during the current step */
+	private int replannedCount = 0;
+	/**
+	 * robots (indexes) in their positions and in the cells of their next moves - for the collision detection
+	 * and as the obstacles layer for the planning, updated as the robots move and replan
+	 */
+	private OccupancyGrid positionsGrid;
+	private OccupancyGrid nextCellsGrid;
+	/** cells free of obstacles and robots */
+	private FreeCellIndex robotCells;
+	/** cells free of obstacles and targets of the robots */
+	private FreeCellIndex targetCells;
+	private MobileRobot.CellsListener cellsListener = new MobileRobot.CellsListener() {
+		@Override
+		public void positionChanged(Point previous, Point current) {
+			robotCells.release(previous);
+			robotCells.occupy(current);
+		}
+		
+		@Override
+		public void targetChanged(Point previous, Point current) {
+			targetCells.release(previous);
+			targetCells.occupy(current);
+		}
+	};
 	
-	public LRAController(LRAPresenter presenter, LRASimulationParams params) {
+	public LRAController(LRASimulationParams params) {
 		this.params = params;
 		resetMap();
+		pathFinder = new Astar2DPathFinder(map);
+		pathFinder.setMetrics(metrics);
+		pathFinder.setDynamicObstacles((x, y) -> positionsGrid.count(x, y) > 0 || nextCellsGrid.count(x, y) > 0);
+	}
+	
+	public void setMetrics(PlanningMetrics metrics) {
+		this.metrics = metrics;
+		pathFinder.setMetrics(metrics);
+	}
+	
+	public PlanningMetrics getMetrics() {
+		return metrics;
+	}
+	
+	public synchronized void setPlanner(Planner planner) {
+		this.planner = planner;
+		incrementalPathFinders.clear();
+	}
+	
+	public Planner getPlanner() {
+		return planner;
+	}
+	
+	@Autowired
+	public void setDistanceFields(DistanceFieldCache distanceFields) {
+		this.distanceFields = distanceFields;
 	}
 	
 	@Autowired
@@ -50,22 +124,37 @@ public class LRAController {
 	synchronized void resetMap() {
 		map = new TileMap(params.mapSizeW, params.mapSizeH);
 		robots.clear();
+		incrementalPathFinders.clear();
+		resetFreeCells();
 	}
 	
 	public synchronized void placeRobots() {
 		robots.clear();
+		incrementalPathFinders.clear();
+		resetFreeCells();
 		for (int i = 0; i < params.robotsCount; i++) {
-			Point cell = randomUnoccupiedCellForRobot(map);
+			Point cell = randomUnoccupiedCellForRobot();
 			createMobileRobot(cell, i);
 		}
 	}
 	
 	public synchronized MobileRobot createMobileRobot(Point point, int i) {
 		MobileRobot robo = new MobileRobot(point, robot -> onTargetReached(robot), i);
+		robo.setCellsListener(cellsListener);
+		robotCells.occupy(point);
 		robots.add(robo);
 		return robo;
 	}
 	
+	public synchronized void removeRobot(MobileRobot robot) {
+		if (!robots.remove(robot))
+			return;
+		robot.setCellsListener(null);
+		robotCells.release(robot.getPosition());
+		targetCells.release(robot.getTarget());
+		incrementalPathFinders.remove(robot);
+	}
+	
 	private void onTargetReached(MobileRobot robot) {
 		if (params.robotAutoTarget) {
 			if (robot.getTarget() == null || robot.hasReachedTarget()) {
@@ -99,110 +188,158 @@ public class LRAController {
 	private void randomRobotTarget(MobileRobot robot) {
 		robot.resetNextMoves();
 		//		Point start = robot.lastTarget();
-		Point target = randomUnoccupiedCellForTarget(map);
+		Point target = randomUnoccupiedCellForTarget();
 		robot.setTarget(target);
 	}
 	
-	private Point randomUnoccupiedCellForTarget(TileMap map) {
-		// get all unoccupied cells
-		List<Point> frees = new ArrayList<>();
-		map.foreach((x, y, occupied) -> {
-			if (!occupied)
-				frees.add(new Point(x, y));
-		});
-		// remove occupied by other targets
-		for (MobileRobot robot : robots) {
-			Point target = robot.getTarget();
-			if (target != null)
-				frees.remove(target);
+	private Point randomUnoccupiedCellForTarget() {
+		return targetCells.random(random);
+	}
+	
+	private Point randomUnoccupiedCellForRobot() {
+		return robotCells.random(random);
+	}
+	
+	/**
+	 * builds the free cells indexes from scratch - for the current map and robots
+	 */
+	private void resetFreeCells() {
+		if (robotCells != null) {
+			robotCells.detach();
+			targetCells.detach();
 		}
-		if (frees.isEmpty())
-			return null;
-		// random from list
-		return frees.get(random.nextInt(frees.size()));
-	}
-	
-	private Point randomUnoccupiedCellForRobot(TileMap map) {
-		// get all unoccupied cells
-		List<Point> frees = new ArrayList<>();
-		map.foreach((x, y, occupied) -> {
-			if (!occupied)
-				frees.add(new Point(x, y));
-		});
-		// remove occupied by other robots
+		robotCells = new FreeCellIndex(map);
+		targetCells = new FreeCellIndex(map);
 		for (MobileRobot robot : robots) {
-			Point p = robot.getPosition();
-			if (p != null)
-				frees.remove(p);
+			robot.setCellsListener(cellsListener);
+			robotCells.occupy(robot.getPosition());
+			targetCells.occupy(robot.getTarget());
 		}
-		if (frees.isEmpty())
-			return null;
-		// random from list
-		return frees.get(random.nextInt(frees.size()));
 	}
 	
 	synchronized void findPaths() {
-		for (MobileRobot robot : robots) {
+		indexRobots();
+		for (int i = 0; i < robots.size(); i++) {
+			MobileRobot robot = robots.get(i);
+			nextCellsGrid.remove(robot.nearestTarget().x, robot.nearestTarget().y, i);
 			findPath(robot);
+			nextCellsGrid.add(robot.nearestTarget().x, robot.nearestTarget().y, i);
 		}
+		positionsGrid.clear();
+		nextCellsGrid.clear();
 	}
 	
 	private void findPath(MobileRobot robot) {
 		logger.debug("robot: " + robot.getPriority() + " - planning path");
+		long startTime = System.nanoTime();
+		replannedCount++;
 		robot.resetMovesQue();
 		Point start = robot.getPosition();
 		Point target = robot.getTarget();
 		if (target != null && !target.equals(start)) {
-			TileMap map2 = mapWithRobots();
-			Astar2DPathFinder pathFinder = new Astar2DPathFinder(map2);
-			Path path = pathFinder.findPath(start.getX(), start.getY(), target.getX(), target.getY());
+			Path path;
+			if (planner == Planner.DSTAR_LITE) {
+				DStarLitePathFinder incrementalPathFinder = incrementalPathFinders.computeIfAbsent(robot, r -> new DStarLitePathFinder(map));
+				incrementalPathFinder.setMap(map);
+				incrementalPathFinder.setMetrics(metrics);
+				int cellsCount = collectRobotsCells();
+				path = incrementalPathFinder.findPath(start.getX(), start.getY(), target.getX(), target.getY(), robotsCells, cellsCount);
+			} else {
+				// other robots are the dynamic obstacles
+				pathFinder.setMap(map);
+				// distances on the map without robots
+				pathFinder.setDistanceField(distanceFields.get(map, target.getX(), target.getY(), start.getX(), start.getY(), metrics));
+				path = pathFinder.findPath(start.getX(), start.getY(), target.getX(), target.getY());
+			}
 			if (path != null) {
 				for (int i = 1; i < path.getLength(); i++) {
-					Path.Step step = path.getStep(i);
-					robot.enqueueMove(step.getX(), step.getY());
+					robot.enqueueMove(path.getX(i), path.getY(i));
 				}
 			}
 		}
+		metrics.addRobotPlanning(System.nanoTime() - startTime);
 	}
 	
-	private TileMap mapWithRobots() {
-		TileMap map2 = new TileMap(map);
+	/**
+	 * @return number of the cells (positions and next moves of the robots) put to robotsCells
+	 */
+	private int collectRobotsCells() {
+		if (robotsCells.length < 2 * robots.size())
+			robotsCells = Arrays.copyOf(robotsCells, 2 * robots.size());
+		int width = map.getWidthInTiles();
+		int count = 0;
 		for (MobileRobot robot : robots) {
-			map2.setCell(robot.getPosition(), true);
-			map2.setCell(robot.nearestTarget(), true);
+			robotsCells[count++] = robot.getPosition().y * width + robot.getPosition().x;
+			robotsCells[count++] = robot.nearestTarget().y * width + robot.nearestTarget().x;
 		}
-		return map2;
+		return count;
 	}
 	
 	public synchronized void stepSimulation() {
-		for (MobileRobot robot : robots) {
+		long startTime = System.nanoTime();
+		replannedCount = 0;
+		int collisionResets = 0;
+		int vertexConflicts = 0;
+		int swapConflicts = 0;
+		indexRobots();
+		OccupancyGrid positions = positionsGrid;
+		OccupancyGrid nextCells = nextCellsGrid;
+		for (int i = 0; i < robots.size(); i++) {
+			MobileRobot robot = robots.get(i);
+			// the other robots are compared with the robot after its move
+			positions.remove(robot.getPosition().x, robot.getPosition().y, i);
+			nextCells.remove(robot.nearestTarget().x, robot.nearestTarget().y, i);
 			if (robot.hasNextMove()) {
 				robot.setPosition(robot.pollNextMove());
 			}
 			if (robot.hasReachedTarget() && params.robotAutoTarget) {
 				robot.targetReached();
 			}
-			MobileRobot collidedRobot = collisionDetected(robot);
-			if (collidedRobot != null || (!robot.hasNextMove() && !robot.hasReachedTarget())) {
+			Point position = robot.getPosition();
+			Point next = robot.nearestTarget();
+			boolean collided = true;
+			int otherRobot = positions.first(next.x, next.y);
+			if (otherRobot != OccupancyGrid.NONE && robots.get(otherRobot).nearestTarget().equals(position)) {
+				swapConflicts++;
+			} else if (otherRobot != OccupancyGrid.NONE || nextCells.count(next.x, next.y) > 0) {
+				vertexConflicts++;
+			} else {
+				collided = false;
+			}
+			// if (collided) throw new CollisionDetectedException(); // collisions frequency tests
+			if (collided)
+				collisionResets++;
+			// the robot blocks its own position during the planning too
+			positions.add(position.x, position.y, i);
+			if (collided || (!robot.hasNextMove() && !robot.hasReachedTarget())) {
 				findPath(robot);
 			}
+			nextCells.add(robot.nearestTarget().x, robot.nearestTarget().y, i);
 		}
+		positions.clear();
+		nextCells.clear();
+		metrics.addStep(System.nanoTime() - startTime, replannedCount, collisionResets);
+		metrics.addConflicts(vertexConflicts, swapConflicts);
 	}
 	
-	public MobileRobot collisionDetected(MobileRobot robot) {
-		for (MobileRobot otherRobot : robots) {
-			if (otherRobot == robot)
-				continue;
-			if (otherRobot.getPosition().equals(robot.nearestTarget()) || otherRobot.nearestTarget()
-					.equals(robot.nearestTarget())) {
-				// throw new CollisionDetectedException(); // collisions frequency tests
-				return otherRobot;
-			}
+	/**
+	 * puts all the robots to the occupancy grids (in their positions and next cells)
+	 */
+	private void indexRobots() {
+		if (positionsGrid == null || positionsGrid.getWidth() != map.getWidthInTiles() || positionsGrid.getHeight() != map.getHeightInTiles()) {
+			positionsGrid = new OccupancyGrid(map.getWidthInTiles(), map.getHeightInTiles());
+			nextCellsGrid = new OccupancyGrid(map.getWidthInTiles(), map.getHeightInTiles());
+		}
+		positionsGrid.clear();
+		nextCellsGrid.clear();
+		for (int i = 0; i < robots.size(); i++) {
+			MobileRobot robot = robots.get(i);
+			positionsGrid.add(robot.getPosition().x, robot.getPosition().y, i);
+			nextCellsGrid.add(robot.nearestTarget().x, robot.nearestTarget().y, i);
 		}
-		return null;
 	}
 	
 	public class CollisionDetectedException extends RuntimeException {
-	
+		
 	}
 }
@@ -4,6 +4,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import igrek.robopath.metrics.PlanningMetrics;
+
 @Configuration
 public class LRAFactory {
 	
@@ -12,9 +14,17 @@ public class LRAFactory {
 		return new LRASimulationParams();
 	}
 	
+	/** exported via JMX */
+	@Bean(name = "lraMetrics")
+	public PlanningMetrics provideMetrics() {
+		return new PlanningMetrics();
+	}
+	
 	@Bean(name = "lraController")
-	public LRAController provideController(@Qualifier("lraPresenter") LRAPresenter presenter, @Qualifier("lraParams") LRASimulationParams params) {
-		return new LRAController(presenter, params);
+	public LRAController provideController(@Qualifier("lraParams") LRASimulationParams params, @Qualifier("lraMetrics") PlanningMetrics metrics) {
+		LRAController controller = new LRAController(params);
+		controller.setMetrics(metrics);
+		return controller;
 	}
 	
 }
@@ -5,12 +5,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
-import java.util.LinkedList;
 import java.util.List;
 
 import de.felixroske.jfxsupport.FXMLController;
+import igrek.robopath.common.PackedPath;
 import igrek.robopath.common.Point;
 import igrek.robopath.common.TileMap;
+import igrek.robopath.simulation.common.ParamsBinding;
 import igrek.robopath.simulation.common.ResizableCanvas;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
@@ -31,7 +32,7 @@ import javafx.util.Duration;
 
 @FXMLController
 @Qualifier("lraPresenter")
-public class LRAPresenter {
+public class LRAPresenter implements ParamsBinding<LRASimulationParams> {
 	
 	private final double FPS = 24;
 	private final double MOVE_STEP_DURATION = 500;
@@ -180,7 +181,7 @@ public class LRAPresenter {
 				if (!state) {
 					MobileRobot occupiedBy = controller.occupiedByRobot(point);
 					if (occupiedBy != null) {
-						robots.remove(occupiedBy);
+						controller.removeRobot(occupiedBy);
 					} else {
 						controller.createMobileRobot(point, robots.size());
 					}
@@ -334,15 +335,17 @@ public class LRAPresenter {
 		}
 		// draw path
 		gc.setStroke(robotColor);
-		LinkedList<Point> movesQue = robot.getMovesQue();
-		Point previous = robot.getPosition();
-		for (Point move : movesQue) {
-			double fromX = previous.getX() * cellW + cellW / 2;
-			double fromY = previous.getY() * cellH + cellH / 2;
-			double toX = move.getX() * cellW + cellW / 2;
-			double toY = move.getY() * cellH + cellH / 2;
+		PackedPath movesQue = robot.getMovesQue();
+		int previousX = robot.getPosition().getX();
+		int previousY = robot.getPosition().getY();
+		for (int i = 0; i < movesQue.getLength(); i++) {
+			double fromX = previousX * cellW + cellW / 2;
+			double fromY = previousY * cellH + cellH / 2;
+			double toX = movesQue.getX(i) * cellW + cellW / 2;
+			double toY = movesQue.getY(i) * cellH + cellH / 2;
 			gc.strokeLine(fromX, fromY, toX, toY);
-			previous = move;
+			previousX = movesQue.getX(i);
+			previousY = movesQue.getY(i);
 		}
 		// draw robot
 		gc.setFill(robotColor);
@@ -371,4 +374,24 @@ public class LRAPresenter {
 	private void buttonPathfind() {
 		new Thread(() -> controller.findPaths()).start();
 	}
+	
+	@Override
+	public void sendToUI(LRASimulationParams params) {
+		paramMapSizeW.setText(Integer.toString(params.mapSizeW));
+		paramMapSizeH.setText(Integer.toString(params.mapSizeH));
+		paramRobotsCount.setText(Integer.toString(params.robotsCount));
+		paramRobotAutoTarget.setSelected(params.robotAutoTarget);
+	}
+	
+	@Override
+	public void readFromUI(LRASimulationParams params) {
+		try {
+			params.mapSizeW = Integer.parseInt(paramMapSizeW.getText());
+			params.mapSizeH = Integer.parseInt(paramMapSizeH.getText());
+			params.robotsCount = Integer.parseInt(paramRobotsCount.getText());
+			params.robotAutoTarget = paramRobotAutoTarget.isSelected();
+		} catch (NumberFormatException e) {
+			logger.error(e.getMessage());
+		}
+	}
 }
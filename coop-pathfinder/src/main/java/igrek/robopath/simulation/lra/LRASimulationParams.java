@@ -1,10 +1,6 @@
 package igrek.robopath.simulation.lra;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javafx.scene.control.CheckBox;
-import javafx.scene.control.TextField;
+import igrek.robopath.simulation.common.ParamsBinding;
 
 
 public class LRASimulationParams {
@@ -16,34 +12,19 @@ public class LRASimulationParams {
 	
 	public boolean robotAutoTarget = false;
 	
-	private TextField paramMapSizeW;
-	private TextField paramMapSizeH;
-	private TextField paramRobotsCount;
-	private CheckBox paramRobotAutoTarget;
+	private ParamsBinding<LRASimulationParams> ui;
 	
-	public void init(LRAPresenter presenter) {
-		this.paramMapSizeW = presenter.paramMapSizeW;
-		this.paramMapSizeH = presenter.paramMapSizeH;
-		this.paramRobotsCount = presenter.paramRobotsCount;
-		this.paramRobotAutoTarget = presenter.paramRobotAutoTarget;
+	public void init(ParamsBinding<LRASimulationParams> ui) {
+		this.ui = ui;
 	}
 	
 	public void sendToUI() {
-		paramMapSizeW.setText(Integer.toString(mapSizeW));
-		paramMapSizeH.setText(Integer.toString(mapSizeH));
-		paramRobotsCount.setText(Integer.toString(robotsCount));
-		paramRobotAutoTarget.setSelected(robotAutoTarget);
+		if (ui != null)
+			ui.sendToUI(this);
 	}
 	
 	public void readFromUI() {
-		try {
-			mapSizeW = Integer.parseInt(paramMapSizeW.getText());
-			mapSizeH = Integer.parseInt(paramMapSizeH.getText());
-			robotsCount = Integer.parseInt(paramRobotsCount.getText());
-			robotAutoTarget = paramRobotAutoTarget.isSelected();
-		} catch (NumberFormatException e) {
-			Logger logger = LoggerFactory.getLogger(this.getClass());
-			logger.error(e.getMessage());
-		}
+		if (ui != null)
+			ui.readFromUI(this);
 	}
 }
@@ -1,21 +1,31 @@
 package igrek.robopath.simulation.lra;
 
-import java.util.LinkedList;
-
+import igrek.robopath.common.PackedPath;
 import igrek.robopath.common.Point;
 
 public class MobileRobot {
 	
 	private Point position;
 	private Point target;
-	private LinkedList<Point> movesQue = new LinkedList<>();
+	/** planned moves (x, y) */
+	private PackedPath movesQue = new PackedPath();
 	private TargetReachedHandler targetReachedHandler;
+	private CellsListener cellsListener;
 	private int priority;
 	
 	public interface TargetReachedHandler {
 		void onTargetReached(MobileRobot robot);
 	}
 	
+	/**
+	 * notified when the robot changes its position or target (e.g. to keep track of the free cells)
+	 */
+	public interface CellsListener {
+		void positionChanged(Point previous, Point current);
+		
+		void targetChanged(Point previous, Point current);
+	}
+	
 	public MobileRobot(Point position, TargetReachedHandler targetReachedHandler, int priority) {
 		this.position = position;
 		this.targetReachedHandler = targetReachedHandler;
@@ -23,23 +33,33 @@ public class MobileRobot {
 	}
 	
 	
-	Point getPosition() {
+	public Point getPosition() {
 		return position;
 	}
 	
 	public void setPosition(Point position) {
+		Point previous = this.position;
 		this.position = position;
+		if (cellsListener != null)
+			cellsListener.positionChanged(previous, position);
 	}
 	
-	Point getTarget() {
+	public Point getTarget() {
 		return target;
 	}
 	
 	public void setTarget(Point target) {
+		Point previous = this.target;
 		this.target = target;
+		if (cellsListener != null)
+			cellsListener.targetChanged(previous, target);
 	}
 	
-	LinkedList<Point> getMovesQue() {
+	void setCellsListener(CellsListener cellsListener) {
+		this.cellsListener = cellsListener;
+	}
+	
+	PackedPath getMovesQue() {
 		return movesQue;
 	}
 	
@@ -50,7 +70,7 @@ public class MobileRobot {
 	Point getNextMove() {
 		if (movesQue.isEmpty())
 			return null;
-		return movesQue.getFirst();
+		return new Point(movesQue.getX(0), movesQue.getY(0));
 	}
 	
 	boolean hasNextMove() {
@@ -58,32 +78,37 @@ public class MobileRobot {
 	}
 	
 	Point pollNextMove() {
-		if (movesQue.isEmpty())
-			return null;
-		return movesQue.pollFirst();
+		Point move = getNextMove();
+		if (move != null)
+			movesQue.removeFirst();
+		return move;
 	}
 	
 	Point lastTarget() {
 		if (movesQue.isEmpty())
 			return position;
-		return movesQue.getLast();
+		int last = movesQue.getLength() - 1;
+		return new Point(movesQue.getX(last), movesQue.getY(last));
 	}
 	
 	Point nearestTarget() {
 		if (movesQue.isEmpty())
 			return position;
-		return movesQue.getFirst();
+		return getNextMove();
 	}
 	
 	MobileRobot enqueueMove(Point target) {
-		if (!lastTarget().isAdjacentOrEqual(target))
-			throw new IllegalArgumentException("appended move is not adjacent or equal to last target");
-		movesQue.add(target);
-		return this;
+		return enqueueMove(target.x, target.y);
 	}
 	
 	MobileRobot enqueueMove(int x, int y) {
-		return enqueueMove(new Point(x, y));
+		int last = movesQue.getLength() - 1;
+		int lastX = last < 0 ? position.x : movesQue.getX(last);
+		int lastY = last < 0 ? position.y : movesQue.getY(last);
+		if (Math.abs(x - lastX) > 1 || Math.abs(y - lastY) > 1)
+			throw new IllegalArgumentException("appended move is not adjacent or equal to last target");
+		movesQue.appendStep(x, y, 0);
+		return this;
 	}
 	
 	void resetMovesQue() {
@@ -91,11 +116,7 @@ public class MobileRobot {
 	}
 	
 	void resetNextMoves() {
-		Point currentMove = movesQue.peekFirst();
-		movesQue.clear();
-		if (currentMove != null) {
-			movesQue.add(currentMove);
-		}
+		movesQue.keepFirst();
 	}
 	
 	double getInterpolatedX(double moveProgress) {
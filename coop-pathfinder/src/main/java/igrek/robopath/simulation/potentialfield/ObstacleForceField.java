@@ -0,0 +1,149 @@
+package igrek.robopath.simulation.potentialfield;
+
+import igrek.robopath.simulation.potentialfield.robot.Vector2;
+
+/**
+ * Force repelling from the static obstacles, sampled on a regular grid (a few samples per cell).
+ * Force between the samples is interpolated bilinearly, so it costs O(1) per robot, not O(map cells).
+ * The field is a sum of the obstacles forces, so adding or removing an obstacle updates only the samples in its range.
+ * Outside the map the force of the nearest map border is taken.
+ */
+public class ObstacleForceField {
+	
+	private static final double MIN_D = 0.7;
+	private static final double MAX_D = 5.0;
+	/** obstacle doesn't affect positions further from its corner */
+	private static final double RANGE = MIN_D + MAX_D;
+	private static final double K_FROM_OBSTACLE = 10;
+	/** force from the center and the corners of the obstacle (all taken from the center) */
+	private static final int FORCE_POINTS = 5;
+	
+	private final int width;
+	private final int height;
+	private final int samplesPerCell;
+	/** number of the samples in a row / column */
+	private final int columns;
+	private final int rows;
+	private final double[] forcesX;
+	private final double[] forcesY;
+	
+	public ObstacleForceField(int width, int height, int samplesPerCell) {
+		this.width = width;
+		this.height = height;
+		this.samplesPerCell = samplesPerCell;
+		columns = width * samplesPerCell + 1;
+		rows = height * samplesPerCell + 1;
+		forcesX = new double[columns * rows];
+		forcesY = new double[columns * rows];
+	}
+	
+	public static ObstacleForceField of(TestTileMap map, int samplesPerCell) {
+		ObstacleForceField field = new ObstacleForceField(map.getWidthInTiles(), map.getHeightInTiles(), samplesPerCell);
+		for (int x = 0; x < map.getWidthInTiles(); x++) {
+			for (int y = 0; y < map.getHeightInTiles(); y++) {
+				if (map.blocked(x, y))
+					field.addObstacle(x, y);
+			}
+		}
+		return field;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public void addObstacle(int x, int y) {
+		update(x, y, 1);
+	}
+	
+	public void removeObstacle(int x, int y) {
+		update(x, y, -1);
+	}
+	
+	private void update(int x, int y, int sign) {
+		int fromI = Math.max((int) Math.floor((x - RANGE) * samplesPerCell), 0);
+		int toI = Math.min((int) Math.ceil((x + RANGE) * samplesPerCell), columns - 1);
+		int fromJ = Math.max((int) Math.floor((y - RANGE) * samplesPerCell), 0);
+		int toJ = Math.min((int) Math.ceil((y + RANGE) * samplesPerCell), rows - 1);
+		double[] force = new double[2];
+		for (int j = fromJ; j <= toJ; j++) {
+			for (int i = fromI; i <= toI; i++) {
+				obstacleForce((double) i / samplesPerCell, (double) j / samplesPerCell, x, y, force);
+				forcesX[j * columns + i] += sign * force[0];
+				forcesY[j * columns + i] += sign * force[1];
+			}
+		}
+	}
+	
+	/**
+	 * force of one obstacle
+	 * @param out force (x, y)
+	 */
+	static void obstacleForce(double px, double py, int obstacleX, int obstacleY, double[] out) {
+		out[0] = 0;
+		out[1] = 0;
+		double scale = obstacleScale(Math.hypot(px - obstacleX, py - obstacleY));
+		if (scale == 0)
+			return;
+		double diffX = px - (obstacleX + 0.5);
+		double diffY = py - (obstacleY + 0.5);
+		double r = Math.hypot(diffX, diffY);
+		if (r == 0)
+			return;
+		// K / r^2 in the direction from the obstacle center
+		double value = FORCE_POINTS * scale * K_FROM_OBSTACLE / r / r / r;
+		out[0] = diffX * value;
+		out[1] = diffY * value;
+	}
+	
+	private static double obstacleScale(double distance) {
+		if (distance < MIN_D) {
+			return (MIN_D - distance) * 100.0 + 1.0;
+		} else if (distance - MIN_D < MAX_D) {
+			return (MAX_D - distance + MIN_D) / MAX_D;
+		} else {
+			return 0;
+		}
+	}
+	
+	/**
+	 * @param out interpolated force (x, y)
+	 */
+	public void forceAt(double px, double py, double[] out) {
+		double gx = clamp(px * samplesPerCell, columns - 1);
+		double gy = clamp(py * samplesPerCell, rows - 1);
+		int i = Math.min((int) gx, columns - 2);
+		int j = Math.min((int) gy, rows - 2);
+		double fx = gx - i;
+		double fy = gy - j;
+		int s00 = j * columns + i;
+		int s10 = s00 + 1;
+		int s01 = s00 + columns;
+		int s11 = s01 + 1;
+		double w00 = (1 - fx) * (1 - fy);
+		double w10 = fx * (1 - fy);
+		double w01 = (1 - fx) * fy;
+		double w11 = fx * fy;
+		out[0] = forcesX[s00] * w00 + forcesX[s10] * w10 + forcesX[s01] * w01 + forcesX[s11] * w11;
+		out[1] = forcesY[s00] * w00 + forcesY[s10] * w10 + forcesY[s01] * w01 + forcesY[s11] * w11;
+	}
+	
+	public Vector2 forceAt(Vector2 position) {
+		double[] force = new double[2];
+		forceAt(position.getX(), position.getY(), force);
+		return new Vector2(force[0], force[1]);
+	}
+	
+	private double clamp(double value, double max) {
+		if (value < 0)
+			return 0;
+		if (value > max)
+			return max;
+		return value;
+	}
+	
+}
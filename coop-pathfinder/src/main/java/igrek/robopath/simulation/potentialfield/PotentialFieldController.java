@@ -4,8 +4,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import de.felixroske.jfxsupport.FXMLController;
@@ -40,8 +38,12 @@ public class PotentialFieldController {
 	private VBox drawAreaContainer;
 	
 	private TestTileMap map;
-	private List<MobileRobot> robots = new ArrayList<>();
+	/** precomputed forces repelling from the map obstacles */
+	private ObstacleForceField obstaclesField;
+	private PotentialFieldSimulation simulation;
 	private SimulationParams params = new SimulationParams();
+	/** samples of the obstacles force field per cell side */
+	private static final int OBSTACLES_FIELD_SAMPLES = 4;
 	
 	private Random random;
 	private TileCellType pressedTransformer;
@@ -62,9 +64,10 @@ public class PotentialFieldController {
 		if (event != null)
 			readParams();
 		map = new TestTileMap(params.mapSizeW, params.mapSizeH);
-		robots.clear();
+		obstaclesField = ObstacleForceField.of(map, OBSTACLES_FIELD_SAMPLES);
+		simulation = new PotentialFieldSimulation(obstaclesField);
 		for (int i = 0; i < params.robotsCount; i++) {
-			robots.add(new MobileRobot(randomCell(map), robot -> onTargetReached(robot)));
+			simulation.addRobot(randomCell(map), robot -> onTargetReached(robot));
 		}
 		if (event != null)
 			drawAreaContainerResized();
@@ -134,75 +137,7 @@ public class PotentialFieldController {
 	}
 	
 	private void timeLapse(double t) {
-		for (MobileRobot robot : robots) {
-			timeLapseRobot(t, robot);
-		}
-	}
-	
-	private void timeLapseRobot(double t, MobileRobot robot) {
-		if (robot.getTarget() != null) {
-			robot.zeroForce();
-			// force attracting to target
-			Vector2 diff = robot.getTarget().sub(robot.getPosition());
-			final double F_TO_TARGET = 30; // constant force value
-			Vector2 forceToTarget = diff.normalizeTo(F_TO_TARGET);
-			robot.addForce(forceToTarget);
-			
-			// forces repelling from obstacles
-			Vector2 obstaclesForce = Vector2.ZERO;
-			for (int x = 0; x < map.getWidthInTiles(); x++) {
-				for (int y = 0; y <= map.getHeightInTiles(); y++) {
-					TileCellType type = map.get(x, y);
-					if (type == TileCellType.BLOCKED) {
-						double obstacleScale = obstacleScale(robot.getPosition(), x, y);
-						// force from center
-						Vector2 forceFromObstacle = forceFromObstacle(robot, x, y, 0, 0);
-						obstaclesForce = obstaclesForce.add(forceFromObstacle.scale(obstacleScale));
-						// force from corners
-						obstaclesForce = obstaclesForce.add(forceFromObstacle(robot, x, y, -0.5, -0.5)
-								.scale(obstacleScale));
-						obstaclesForce = obstaclesForce.add(forceFromObstacle(robot, x, y, -0.5, +0.5)
-								.scale(obstacleScale));
-						obstaclesForce = obstaclesForce.add(forceFromObstacle(robot, x, y, +0.5, -0.5)
-								.scale(obstacleScale));
-						obstaclesForce = obstaclesForce.add(forceFromObstacle(robot, x, y, +0.5, +0.5)
-								.scale(obstacleScale));
-					}
-				}
-			}
-			obstaclesForce = obstaclesForce.cutOff(32);
-			robot.addForce(obstaclesForce);
-			
-			//			logger.info("pos: " + robot.getPosition() + ", v: " + robot.getVelocity() + ", F: " + robot
-			//					.getForce());
-			
-			robot.timeLapse(t);
-		}
-	}
-	
-	private double distanceTo(Vector2 position, int x, int y) {
-		return Math.hypot(position.getX() - x, position.getY() - y);
-	}
-	
-	private double obstacleScale(Vector2 position, int x, int y) {
-		double distance = distanceTo(position, x, y);
-		double MIN_D = 0.7;
-		double MAX_D = 5.0;
-		if (distance < MIN_D) {
-			return (MIN_D - distance) * 100.0 + 1.0;
-		} else if (distance - MIN_D < MAX_D) {
-			return (MAX_D - distance + MIN_D) / MAX_D;
-		} else {
-			return 0;
-		}
-	}
-	
-	private Vector2 forceFromObstacle(MobileRobot robot, int obstacleX, int obstacleY, double offsetX, double offsetY) {
-		Vector2 diff = robot.getPosition().sub(new Vector2(obstacleX + 0.5, obstacleY + 0.5));
-		double r = diff.length();
-		final double K_FROM_OBSTACLE = 10;
-		double forceValue = K_FROM_OBSTACLE / r / r;
-		return diff.normalizeTo(forceValue);
+		simulation.timeLapse(t);
 	}
 	
 	private void mousePressedMap(MouseEvent event) {
@@ -210,7 +145,7 @@ public class PotentialFieldController {
 			
 			Vector2 point = locateRealPoint(event);
 			if (point != null) {
-				for (MobileRobot robot : robots) {
+				for (MobileRobot robot : simulation.getRobots()) {
 					robot.setTarget(point);
 				}
 				drawMap();
@@ -254,7 +189,14 @@ public class PotentialFieldController {
 	}
 	
 	private void setMapCell(Point point, TileCellType type) {
+		boolean wasBlocked = map.blocked(point.x, point.y);
 		map.set(point.x, point.y, type);
+		boolean blocked = map.blocked(point.x, point.y);
+		if (blocked && !wasBlocked) {
+			obstaclesField.addObstacle(point.x, point.y);
+		} else if (!blocked && wasBlocked) {
+			obstaclesField.removeObstacle(point.x, point.y);
+		}
 	}
 	
 	private TileCellType transformCellTypeLeftClicked(TileCellType type) {
@@ -277,7 +219,7 @@ public class PotentialFieldController {
 	
 	@FXML
 	private void randomTargetPressed(final Event event) {
-		for (MobileRobot robot : robots) {
+		for (MobileRobot robot : simulation.getRobots()) {
 			randomRobotTarget(robot);
 		}
 	}
@@ -298,7 +240,7 @@ public class PotentialFieldController {
 			for (int y = 0; y <= map.getHeightInTiles(); y++) {
 				TileCellType type = getMapCellType(x, y);
 				if (type == replaceFrom)
-					map.set(x, y, replaceTo);
+					setMapCell(new Point(x, y), replaceTo);
 			}
 		}
 	}
@@ -421,7 +363,7 @@ public class PotentialFieldController {
 	}
 	
 	private void drawRobots(GraphicsContext gc) {
-		for (MobileRobot robot : robots) {
+		for (MobileRobot robot : simulation.getRobots()) {
 			drawRobot(gc, robot);
 		}
 	}
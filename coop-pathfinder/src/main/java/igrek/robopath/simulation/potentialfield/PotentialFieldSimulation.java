@@ -0,0 +1,269 @@
+package igrek.robopath.simulation.potentialfield;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import igrek.robopath.simulation.potentialfield.robot.MobileRobot;
+import igrek.robopath.simulation.potentialfield.robot.RobotsPhysics;
+import igrek.robopath.simulation.potentialfield.robot.TargetReachedHandler;
+import igrek.robopath.simulation.potentialfield.robot.Vector2;
+
+/**
+ * Headless potential field simulation - robots are attracted to their targets and repelled from the obstacles and from each other.
+ * Simulated time is consumed in the fixed time steps (frame time doesn't affect the movement),
+ * the rest is kept for the next frame.
+ * Robots are put into the map cells buckets in every step, so a robot is checked only against the robots in the neighbouring cells.
+ * Forces of all robots are computed before anyone moves, so the step can be done in parallel with the same results.
+ */
+public class PotentialFieldSimulation {
+	
+	/** constant force value attracting to target */
+	public static final double F_TO_TARGET = 30;
+	public static final double MAX_OBSTACLES_FORCE = 32;
+	/** robots further from each other don't interact (not greater than the buckets size - 1 cell) */
+	public static final double ROBOT_RANGE = 1.0;
+	private static final double K_FROM_ROBOT = 20;
+	/** twice the attraction to target - robot can always be stopped by the others */
+	public static final double MAX_ROBOTS_FORCE = 2 * F_TO_TARGET;
+	public static final double DEFAULT_TIME_STEP = 1.0 / 60;
+	/** steps limit in one frame - after a long pause the simulation doesn't try to catch up */
+	private static final int MAX_SUBSTEPS = 30;
+	/** robots count, from which the step is done in parallel */
+	private static final int PARALLEL_THRESHOLD = 512;
+	/** robots count in one parallel task */
+	private static final int PARALLEL_CHUNK = 128;
+	
+	private final RobotsPhysics physics = new RobotsPhysics(16);
+	private ObstacleForceField obstaclesField;
+	private double timeStep = DEFAULT_TIME_STEP;
+	/** simulated time not consumed by the steps yet */
+	private double accumulator = 0;
+	private final double[] force = new double[2];
+	
+	private boolean parallel = true;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	
+	/** robots of the cell c: bucketRobots[bucketStarts[c]] .. bucketRobots[bucketStarts[c + 1] - 1] */
+	private int[] bucketStarts = new int[0];
+	private int[] bucketRobots = new int[0];
+	private int[] robotBuckets = new int[0];
+	private int bucketsWidth;
+	private int bucketsHeight;
+	
+	public PotentialFieldSimulation(ObstacleForceField obstaclesField) {
+		this.obstaclesField = obstaclesField;
+	}
+	
+	public RobotsPhysics getPhysics() {
+		return physics;
+	}
+	
+	public List<MobileRobot> getRobots() {
+		return physics.getRobots();
+	}
+	
+	public MobileRobot addRobot(Vector2 position, TargetReachedHandler targetReachedHandler) {
+		return physics.add(position, targetReachedHandler);
+	}
+	
+	public ObstacleForceField getObstaclesField() {
+		return obstaclesField;
+	}
+	
+	public void setObstaclesField(ObstacleForceField obstaclesField) {
+		this.obstaclesField = obstaclesField;
+	}
+	
+	public double getTimeStep() {
+		return timeStep;
+	}
+	
+	public void setTimeStep(double timeStep) {
+		this.timeStep = timeStep;
+	}
+	
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param t elapsed time [s]
+	 * @return number of the steps done
+	 */
+	public int timeLapse(double t) {
+		accumulator += t;
+		int steps = 0;
+		while (accumulator >= timeStep) {
+			if (steps == MAX_SUBSTEPS) {
+				accumulator = 0;
+				break;
+			}
+			step(timeStep);
+			accumulator -= timeStep;
+			steps++;
+		}
+		return steps;
+	}
+	
+	/**
+	 * one simulation step of all robots, robots without target don't move (but they repel the others)
+	 */
+	public void step(double dt) {
+		int count = physics.size();
+		indexRobots();
+		if (parallel && count >= PARALLEL_THRESHOLD) {
+			pool.invoke(new RobotsTask(0, count, false, dt));
+			pool.invoke(new RobotsTask(0, count, true, dt));
+		} else {
+			computeForces(0, count, force);
+			move(0, count, dt);
+		}
+	}
+	
+	/**
+	 * puts robots into the buckets (counting sort by the cell)
+	 */
+	private void indexRobots() {
+		int count = physics.size();
+		bucketsWidth = obstaclesField.getWidth();
+		bucketsHeight = obstaclesField.getHeight();
+		int buckets = bucketsWidth * bucketsHeight;
+		if (bucketStarts.length != buckets + 1)
+			bucketStarts = new int[buckets + 1];
+		if (bucketRobots.length < count) {
+			bucketRobots = new int[Math.max(count, bucketRobots.length * 2)];
+			robotBuckets = new int[bucketRobots.length];
+		}
+		Arrays.fill(bucketStarts, 0);
+		for (int i = 0; i < count; i++) {
+			int bucket = bucket(physics.getX(i), physics.getY(i));
+			robotBuckets[i] = bucket;
+			bucketStarts[bucket + 1]++;
+		}
+		for (int c = 0; c < buckets; c++) {
+			bucketStarts[c + 1] += bucketStarts[c];
+		}
+		// bucketStarts[c + 1] is the end of the bucket c - it's moved back to its start while filling
+		for (int i = count - 1; i >= 0; i--) {
+			bucketRobots[--bucketStarts[robotBuckets[i] + 1]] = i;
+		}
+		System.arraycopy(bucketStarts, 1, bucketStarts, 0, buckets);
+		bucketStarts[buckets] = count;
+	}
+	
+	/**
+	 * robots outside the map are put into the border cells
+	 */
+	private int bucket(double x, double y) {
+		int cx = Math.min(Math.max((int) Math.floor(x), 0), bucketsWidth - 1);
+		int cy = Math.min(Math.max((int) Math.floor(y), 0), bucketsHeight - 1);
+		return cy * bucketsWidth + cx;
+	}
+	
+	private void computeForces(int from, int to, double[] force) {
+		for (int i = from; i < to; i++) {
+			if (!physics.hasTarget(i))
+				continue;
+			physics.zeroForce(i);
+			double x = physics.getX(i);
+			double y = physics.getY(i);
+			// force attracting to target
+			double diffX = physics.getTargetX(i) - x;
+			double diffY = physics.getTargetY(i) - y;
+			double distance = Math.hypot(diffX, diffY);
+			if (distance > 0)
+				physics.addForce(i, diffX * F_TO_TARGET / distance, diffY * F_TO_TARGET / distance);
+			// forces repelling from obstacles
+			obstaclesField.forceAt(x, y, force);
+			addForceCutOff(i, force[0], force[1], MAX_OBSTACLES_FORCE);
+			// forces repelling from other robots
+			robotsForce(i, x, y, force);
+			addForceCutOff(i, force[0], force[1], MAX_ROBOTS_FORCE);
+		}
+	}
+	
+	private void robotsForce(int i, double x, double y, double[] force) {
+		double fx = 0;
+		double fy = 0;
+		int cx = robotBuckets[i] % bucketsWidth;
+		int cy = robotBuckets[i] / bucketsWidth;
+		for (int by = Math.max(cy - 1, 0); by <= Math.min(cy + 1, bucketsHeight - 1); by++) {
+			for (int bx = Math.max(cx - 1, 0); bx <= Math.min(cx + 1, bucketsWidth - 1); bx++) {
+				int c = by * bucketsWidth + bx;
+				for (int k = bucketStarts[c]; k < bucketStarts[c + 1]; k++) {
+					int j = bucketRobots[k];
+					if (j == i)
+						continue;
+					double diffX = x - physics.getX(j);
+					double diffY = y - physics.getY(j);
+					double r = Math.hypot(diffX, diffY);
+					if (r >= ROBOT_RANGE || r == 0)
+						continue;
+					// K / r^2 fading out to 0 at the range
+					double value = K_FROM_ROBOT * (1 - r / ROBOT_RANGE) / r / r / r;
+					fx += diffX * value;
+					fy += diffY * value;
+				}
+			}
+		}
+		force[0] = fx;
+		force[1] = fy;
+	}
+	
+	private void addForceCutOff(int i, double fx, double fy, double maxValue) {
+		double value = Math.hypot(fx, fy);
+		if (value > maxValue) {
+			fx *= maxValue / value;
+			fy *= maxValue / value;
+		}
+		physics.addForce(i, fx, fy);
+	}
+	
+	private void move(int from, int to, double dt) {
+		for (int i = from; i < to; i++) {
+			if (physics.hasTarget(i))
+				physics.timeLapse(i, dt);
+		}
+	}
+	
+	/**
+	 * computes forces or moves the robots from the range in parallel
+	 */
+	private class RobotsTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		private final boolean moving;
+		private final double dt;
+		
+		RobotsTask(int from, int to, boolean moving, double dt) {
+			this.from = from;
+			this.to = to;
+			this.moving = moving;
+			this.dt = dt;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_CHUNK) {
+				if (moving) {
+					move(from, to, dt);
+				} else {
+					computeForces(from, to, new double[2]);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RobotsTask(from, middle, moving, dt), new RobotsTask(middle, to, moving, dt));
+			}
+		}
+	}
+	
+}
@@ -1,12 +1,15 @@
 package igrek.robopath.simulation.potentialfield.robot;
 
+/**
+ * View of one robot, whose state is stored in RobotsPhysics arrays
+ */
 public class MobileRobot {
 	
 	public static final double MAX_SPEED = 2;
 	
-	private Vector2 position = Vector2.ZERO;
-	private Vector2 velocity = Vector2.ZERO;
-	private Vector2 force = Vector2.ZERO;
+	private final RobotsPhysics physics;
+	/** index in the physics arrays, -1 - removed */
+	int index = -1;
 	/**
 	 * 0 - right direction
 	 * 90 - up direction
@@ -14,45 +17,52 @@ public class MobileRobot {
 	private double orientation = 0;
 	private TargetReachedHandler targetReachedHandler;
 	
-	private Vector2 target = null;
-	
+	/**
+	 * standalone robot (with its own physics)
+	 */
 	public MobileRobot(Vector2 position, TargetReachedHandler targetReachedHandler) {
-		this.position = position;
+		this.physics = new RobotsPhysics(1);
+		this.targetReachedHandler = targetReachedHandler;
+		physics.attach(this, position);
+	}
+	
+	MobileRobot(RobotsPhysics physics, TargetReachedHandler targetReachedHandler) {
+		this.physics = physics;
 		this.targetReachedHandler = targetReachedHandler;
 	}
 	
+	public int getIndex() {
+		return index;
+	}
+	
 	public MobileRobot zeroForce() {
-		force = Vector2.ZERO;
+		physics.zeroForce(index);
 		return this;
 	}
 	
 	public MobileRobot addForce(Vector2 f2) {
-		force = force.add(f2);
+		physics.addForce(index, f2.getX(), f2.getY());
 		return this;
 	}
 	
 	public void timeLapse(double t) {
-		Vector2 deltaV = force.scale(t);
-		// if max speed exceeded, cut off
-		velocity = velocity.add(deltaV).cutOff(MAX_SPEED);
-		Vector2 deltaX = velocity.scale(t);
-		position = position.add(deltaX);
+		physics.timeLapse(index, t);
 	}
 	
 	public Vector2 getPosition() {
-		return position;
+		return new Vector2(physics.getX(index), physics.getY(index));
 	}
 	
 	public Vector2 getVelocity() {
-		return velocity;
+		return new Vector2(physics.getVelocityX(index), physics.getVelocityY(index));
 	}
 	
 	public Vector2 getForce() {
-		return force;
+		return new Vector2(physics.getForceX(index), physics.getForceY(index));
 	}
 	
 	public void setPosition(Vector2 position) {
-		this.position = position;
+		physics.setPosition(index, position.getX(), position.getY());
 	}
 	
 	public double getOrientation() {
@@ -64,10 +74,16 @@ public class MobileRobot {
 	}
 	
 	public Vector2 getTarget() {
-		return target;
+		if (!physics.hasTarget(index))
+			return null;
+		return new Vector2(physics.getTargetX(index), physics.getTargetY(index));
 	}
 	
 	public void setTarget(Vector2 target) {
-		this.target = target;
+		if (target == null) {
+			physics.clearTarget(index);
+		} else {
+			physics.setTarget(index, target.getX(), target.getY());
+		}
 	}
 }
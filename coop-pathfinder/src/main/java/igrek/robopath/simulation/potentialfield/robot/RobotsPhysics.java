@@ -0,0 +1,189 @@
+package igrek.robopath.simulation.potentialfield.robot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Positions, velocities, forces and targets of all robots kept in primitive arrays (structure of arrays),
+ * so the simulation step is a tight loop without any allocation.
+ * MobileRobot is a view of one robot in these arrays.
+ */
+public class RobotsPhysics {
+	
+	private int count = 0;
+	private double[] positionsX = new double[0];
+	private double[] positionsY = new double[0];
+	private double[] velocitiesX = new double[0];
+	private double[] velocitiesY = new double[0];
+	private double[] forcesX = new double[0];
+	private double[] forcesY = new double[0];
+	private double[] targetsX = new double[0];
+	private double[] targetsY = new double[0];
+	private boolean[] targeted = new boolean[0];
+	private MobileRobot[] robots = new MobileRobot[0];
+	
+	public RobotsPhysics(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+	
+	private void allocate(int capacity) {
+		positionsX = Arrays.copyOf(positionsX, capacity);
+		positionsY = Arrays.copyOf(positionsY, capacity);
+		velocitiesX = Arrays.copyOf(velocitiesX, capacity);
+		velocitiesY = Arrays.copyOf(velocitiesY, capacity);
+		forcesX = Arrays.copyOf(forcesX, capacity);
+		forcesY = Arrays.copyOf(forcesY, capacity);
+		targetsX = Arrays.copyOf(targetsX, capacity);
+		targetsY = Arrays.copyOf(targetsY, capacity);
+		targeted = Arrays.copyOf(targeted, capacity);
+		robots = Arrays.copyOf(robots, capacity);
+	}
+	
+	public MobileRobot add(Vector2 position, TargetReachedHandler targetReachedHandler) {
+		MobileRobot robot = new MobileRobot(this, targetReachedHandler);
+		attach(robot, position);
+		return robot;
+	}
+	
+	void attach(MobileRobot robot, Vector2 position) {
+		if (count == robots.length)
+			allocate(count * 2);
+		int i = count++;
+		positionsX[i] = position.getX();
+		positionsY[i] = position.getY();
+		velocitiesX[i] = 0;
+		velocitiesY[i] = 0;
+		forcesX[i] = 0;
+		forcesY[i] = 0;
+		targeted[i] = false;
+		robots[i] = robot;
+		robot.index = i;
+	}
+	
+	/**
+	 * removes the robot, the last robot takes its index
+	 */
+	public void remove(MobileRobot robot) {
+		int i = robot.index;
+		if (i < 0 || robots[i] != robot)
+			throw new IllegalArgumentException("robot doesn't belong to this simulation");
+		int last = --count;
+		positionsX[i] = positionsX[last];
+		positionsY[i] = positionsY[last];
+		velocitiesX[i] = velocitiesX[last];
+		velocitiesY[i] = velocitiesY[last];
+		forcesX[i] = forcesX[last];
+		forcesY[i] = forcesY[last];
+		targetsX[i] = targetsX[last];
+		targetsY[i] = targetsY[last];
+		targeted[i] = targeted[last];
+		robots[i] = robots[last];
+		robots[i].index = i;
+		robots[last] = null;
+		robot.index = -1;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < count; i++) {
+			robots[i].index = -1;
+			robots[i] = null;
+		}
+		count = 0;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public MobileRobot get(int i) {
+		return robots[i];
+	}
+	
+	/**
+	 * @return read-only view of the current robots (changes when robots are added or removed)
+	 */
+	public List<MobileRobot> getRobots() {
+		return Collections.unmodifiableList(Arrays.asList(robots).subList(0, count));
+	}
+	
+	public double getX(int i) {
+		return positionsX[i];
+	}
+	
+	public double getY(int i) {
+		return positionsY[i];
+	}
+	
+	public double getVelocityX(int i) {
+		return velocitiesX[i];
+	}
+	
+	public double getVelocityY(int i) {
+		return velocitiesY[i];
+	}
+	
+	public double getForceX(int i) {
+		return forcesX[i];
+	}
+	
+	public double getForceY(int i) {
+		return forcesY[i];
+	}
+	
+	public boolean hasTarget(int i) {
+		return targeted[i];
+	}
+	
+	public double getTargetX(int i) {
+		return targetsX[i];
+	}
+	
+	public double getTargetY(int i) {
+		return targetsY[i];
+	}
+	
+	public void setPosition(int i, double x, double y) {
+		positionsX[i] = x;
+		positionsY[i] = y;
+	}
+	
+	public void setTarget(int i, double x, double y) {
+		targetsX[i] = x;
+		targetsY[i] = y;
+		targeted[i] = true;
+	}
+	
+	public void clearTarget(int i) {
+		targeted[i] = false;
+	}
+	
+	public void zeroForce(int i) {
+		forcesX[i] = 0;
+		forcesY[i] = 0;
+	}
+	
+	public void addForce(int i, double fx, double fy) {
+		forcesX[i] += fx;
+		forcesY[i] += fy;
+	}
+	
+	/**
+	 * moves the robot by the current force in time t
+	 */
+	public void timeLapse(int i, double t) {
+		double vx = velocitiesX[i] + forcesX[i] * t;
+		double vy = velocitiesY[i] + forcesY[i] * t;
+		// if max speed exceeded, cut off
+		double speed = Math.hypot(vx, vy);
+		if (speed > MobileRobot.MAX_SPEED) {
+			vx *= MobileRobot.MAX_SPEED / speed;
+			vy *= MobileRobot.MAX_SPEED / speed;
+		}
+		velocitiesX[i] = vx;
+		velocitiesY[i] = vy;
+		positionsX[i] += vx * t;
+		positionsY[i] += vy * t;
+	}
+	
+}
@@ -1,15 +1,16 @@
 package igrek.robopath.simulation.whca;
 
-import java.util.LinkedList;
-
+import igrek.robopath.common.PackedPath;
 import igrek.robopath.common.Point;
 
 public class MobileRobot {
 	
 	private Point position;
 	private Point target;
-	private LinkedList<Point> movesQue = new LinkedList<>();
+	/** planned moves (x, y) */
+	private PackedPath movesQue = new PackedPath();
 	private TargetReachedHandler targetReachedHandler;
+	private CellsListener cellsListener;
 	private int id;
 	private int priority;
 	
@@ -17,6 +18,15 @@ public class MobileRobot {
 		void onTargetReached(MobileRobot robot);
 	}
 	
+	/**
+	 * notified when the robot changes its position or target (e.g. to keep track of the free cells)
+	 */
+	public interface CellsListener {
+		void positionChanged(Point previous, Point current);
+		
+		void targetChanged(Point previous, Point current);
+	}
+	
 	public MobileRobot(Point position, TargetReachedHandler targetReachedHandler, int id, int priority) {
 		this.position = position;
 		this.targetReachedHandler = targetReachedHandler;
@@ -28,7 +38,7 @@ public class MobileRobot {
 	protected MobileRobot clone() {
 		MobileRobot clone = new MobileRobot(this.position, null, this.id, this.priority);
 		clone.target = this.target;
-		clone.movesQue = new LinkedList<>(this.movesQue);
+		clone.movesQue = new PackedPath(this.movesQue);
 		return clone;
 	}
 	
@@ -37,7 +47,10 @@ public class MobileRobot {
 	}
 	
 	public synchronized void setPosition(Point position) {
+		Point previous = this.position;
 		this.position = position;
+		if (cellsListener != null)
+			cellsListener.positionChanged(previous, position);
 	}
 	
 	public Point getTarget() {
@@ -45,10 +58,17 @@ public class MobileRobot {
 	}
 	
 	public synchronized void setTarget(Point target) {
+		Point previous = this.target;
 		this.target = target;
+		if (cellsListener != null)
+			cellsListener.targetChanged(previous, target);
 	}
 	
-	LinkedList<Point> getMovesQue() {
+	void setCellsListener(CellsListener cellsListener) {
+		this.cellsListener = cellsListener;
+	}
+	
+	PackedPath getMovesQue() {
 		return movesQue;
 	}
 	
@@ -64,43 +84,69 @@ public class MobileRobot {
 		return id;
 	}
 	
-	Point getNextMove() {
-		if (movesQue.isEmpty())
-			return null;
-		return movesQue.getFirst();
-	}
-	
 	boolean hasNextMove() {
 		return !movesQue.isEmpty();
 	}
 	
-	Point pollNextMove() {
-		if (movesQue.isEmpty())
-			return null;
-		return movesQue.pollFirst();
+	/**
+	 * moves the robot to its next planned position (there must be a planned move)
+	 */
+	void moveToNext() {
+		setPosition(new Point(movesQue.getX(0), movesQue.getY(0)));
+		movesQue.removeFirst();
+	}
+	
+	public int getX() {
+		return position.x;
+	}
+	
+	public int getY() {
+		return position.y;
+	}
+	
+	/** target must be set */
+	public int getTargetX() {
+		return target.x;
 	}
 	
-	Point lastTarget() {
-		if (movesQue.isEmpty())
-			return position;
-		return movesQue.getLast();
+	public int getTargetY() {
+		return target.y;
 	}
 	
-	Point nearestTarget() {
-		if (movesQue.isEmpty())
-			return position;
-		return movesQue.getFirst();
+	/**
+	 * @return x of the position in the next step - the first planned move or the current position
+	 */
+	int getNextX() {
+		return movesQue.isEmpty() ? position.x : movesQue.getX(0);
+	}
+	
+	int getNextY() {
+		return movesQue.isEmpty() ? position.y : movesQue.getY(0);
+	}
+	
+	/**
+	 * @return x of the last planned position or the current position
+	 */
+	int getLastX() {
+		return movesQue.isEmpty() ? position.x : movesQue.getX(movesQue.getLength() - 1);
+	}
+	
+	int getLastY() {
+		return movesQue.isEmpty() ? position.y : movesQue.getY(movesQue.getLength() - 1);
 	}
 	
 	MobileRobot enqueueMove(Point target) {
-		if (!lastTarget().isAdjacentOrEqual(target))
-			throw new IllegalArgumentException("appended move is not adjacent or equal to last target");
-		movesQue.add(target);
-		return this;
+		return enqueueMove(target.x, target.y);
 	}
 	
 	public MobileRobot enqueueMove(int x, int y) {
-		return enqueueMove(new Point(x, y));
+		int last = movesQue.getLength() - 1;
+		int lastX = last < 0 ? position.x : movesQue.getX(last);
+		int lastY = last < 0 ? position.y : movesQue.getY(last);
+		if (Math.abs(x - lastX) > 1 || Math.abs(y - lastY) > 1)
+			throw new IllegalArgumentException("appended move is not adjacent or equal to last target");
+		movesQue.appendStep(x, y, 0);
+		return this;
 	}
 	
 	public synchronized void resetMovesQue() {
@@ -108,23 +154,17 @@ public class MobileRobot {
 	}
 	
 	void resetNextMoves() {
-		Point currentMove = movesQue.peekFirst();
-		movesQue.clear();
-		if (currentMove != null) {
-			movesQue.add(currentMove);
-		}
+		movesQue.keepFirst();
 	}
 	
 	double getInterpolatedX(double moveProgress) {
 		moveProgress = cutOff(moveProgress, 0, 1);
-		Point nearest = nearestTarget();
-		return position.x + (nearest.x - position.x) * moveProgress;
+		return position.x + (getNextX() - position.x) * moveProgress;
 	}
 	
 	double getInterpolatedY(double moveProgress) {
 		moveProgress = cutOff(moveProgress, 0, 1);
-		Point nearest = nearestTarget();
-		return position.y + (nearest.y - position.y) * moveProgress;
+		return position.y + (getNextY() - position.y) * moveProgress;
 	}
 	
 	private double cutOff(double num, double min, double max) {
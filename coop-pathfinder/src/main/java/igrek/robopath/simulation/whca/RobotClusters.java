@@ -0,0 +1,89 @@
+package igrek.robopath.simulation.whca;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import igrek.robopath.common.Point;
+
+/**
+ * Splits robots into groups, which can't interact within one time window.
+ * Robots are joined (union-find), when they are not farther than the range (Chebyshev distance).
+ * Only robots from neighbouring buckets of a grid with the range-sized cells are compared.
+ */
+class RobotClusters {
+	
+	private RobotClusters() {
+	}
+	
+	/**
+	 * @param robots robots in the priority order
+	 * @param range  max distance of robots, which may interact
+	 * @return clusters ordered by their first robots, robots keep the priority order in each cluster
+	 */
+	static List<List<MobileRobot>> split(List<MobileRobot> robots, int range) {
+		int n = robots.size();
+		int[] parents = new int[n];
+		for (int i = 0; i < n; i++) {
+			parents[i] = i;
+		}
+		int bucketSize = Math.max(range, 1);
+		Map<Long, List<Integer>> buckets = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			Point position = robots.get(i).getPosition();
+			buckets.computeIfAbsent(bucket(position.x / bucketSize, position.y / bucketSize), k -> new ArrayList<>())
+					.add(i);
+		}
+		for (int i = 0; i < n; i++) {
+			Point position = robots.get(i).getPosition();
+			int bx = position.x / bucketSize;
+			int by = position.y / bucketSize;
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					List<Integer> bucket = buckets.get(bucket(bx + dx, by + dy));
+					if (bucket == null)
+						continue;
+					for (int j : bucket) {
+						if (j > i && distance(position, robots.get(j).getPosition()) <= range)
+							union(parents, i, j);
+					}
+				}
+			}
+		}
+		Map<Integer, List<MobileRobot>> clusters = new LinkedHashMap<>();
+		for (int i = 0; i < n; i++) {
+			clusters.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(robots.get(i));
+		}
+		return new ArrayList<>(clusters.values());
+	}
+	
+	private static long bucket(int bx, int by) {
+		return ((long) bx << 32) ^ (by & 0xffffffffL);
+	}
+	
+	private static int distance(Point p1, Point p2) {
+		return Math.max(Math.abs(p1.x - p2.x), Math.abs(p1.y - p2.y));
+	}
+	
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+	
+	private static void union(int[] parents, int i, int j) {
+		int rootI = find(parents, i);
+		int rootJ = find(parents, j);
+		// smaller index as the root - clusters are ordered by the first robot
+		if (rootI < rootJ) {
+			parents[rootJ] = rootI;
+		} else if (rootJ < rootI) {
+			parents[rootI] = rootJ;
+		}
+	}
+	
+}
@@ -7,19 +7,42 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
 
+import igrek.robopath.common.FreeCellIndex;
+import igrek.robopath.common.OccupancyGrid;
+import igrek.robopath.common.PackedPath;
 import igrek.robopath.common.Point;
 import igrek.robopath.common.TileMap;
 import igrek.robopath.mazegenerator.MazeGenerator;
 import igrek.robopath.mazegenerator.NoNextFieldException;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.pathfinder.rra.DistanceFieldCache;
 import igrek.robopath.pathfinder.whca.Path;
+import igrek.robopath.pathfinder.whca.ReservationLookups;
+import igrek.robopath.pathfinder.whca.ReservationOverlay;
 import igrek.robopath.pathfinder.whca.ReservationTable;
+import igrek.robopath.pathfinder.whca.RollingReservationTable;
+import igrek.robopath.pathfinder.whca.SparseReservationTable;
+import igrek.robopath.pathfinder.whca.TaggedReservationTable;
+import igrek.robopath.pathfinder.whca.TaggedReservationView;
 import igrek.robopath.pathfinder.whca.WHCAPathFinder;
-import javafx.util.Pair;
 
 public class WHCAController {
 	
@@ -41,10 +64,70 @@ public class WHCAController {
 	private volatile boolean calculatingPaths = false;
 	private boolean prioritiesPromotion = true;
 	private boolean timeWindowScaling = true;
+	/** replan only robots, which need it - keep the rest of the plans */
+	private boolean incrementalReplanning = false;
+	/** number of robots replanned during the last planning */
+	private int replannedCount = 0;
+	/** plan robots concurrently against a snapshot, then validate the paths in priority order */
+	private boolean parallelPlanning = false;
+	private ForkJoinPool planningPool = ForkJoinPool.commonPool();
+	/** path finders of the planning threads (search buffers are reused) */
+	private ThreadLocal<WHCAPathFinder> workerPathFinders = ThreadLocal.withInitial(() -> new WHCAPathFinder(null, null));
+	/** number of optimistic paths rejected during the last planning (replanned sequentially) */
+	private int retriedCount = 0;
+	/** planning threads busy time to the parallel planning time during the last planning */
+	private double parallelSpeedup = 0;
+	/** plan groups of robots, which can't interact, concurrently */
+	private boolean spatialClustering = false;
+	/** number of robot clusters during the last planning */
+	private int clustersCount = 0;
+	/** log the planning summary after each replanning */
+	private boolean stepSummary = true;
+	private PlanningMetrics metrics = new PlanningMetrics();
+	/** robots, which plans were reset due to collisions during the current step */
+	private int collisionResetsCount = 0;
+	/** cells, which robots were going to enter at the same time, during the current step */
+	private int vertexConflictsCount = 0;
+	/** pairs of robots, which were going to swap their positions, during the current step */
+	private int swapConflictsCount = 0;
+	/** robots (indexes) in the map cells - for the collision detection */
+	private OccupancyGrid occupancy;
+	/** targets and priorities of the robots at the time their current paths were planned */
+	private Map<MobileRobot, Point> plannedTargets = new ConcurrentHashMap<>();
+	private Map<MobileRobot, Integer> plannedPriorities = new ConcurrentHashMap<>();
+	private WHCAPathFinder pathFinder;
+	private DistanceFieldCache distanceFields = new DistanceFieldCache();
+	/** reservation table kept between the simulation steps */
+	private TaggedReservationTable reservations;
+	private long reservationsMapVersion = -1;
+	/** all the robots have to be replanned (e.g. the robots have been changed) */
+	private boolean fullReplanNeeded = true;
+	/** robots, which plans are not valid anymore (e.g. after a collision) */
+	private Set<MobileRobot> invalidPlans = new HashSet<>();
+	/** ids of the already planned robots, which reservations have been taken over during the current planning */
+	private Set<Integer> displacedPlans = new HashSet<>();
+	/** cells free of obstacles and robots */
+	private FreeCellIndex robotCells;
+	/** cells free of obstacles and targets of the robots */
+	private FreeCellIndex targetCells;
+	private MobileRobot.CellsListener cellsListener = new MobileRobot.CellsListener() {
+		@Override
+		public void positionChanged(Point previous, Point current) {
+			robotCells.release(previous);
+			robotCells.occupy(current);
+		}
+		
+		@Override
+		public void targetChanged(Point previous, Point current) {
+			targetCells.release(previous);
+			targetCells.occupy(current);
+		}
+	};
 	
-	public WHCAController(WHCAPresenter presenter, WHCASimulationParams params) {
+	public WHCAController(WHCASimulationParams params) {
 		this.params = params;
 		resetMap();
+		pathFinder = new WHCAPathFinder(null, map, distanceFields);
 	}
 	
 	@Autowired
@@ -57,6 +140,12 @@ public class WHCAController {
 		this.mazegen = mazegen;
 	}
 	
+	@Autowired
+	public void setDistanceFields(DistanceFieldCache distanceFields) {
+		this.distanceFields = distanceFields;
+		pathFinder.setDistanceFieldCache(distanceFields);
+	}
+	
 	public void setPrioritiesPromotion(boolean prioritiesPromotion) {
 		this.prioritiesPromotion = prioritiesPromotion;
 	}
@@ -65,6 +154,54 @@ public class WHCAController {
 		this.timeWindowScaling = timeWindowScaling;
 	}
 	
+	public void setIncrementalReplanning(boolean incrementalReplanning) {
+		this.incrementalReplanning = incrementalReplanning;
+	}
+	
+	public int getReplannedCount() {
+		return replannedCount;
+	}
+	
+	public void setParallelPlanning(boolean parallelPlanning) {
+		this.parallelPlanning = parallelPlanning;
+	}
+	
+	public void setPlanningPool(ForkJoinPool planningPool) {
+		this.planningPool = planningPool;
+	}
+	
+	public void setSpatialClustering(boolean spatialClustering) {
+		this.spatialClustering = spatialClustering;
+	}
+	
+	public int getClustersCount() {
+		return clustersCount;
+	}
+	
+	public int getRetriedCount() {
+		return retriedCount;
+	}
+	
+	public double getParallelSpeedup() {
+		return parallelSpeedup;
+	}
+	
+	public void setStepSummary(boolean stepSummary) {
+		this.stepSummary = stepSummary;
+	}
+	
+	public void setMetrics(PlanningMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	public PlanningMetrics getMetrics() {
+		return metrics;
+	}
+	
+	TaggedReservationTable getReservations() {
+		return reservations;
+	}
+	
 	public TileMap getMap() {
 		return map;
 	}
@@ -80,12 +217,17 @@ public class WHCAController {
 	synchronized void resetMap() {
 		map = new TileMap(params.mapSizeW, params.mapSizeH);
 		robots.clear();
+		resetFreeCells();
+		plannedTargets.clear();
+		plannedPriorities.clear();
+		fullReplanNeeded = true;
 	}
 	
 	public synchronized void placeRobots() {
 		robots.clear();
+		resetFreeCells();
 		for (int i = 0; i < params.robotsCount; i++) {
-			Point cell = randomUnoccupiedCellForRobot(map);
+			Point cell = randomUnoccupiedCellForRobot();
 			if (cell == null)
 				throw new NoNextFieldException("can't find next random robot posistion - all seems to be occupied");
 			createMobileRobot(cell);
@@ -95,10 +237,24 @@ public class WHCAController {
 	public synchronized MobileRobot createMobileRobot(Point point) {
 		int id = nextRobotId(robots);
 		MobileRobot robo = new MobileRobot(point, robot -> onTargetReached(robot), id, id);
+		robo.setCellsListener(cellsListener);
+		robotCells.occupy(point);
 		robots.add(robo);
+		reorderNeeded = true;
+		fullReplanNeeded = true;
 		return robo;
 	}
 	
+	public synchronized void removeRobot(MobileRobot robot) {
+		if (!robots.remove(robot))
+			return;
+		robot.setCellsListener(null);
+		robotCells.release(robot.getPosition());
+		targetCells.release(robot.getTarget());
+		reorderNeeded = true;
+		fullReplanNeeded = true;
+	}
+	
 	private int nextRobotId(List<MobileRobot> robots) {
 		return robots.stream().mapToInt(robot -> robot.getId()).max().orElse(0) + 1;
 	}
@@ -133,6 +289,9 @@ public class WHCAController {
 	
 	public synchronized void setRobots(List<MobileRobot> robots) {
 		this.robots = robots;
+		resetFreeCells();
+		reorderNeeded = true;
+		fullReplanNeeded = true;
 	}
 	
 	MobileRobot occupiedByRobot(Point point) {
@@ -146,7 +305,7 @@ public class WHCAController {
 	private void randomRobotTarget(MobileRobot robot) {
 		robot.resetNextMoves();
 //		Point start = robot.lastTarget();
-		Point target = randomUnoccupiedCellForTarget(map);
+		Point target = randomUnoccupiedCellForTarget();
 		// reset its initial priority
 		robot.setPriority(robot.getId());
 		if (target == null)
@@ -154,56 +313,47 @@ public class WHCAController {
 		robot.setTarget(target);
 	}
 	
-	private Point randomUnoccupiedCellForTarget(TileMap map) {
-		// get all unoccupied cells
-		List<Point> frees = new ArrayList<>();
-		map.foreach((x, y, occupied) -> {
-			if (!occupied)
-				frees.add(new Point(x, y));
-		});
-		// remove occupied by other targets
-		for (MobileRobot robot : robots) {
-			Point target = robot.getTarget();
-			if (target != null)
-				frees.remove(target);
-		}
-		if (frees.isEmpty())
-			return null;
-		// random from list
-		return frees.get(random.nextInt(frees.size()));
-	}
-	
-	private Point randomUnoccupiedCellForRobot(TileMap map) {
-		// get all unoccupied cells
-		List<Point> frees = new ArrayList<>();
-		map.foreach((x, y, occupied) -> {
-			if (!occupied)
-				frees.add(new Point(x, y));
-		});
-		// remove occupied by other robots
+	private Point randomUnoccupiedCellForTarget() {
+		return targetCells.random(random);
+	}
+	
+	private Point randomUnoccupiedCellForRobot() {
+		return robotCells.random(random);
+	}
+	
+	/**
+	 * builds the free cells indexes from scratch - for the current map and robots
+	 */
+	private void resetFreeCells() {
+		if (robotCells != null) {
+			robotCells.detach();
+			targetCells.detach();
+		}
+		robotCells = new FreeCellIndex(map);
+		targetCells = new FreeCellIndex(map);
 		for (MobileRobot robot : robots) {
-			Point p = robot.getPosition();
-			if (p != null)
-				frees.remove(p);
+			robot.setCellsListener(cellsListener);
+			robotCells.occupy(robot.getPosition());
+			targetCells.occupy(robot.getTarget());
 		}
-		if (frees.isEmpty())
-			return null;
-		// random from list
-		return frees.get(random.nextInt(frees.size()));
 	}
 	
 	
 	public synchronized void stepSimulation() {
 //		logger.debug("next simulation step...");
 		boolean replan = false;
-		long startTime = System.currentTimeMillis();
+		replannedCount = 0;
+		collisionResetsCount = 0;
+		vertexConflictsCount = 0;
+		long startTime = System.nanoTime();
 //		logger.debug("collision detection (before)...");
 		resetAllCollidedRobots();
+		swapConflictsCount = countSwapConflicts();
 		robotsReached.clear();
 //		logger.debug("moving robots...");
 		for (MobileRobot robot : robots) {
 			if (robot.hasNextMove()) {
-				robot.setPosition(robot.pollNextMove());
+				robot.moveToNext();
 			}
 			if (robot.hasReachedTarget() && params.robotAutoTarget) {
 				robotsReached.add(robot);
@@ -216,6 +366,7 @@ public class WHCAController {
 		for (MobileRobot robot : robotsReached) {
 			robot.targetReached();
 		}
+		advanceReservations();
 		
 		List<Path> paths = new ArrayList<>();
 		if (replan) {
@@ -225,145 +376,495 @@ public class WHCAController {
 //		logger.debug("collision detection (after)...");
 		resetAllCollidedRobots();
 		
-		if (replan) {
-		  System.out.println("Solving Time = " + (System.currentTimeMillis() - startTime) + " ms");
-		  
-		  int makespan = 0;
-		  int moves = 0;
-		  for (Path path : paths) {
-	      int move = 0;
-		    for (int i = 0; i < path.getLength() - 1; i++) {
-		      if (path.getT(i) != i) {
-		        System.out.println("WARN: Timestep is not in order!");
-		      }
-		      if (path.getX(i) != path.getX(i + 1) || path.getY(i) != path.getY(i + 1)) {
-		        move++;
-		      }
-		    }
-		    makespan = (move > makespan)? move : makespan;
-		    moves += move;
-//        System.out.println(path);
-//        System.out.println(move);
-		  }
-		  
-		  System.out.println("Makespan = " + makespan);
-		  System.out.println("Moves = " + moves);
-		  System.out.println("Window size = " + paths.get(0).getLength());
+		long stepTime = System.nanoTime() - startTime;
+		metrics.addStep(stepTime, replannedCount, collisionResetsCount);
+		metrics.addConflicts(vertexConflictsCount, swapConflictsCount);
+		
+		if (replan && stepSummary && logger.isDebugEnabled()) {
+			logStepSummary(paths, stepTime);
 		}
 	}
 	
+	private void logStepSummary(List<Path> paths, long stepTime) {
+		int makespan = 0;
+		int moves = 0;
+		int windowSize = 0;
+		// robots without target or without any path found
+		int unplannedCount = 0;
+		for (Path path : paths) {
+			if (path == null) {
+				unplannedCount++;
+				continue;
+			}
+			if (windowSize == 0)
+				windowSize = path.getLength();
+			int move = 0;
+			for (int i = 0; i < path.getLength() - 1; i++) {
+				if (path.getT(i) != i) {
+					logger.warn("Timestep is not in order!");
+				}
+				if (path.getX(i) != path.getX(i + 1) || path.getY(i) != path.getY(i + 1)) {
+					move++;
+				}
+			}
+			makespan = Math.max(move, makespan);
+			moves += move;
+		}
+		String summary = String.format("solving time = %.3f ms, makespan = %d, moves = %d, window size = %d, unplanned robots = %d, replanned robots = %d, collision resets = %d", stepTime / 1e6, makespan, moves, windowSize, unplannedCount, replannedCount, collisionResetsCount);
+		if (spatialClustering)
+			summary += ", robot clusters = " + clustersCount;
+		if (parallelPlanning)
+			summary += String.format(", retried robots = %d, parallel speedup = %.2f", retriedCount, parallelSpeedup);
+		logger.debug(summary);
+	}
+	
 	synchronized List<Path> findPaths() {
 	  List<Path> paths = new ArrayList<>();
 		calculatingPaths = true;
 		params.readFromUI();
 		int tDim = params.timeDimension;
-		TileMap map2 = new TileMap(map);
-		ReservationTable reservationTable = new ReservationTable(map2.getWidthInTiles(), map2.getHeightInTiles(), tDim);
-		map2.foreach((x, y, occupied) -> {
-			if (occupied)
-				reservationTable.setBlocked(x, y);
-		});
-
-		reorderNeeded = true; // TODO reorder only when needed
+		boolean keepPlans = prepareReservationTable(tDim) && incrementalReplanning && !fullReplanNeeded;
+		fullReplanNeeded = false;
+		if (!keepPlans)
+			reservations.clearReservations();
+		
 		if (reorderNeeded) {
 			Collections.sort(robots, robotsPriorityComparator);
 //			logger.debug("the new order: " + Joiner.on(", ").join(robots));
 			reorderNeeded = false;
 		}
-
+		
+		int[] ranks = robotRanks();
+		replannedCount = 0;
+		retriedCount = 0;
+		List<List<MobileRobot>> clusters = spatialClustering ? RobotClusters.split(robots, 2 * tDim) : Collections
+				.singletonList(robots);
+		clustersCount = clusters.size();
+		Map<MobileRobot, Path> plannedPaths;
+		if (clusters.size() > 1) {
+			plannedPaths = planClusters(clusters, ranks, keepPlans);
+		} else {
+			Map<MobileRobot, OptimisticPath> optimisticPaths = parallelPlanning ? planOptimistically(keepPlans, ranks) : Collections
+					.emptyMap();
+			PlanningPass pass = new PlanningPass(reservations, pathFinder, ranks, keepPlans, optimisticPaths);
+			plannedPaths = pass.planAll(robots);
+			pass.finish();
+		}
+		for (MobileRobot robot : robots) {
+			paths.add(plannedPaths.get(robot));
+		}
+		invalidPlans.clear();
+		// their plans are kept till the next planning, but they have to be replanned then
 		for (MobileRobot robot : robots) {
-		  paths.add(findPath(robot, reservationTable, map));
+			if (displacedPlans.contains(robot.getId()))
+				invalidPlans.add(robot);
 		}
+		displacedPlans.clear();
 		calculatingPaths = false;
 		return paths;
 	}
 	
-	public Path findPath(MobileRobot robot, ReservationTable reservationTable, TileMap map) {
-//		logger.info("robot: " + robot.getId() + " - planning path");
-		robot.resetMovesQue();
-		Point start = robot.getPosition();
-		Point target = robot.getTarget();
-		Path path = new Path();
+	/**
+	 * Plans the clusters of robots concurrently, each one against its own view of the reservation table.
+	 * Clusters can't interact, so the result is the same as planning all the robots in one pass.
+	 */
+	private Map<MobileRobot, Path> planClusters(List<List<MobileRobot>> clusters, int[] ranks, boolean keepPlans) {
+		List<PlanningPass> passes = new ArrayList<>();
+		List<Callable<Map<MobileRobot, Path>>> tasks = new ArrayList<>();
+		for (List<MobileRobot> cluster : clusters) {
+			ReservationOverlay overlay = new ReservationOverlay(reservations, cluster.size() * (reservations.getTimeDimension() + 1));
+			PlanningPass pass = new PlanningPass(overlay, null, ranks, keepPlans, Collections.emptyMap());
+			passes.add(pass);
+			tasks.add(() -> {
+				pass.setFinder(workerPathFinders.get());
+				return pass.planAll(cluster);
+			});
+		}
+		Map<MobileRobot, Path> paths = new HashMap<>();
+		List<Future<Map<MobileRobot, Path>>> results = planningPool.invokeAll(tasks);
+		for (Future<Map<MobileRobot, Path>> result : results) {
+			try {
+				paths.putAll(result.get());
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException("cluster planning failed", e);
+			}
+		}
+		for (PlanningPass pass : passes) {
+			((ReservationOverlay) pass.table).commit();
+			pass.finish();
+		}
+		return paths;
+	}
+	
+	/**
+	 * @return robot id -> its position in the priority order (-1 - unknown robot)
+	 */
+	private int[] robotRanks() {
+		int maxId = robots.stream().mapToInt(MobileRobot::getId).max().orElse(0);
+		int[] ranks = new int[Math.max(maxId + 1, 0)];
+		Arrays.fill(ranks, -1);
+		for (int i = 0; i < robots.size(); i++) {
+			if (robots.get(i).getId() >= 0)
+				ranks[robots.get(i).getId()] = i;
+		}
+		return ranks;
+	}
+	
+	/**
+	 * Plans the robots, which need replanning, concurrently against the same snapshot of the reservation table:
+	 * each robot gives way to the robots with higher priorities, which keep their plans. Robots are not modified.
+	 * @return robot -> its optimistic path
+	 */
+	private Map<MobileRobot, OptimisticPath> planOptimistically(boolean keepPlans, int[] ranks) {
+		List<MobileRobot> planned = new ArrayList<>();
+		// robot id -> true if its reservations are going to be replaced
+		boolean[] replanning = new boolean[ranks.length];
+		for (MobileRobot robot : robots) {
+			if (!keepPlans || needsReplanning(robot)) {
+				replanning[robot.getId()] = true;
+				if (robot.getTarget() != null)
+					planned.add(robot);
+			}
+		}
+		LongAdder busyTime = new LongAdder();
+		List<Callable<OptimisticPath>> tasks = new ArrayList<>();
+		for (MobileRobot robot : planned) {
+			int rank = ranks[robot.getId()];
+			IntPredicate blockingOwners = owner -> owner < 0 || owner >= ranks.length || ranks[owner] < 0 || (ranks[owner] < rank && !replanning[owner]);
+			tasks.add(() -> {
+				long taskStart = System.nanoTime();
+				WHCAPathFinder finder = workerPathFinders.get();
+				finder.setDistanceFieldCache(distanceFields);
+				finder.setReservationTable(reservations);
+				finder.setMap(map);
+				finder.setBlockingOwners(blockingOwners);
+				ReservationLookups lookups = new ReservationLookups();
+				finder.setLookups(lookups);
+				Path path = planPath(robot, finder);
+				finder.setLookups(null);
+				finder.setBlockingOwners(null);
+				busyTime.add(System.nanoTime() - taskStart);
+				return new OptimisticPath(path, lookups);
+			});
+		}
+		long startTime = System.nanoTime();
+		List<Future<OptimisticPath>> results = planningPool.invokeAll(tasks);
+		Map<MobileRobot, OptimisticPath> paths = new HashMap<>();
+		for (int i = 0; i < planned.size(); i++) {
+			try {
+				paths.put(planned.get(i), results.get(i).get());
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException("parallel planning failed", e);
+			}
+		}
+		long wallTime = System.nanoTime() - startTime;
+		parallelSpeedup = wallTime > 0 ? (double) busyTime.sum() / wallTime : 1;
+		return paths;
+	}
+	
+	private boolean needsReplanning(MobileRobot robot) {
+		if (robot.getTarget() == null || invalidPlans.contains(robot))
+			return true;
+		// plan ran out
+		if (!robot.hasNextMove() && !robot.hasReachedTarget())
+			return true;
+		return !plannedTargets.containsKey(robot) || !Objects.equals(plannedTargets.get(robot), robot.getTarget()) || !Objects
+				.equals(plannedPriorities.get(robot), robot.getPriority());
+	}
+	
+	private Path plannedPath(MobileRobot robot) {
+		PackedPath moves = robot.getMovesQue();
+		Path path = new Path(moves.getLength() + 1);
+		path.appendStep(robot.getX(), robot.getY(), 0);
+		for (int i = 0; i < moves.getLength(); i++) {
+			path.appendStep(moves.getX(i), moves.getY(i), i + 1);
+		}
+		return path;
+	}
+	
+	/**
+	 * prepares the reservation table for the static obstacles of the current map
+	 * @return true if the reservations from previous planning are still valid
+	 */
+	private boolean prepareReservationTable(int tDim) {
+		boolean valid = true;
+		if (reservations == null || !reservations.matches(map, tDim)) {
+			int width = map.getWidthInTiles();
+			int height = map.getHeightInTiles();
+			if (ReservationTable.preferSparse(width, height, tDim, robots.size())) {
+				reservations = new SparseReservationTable(width, height, tDim, robots.size());
+			} else {
+				reservations = new RollingReservationTable(width, height, tDim);
+			}
+			reservationsMapVersion = -1;
+			valid = false;
+		}
+		if (map.getVersion() != reservationsMapVersion) {
+			// table may read obstacles from the map - it mustn't change during planning
+			reservations.setBlocked(new TileMap(map));
+			reservationsMapVersion = map.getVersion();
+			valid = false;
+		}
+		return valid;
+	}
+	
+	/**
+	 * moves the reservations time window after the robots' move,
+	 * robots keep holding their last planned positions in the new time step
+	 */
+	private void advanceReservations() {
+		if (reservations == null || reservations.getTimeDimension() == 0)
+			return;
+		reservations.advance();
+		int lastT = reservations.getTimeDimension() - 1;
+		for (MobileRobot robot : robots) {
+			if (robot.getTarget() == null)
+				continue;
+			if (!reservations.reserve(robot.getId(), robot.getLastX(), robot.getLastY(), lastT))
+				invalidPlans.add(robot);
+		}
+	}
+	
+	private Path planPath(MobileRobot robot, WHCAPathFinder finder) {
+		long startTime = System.nanoTime();
+		finder.setMetrics(metrics);
+		Path path = finder.findPath(robot.getX(), robot.getY(), robot.getTargetX(), robot.getTargetY());
+		metrics.addRobotPlanning(System.nanoTime() - startTime);
+		return path;
+	}
+	
+	/**
+	 * Path planned against a snapshot of the reservations, with the reservation queries of its search
+	 */
+	private static class OptimisticPath {
+		
+		/** null if there's no path */
+		private final Path path;
+		private final ReservationLookups lookups;
+		
+		OptimisticPath(Path path, ReservationLookups lookups) {
+			this.path = path;
+			this.lookups = lookups;
+		}
+	}
+	
+	/**
+	 * Prioritized planning of a group of robots against one reservation table.
+	 * Robots of different passes mustn't interact, so the passes may run concurrently.
+	 */
+	private class PlanningPass {
+		
+		private final TaggedReservationView table;
+		private WHCAPathFinder finder;
+		/** robot id -> its position in the priority order */
+		private final int[] ranks;
+		private final boolean keepPlans;
+		private final Map<MobileRobot, OptimisticPath> optimisticPaths;
+		/** robots, which reservations have been taken over by robots with higher priorities */
+		private final Set<Integer> displaced = new HashSet<>();
+		/** robots, which reservations have been taken over after they were planned (by robots with lower priorities) */
+		private final Set<Integer> displacedPlanned = new HashSet<>();
+		/** robots, which can't find a way - their priorities are promoted after the planning */
+		private final List<MobileRobot> waiting = new ArrayList<>();
+		private int replanned = 0;
+		private int retried = 0;
+		
+		PlanningPass(TaggedReservationView table, WHCAPathFinder finder, int[] ranks, boolean keepPlans, Map<MobileRobot, OptimisticPath> optimisticPaths) {
+			this.table = table;
+			this.finder = finder;
+			this.ranks = ranks;
+			this.keepPlans = keepPlans;
+			this.optimisticPaths = optimisticPaths;
+		}
+		
+		void setFinder(WHCAPathFinder finder) {
+			this.finder = finder;
+		}
+		
+		/**
+		 * @param robots robots in the priority order
+		 */
+		Map<MobileRobot, Path> planAll(List<MobileRobot> robots) {
+			finder.setDistanceFieldCache(distanceFields);
+			finder.setMap(map);
+			finder.setReservationTable(table);
+			Map<MobileRobot, Path> paths = new HashMap<>();
+			for (MobileRobot robot : robots) {
+				paths.put(robot, plan(robot));
+			}
+			finder.setBlockingOwners(null);
+			return paths;
+		}
 		
-		if (target != null) {
-			WHCAPathFinder pathFinder = new WHCAPathFinder(reservationTable, map);
-			path = pathFinder.findPath(start.getX(), start.getY(), target.getX(), target.getY());
+		private Path plan(MobileRobot robot) {
+			if (keepPlans && !needsReplanning(robot) && !displaced.contains(robot.getId()))
+				return plannedPath(robot);
+			// robots with lower priorities have to give way
+			int rank = ranks[robot.getId()];
+			IntPredicate blockingOwners = owner -> owner < 0 || owner >= ranks.length || ranks[owner] < rank;
+			finder.setBlockingOwners(blockingOwners);
+			if (robot.getTarget() == null)
+				return commit(robot, null);
+			replanned++;
+			if (optimisticPaths.containsKey(robot)) {
+				OptimisticPath optimistic = optimisticPaths.get(robot);
+				// path is accepted only if its search goes the same way against reservations of robots with higher priorities
+				if (optimistic.lookups.replay(table, blockingOwners))
+					return commit(robot, optimistic.path);
+				retried++;
+			}
+//			logger.info("robot: " + robot.getId() + " - planning path");
+			return commit(robot, planPath(robot, finder));
+		}
+		
+		/**
+		 * assigns the planned path to the robot and replaces its reservations
+		 * @param path planned path or null if there is no path
+		 */
+		private Path commit(MobileRobot robot, Path path) {
+			robot.resetMovesQue();
+			Point start = robot.getPosition();
+			Point target = robot.getTarget();
+			if (target == null) {
+				table.release(robot.getId());
+				return new Path();
+			}
+			plannedTargets.put(robot, target);
+			plannedPriorities.put(robot, robot.getPriority());
 //			logger.debug("path planned (" + robot.toString() + "): " + path);
 			if (path != null) {
 				// enque path
-				int t = 0;
-				reservationTable.setBlocked(start.x, start.y, t);
-				reservationTable.setBlocked(start.x, start.y, t + 1);
-				Path.Step step = null;
 				for (int i = 1; i < path.getLength(); i++) {
-					step = path.getStep(i);
-					robot.enqueueMove(step.getX(), step.getY());
-					t++;
-					reservationTable.setBlocked(step.getX(), step.getY(), t);
-					reservationTable.setBlocked(step.getX(), step.getY(), t + 1);
-				}
-				// fill the rest with last position
-				if (step != null) {
-					for (int i = t + 1; i < reservationTable.getTimeDimension(); i++) {
-						reservationTable.setBlocked(step.getX(), step.getY(), i);
-					}
+					robot.enqueueMove(path.getX(i), path.getY(i));
 				}
+				// waiting robot holds its position only in the next step - it's going to be replanned anyway
+				replacePath(robot, path, path.getLength() > 1);
 				// cant find a way - it's waiting, then promote its priority
 				if (path.getLength() <= 1) {
-					promotePriority(robot, " - due to path not found");
+					waiting.add(robot);
 				}
 			} else {
 				logger.warn("path not found due to static obstacles");
-				reservationTable.setBlocked(start.x, start.y);
+				// stays in place all the time
+				Path waitingPath = new Path();
+				waitingPath.appendStep(start.x, start.y, 0);
+				replacePath(robot, waitingPath, true);
 			}
+			return path;
 		}
-		return path;
-	}
-	
-	private void resetAllCollidedRobots() {
-		int iterations = 1;
-		while (resetCollidedRobots()) {
-			iterations++;
+		
+		/**
+		 * Replaces the reservations of the robot. Only robots with lower priorities give way
+		 * (they're replanned later in the pass), nodes next to the path are not taken from the robots with higher priorities.
+		 */
+		private void replacePath(MobileRobot robot, Path path, boolean holdLast) {
+			int rank = ranks[robot.getId()];
+			Set<Integer> taken = table.replacePath(robot.getId(), path, holdLast, owner -> owner < 0 || owner >= ranks.length || ranks[owner] < 0 || ranks[owner] > rank);
+			for (int owner : taken) {
+				if (owner >= 0 && owner < ranks.length && ranks[owner] >= 0 && ranks[owner] < rank) {
+					displacedPlanned.add(owner);
+				} else {
+					displaced.add(owner);
+				}
+			}
+		}
+		
+		/**
+		 * applies the results of the pass to the controller (in the planning thread)
+		 */
+		void finish() {
+			for (MobileRobot robot : waiting) {
+				promotePriority(robot, " - due to path not found");
+			}
+			displacedPlans.addAll(displacedPlanned);
+			replannedCount += replanned;
+			retriedCount += retried;
 		}
 	}
 	
-	private boolean resetCollidedRobots() {
-		boolean collisionHappened = false;
-		List<Pair<MobileRobot, MobileRobot>> collidedRobots = new ArrayList<>();
-		for (MobileRobot robot : robots) {
-			MobileRobot collidedRobot = collisionDetected(robot);
-			if (collidedRobot != null) {
-//				logger.debug("Collision detected between robots: " + robot.getId() + ", " + collidedRobot.getId());
-				collidedRobots.add(new Pair<>(robot, collidedRobot));
-				collisionHappened = true;
-//				logger.debug("robot " + robot.getId() + " previous path: " + robot.getMovesQue());
-//				logger.debug("collidedRobot " + collidedRobot.getId() + " previous path: " + collidedRobot.getMovesQue());
+	/**
+	 * Resets plans of the robots, which are going to enter the same cell at the next step.
+	 * Reset robots stay in their positions and may collide with the next robots -
+	 * the cascade is resolved in one pass with a worklist of the conflicted cells.
+	 */
+	private void resetAllCollidedRobots() {
+		OccupancyGrid grid = occupancyGrid();
+		int width = grid.getWidth();
+		int n = robots.size();
+		boolean[] reset = new boolean[n];
+		int[] conflicted = new int[8];
+		int conflictedSize = 0;
+		for (int i = 0; i < n; i++) {
+			MobileRobot robot = robots.get(i);
+			int nextX = robot.getNextX();
+			int nextY = robot.getNextY();
+			if (grid.add(nextX, nextY, i) == 2) {
+				if (conflictedSize == conflicted.length)
+					conflicted = Arrays.copyOf(conflicted, conflictedSize * 2);
+				conflicted[conflictedSize++] = nextY * width + nextX;
 			}
 		}
-		for (Pair<MobileRobot, MobileRobot> pair : collidedRobots) {
-			MobileRobot first = pair.getKey();
-			MobileRobot second = pair.getValue();
-			first.resetMovesQue();
-			second.resetMovesQue();
-//			MobileRobot minorPriority = first.getPriority() < second.getPriority() ? first : second;
-//			MobileRobot majorPriority = first.getPriority() < second.getPriority() ? second : first;
-//			  // priority promotion for robot with minor priority
-//			promotePriority(minorPriority, " - due to collision");
-//			promotePriority(majorPriority, " - due to collision");
-//			majorPriority.setPriority(majorPriority.getPriority() - 1);
+		while (conflictedSize > 0) {
+			int cell = conflicted[--conflictedSize];
+			int x = cell % width;
+			int y = cell / width;
+			vertexConflictsCount++;
+			for (int i = grid.first(x, y); i != OccupancyGrid.NONE; ) {
+				int nextInCell = grid.next(i);
+				if (!reset[i]) {
+					reset[i] = true;
+					MobileRobot robot = robots.get(i);
+					robot.resetMovesQue();
+					invalidPlans.add(robot);
+					collisionResetsCount++;
+					// waits in its position from now on
+					if (robot.getX() != x || robot.getY() != y) {
+						grid.remove(x, y, i);
+						if (grid.add(robot.getX(), robot.getY(), i) == 2) {
+							if (conflictedSize == conflicted.length)
+								conflicted = Arrays.copyOf(conflicted, conflictedSize * 2);
+							conflicted[conflictedSize++] = robot.getY() * width + robot.getX();
+						}
+					}
+				}
+				i = nextInCell;
+			}
 		}
-		return collisionHappened;
+		grid.clear();
 	}
 	
-	private MobileRobot collisionDetected(MobileRobot robot) {
-		for (MobileRobot otherRobot : robots) {
-			if (otherRobot == robot)
+	/**
+	 * Counts pairs of the robots, which are going to swap their positions at the next step.
+	 * Paths are planned with vertex reservations only, so the swaps are not prevented, just counted.
+	 */
+	private int countSwapConflicts() {
+		OccupancyGrid grid = occupancyGrid();
+		for (int i = 0; i < robots.size(); i++) {
+			MobileRobot robot = robots.get(i);
+			grid.add(robot.getX(), robot.getY(), i);
+		}
+		int swaps = 0;
+		for (int i = 0; i < robots.size(); i++) {
+			MobileRobot robot = robots.get(i);
+			int x = robot.getX();
+			int y = robot.getY();
+			int nextX = robot.getNextX();
+			int nextY = robot.getNextY();
+			if (nextX == x && nextY == y)
 				continue;
-			if (otherRobot.nearestTarget().equals(robot.nearestTarget())) {
-				return otherRobot;
+			for (int j = grid.first(nextX, nextY); j != OccupancyGrid.NONE; j = grid.next(j)) {
+				if (j > i && robots.get(j).getNextX() == x && robots.get(j).getNextY() == y)
+					swaps++;
 			}
 		}
-		return null;
+		grid.clear();
+		return swaps;
+	}
+	
+	private OccupancyGrid occupancyGrid() {
+		if (occupancy == null || occupancy.getWidth() != map.getWidthInTiles() || occupancy.getHeight() != map.getHeightInTiles())
+			occupancy = new OccupancyGrid(map.getWidthInTiles(), map.getHeightInTiles());
+		return occupancy;
 	}
 	
 	private void promotePriority(MobileRobot robot, String reason) {
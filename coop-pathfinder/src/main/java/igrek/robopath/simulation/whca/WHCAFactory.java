@@ -4,6 +4,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import igrek.robopath.metrics.PlanningMetrics;
+
 @Configuration
 public class WHCAFactory {
 	
@@ -12,9 +14,17 @@ public class WHCAFactory {
 		return new WHCASimulationParams();
 	}
 	
+	/** exported via JMX */
+	@Bean(name = "whcaMetrics")
+	public PlanningMetrics provideMetrics() {
+		return new PlanningMetrics();
+	}
+	
 	@Bean(name = "whca2Controller")
-	public WHCAController provideController(@Qualifier("whca2Presenter") WHCAPresenter presenter, @Qualifier("whca2Params") WHCASimulationParams params) {
-		return new WHCAController(presenter, params);
+	public WHCAController provideController(@Qualifier("whca2Params") WHCASimulationParams params, @Qualifier("whcaMetrics") PlanningMetrics metrics) {
+		WHCAController controller = new WHCAController(params);
+		controller.setMetrics(metrics);
+		return controller;
 	}
 	
 }
@@ -1,10 +1,6 @@
 package igrek.robopath.simulation.whca;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javafx.scene.control.CheckBox;
-import javafx.scene.control.TextField;
+import igrek.robopath.simulation.common.ParamsBinding;
 
 
 public class WHCASimulationParams {
@@ -18,42 +14,19 @@ public class WHCASimulationParams {
 	
 	public int timeDimension = 8;
 	
-	private TextField paramMapSizeW;
-	private TextField paramMapSizeH;
-	private TextField paramRobotsCount;
-	private CheckBox paramRobotAutoTarget;
-	private TextField paramTimeDimension;
-	
-	public void init(WHCAPresenter presenter) {
-		this.paramMapSizeW = presenter.paramMapSizeW;
-		this.paramMapSizeH = presenter.paramMapSizeH;
-		this.paramRobotsCount = presenter.paramRobotsCount;
-		this.paramRobotAutoTarget = presenter.paramRobotAutoTarget;
-		this.paramTimeDimension = presenter.paramTimeDimension;
+	private ParamsBinding<WHCASimulationParams> ui;
+	
+	public void init(ParamsBinding<WHCASimulationParams> ui) {
+		this.ui = ui;
 	}
 	
 	public synchronized void sendToUI() {
-		if (paramMapSizeW != null) {
-			paramMapSizeW.setText(Integer.toString(mapSizeW));
-			paramMapSizeH.setText(Integer.toString(mapSizeH));
-			paramRobotsCount.setText(Integer.toString(robotsCount));
-			paramRobotAutoTarget.setSelected(robotAutoTarget);
-			paramTimeDimension.setText(Integer.toString(timeDimension));
-		}
+		if (ui != null)
+			ui.sendToUI(this);
 	}
 	
 	public synchronized void readFromUI() {
-		try {
-			if (paramMapSizeW != null) {
-				mapSizeW = Integer.parseInt(paramMapSizeW.getText());
-				mapSizeH = Integer.parseInt(paramMapSizeH.getText());
-				robotsCount = Integer.parseInt(paramRobotsCount.getText());
-				robotAutoTarget = paramRobotAutoTarget.isSelected();
-				timeDimension = Integer.parseInt(paramTimeDimension.getText());
-			}
-		} catch (NumberFormatException e) {
-			Logger logger = LoggerFactory.getLogger(this.getClass());
-			logger.error(e.getMessage());
-		}
+		if (ui != null)
+			ui.readFromUI(this);
 	}
 }
@@ -0,0 +1,80 @@
+package igrek.robopath.common;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FreeCellIndexTest {
+	
+	@Test
+	public void testMapChanges() {
+		TileMap map = new TileMap(3, 2);
+		map.setCell(1, 1, true);
+		FreeCellIndex index = new FreeCellIndex(map);
+		assertEquals(5, index.size());
+		assertFalse(index.isFree(1, 1));
+		
+		map.setCell(0, 0, true);
+		map.setCell(1, 1, false);
+		assertEquals(5, index.size());
+		assertFalse(index.isFree(0, 0));
+		assertTrue(index.isFree(1, 1));
+		
+		// copies don't notify the index
+		new TileMap(map).setCell(2, 0, true);
+		assertTrue(index.isFree(2, 0));
+		
+		index.detach();
+		map.setCell(2, 0, true);
+		assertTrue(index.isFree(2, 0));
+	}
+	
+	@Test
+	public void testOccupants() {
+		TileMap map = new TileMap(2, 2);
+		FreeCellIndex index = new FreeCellIndex(map);
+		Point cell = new Point(1, 0);
+		// two robots on the same cell
+		index.occupy(cell);
+		index.occupy(cell);
+		index.release(cell);
+		assertFalse(index.isFree(1, 0));
+		index.release(cell);
+		assertTrue(index.isFree(1, 0));
+		// obstacle under the robot
+		index.occupy(cell);
+		map.setCell(cell, true);
+		index.release(cell);
+		assertFalse(index.isFree(1, 0));
+		map.setCell(cell, false);
+		assertTrue(index.isFree(1, 0));
+		// ignored
+		index.occupy(null);
+		index.release(new Point(5, 5));
+		assertEquals(4, index.size());
+	}
+	
+	@Test
+	public void testRandom() {
+		TileMap map = new TileMap(4, 4);
+		FreeCellIndex index = new FreeCellIndex(map);
+		Random random = new Random(1);
+		Set<Integer> drawn = new HashSet<>();
+		while (!index.isEmpty()) {
+			Point cell = index.random(random);
+			assertTrue(index.isFree(cell.x, cell.y));
+			assertTrue(drawn.add(cell.y * 4 + cell.x));
+			index.occupy(cell);
+		}
+		assertEquals(16, drawn.size());
+		assertNull(index.random(random));
+	}
+	
+}
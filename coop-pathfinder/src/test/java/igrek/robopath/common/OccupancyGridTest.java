@@ -0,0 +1,34 @@
+package igrek.robopath.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OccupancyGridTest {
+	
+	@Test
+	public void testOccupants() {
+		OccupancyGrid grid = new OccupancyGrid(4, 3);
+		assertEquals(1, grid.add(1, 2, 0));
+		assertEquals(2, grid.add(1, 2, 20));
+		assertEquals(3, grid.add(1, 2, 5));
+		assertEquals(1, grid.add(3, 0, 1));
+		grid.remove(1, 2, 20);
+		assertEquals(2, grid.count(1, 2));
+		StringBuilder occupants = new StringBuilder();
+		for (int o = grid.first(1, 2); o != OccupancyGrid.NONE; o = grid.next(o)) {
+			occupants.append(o).append(' ');
+		}
+		assertEquals("5 0 ", occupants.toString());
+		// not in the cell
+		grid.remove(1, 2, 1);
+		assertEquals(2, grid.count(1, 2));
+		
+		grid.clear();
+		assertEquals(0, grid.count(1, 2));
+		assertEquals(0, grid.count(3, 0));
+		assertEquals(OccupancyGrid.NONE, grid.first(1, 2));
+		assertEquals(1, grid.add(1, 2, 1));
+	}
+	
+}
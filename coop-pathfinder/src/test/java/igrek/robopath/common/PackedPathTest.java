@@ -0,0 +1,69 @@
+package igrek.robopath.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackedPathTest {
+	
+	@Test
+	public void testAppendAndReverse() {
+		PackedPath path = new PackedPath(1);
+		for (int i = 0; i < 5; i++) {
+			path.appendStep(i, 2 * i, 10 - i);
+		}
+		path.reverse();
+		assertEquals(5, path.getLength());
+		assertEquals("[(4, 8, 6), (3, 6, 7), (2, 4, 8), (1, 2, 9), (0, 0, 10)]", path.toString());
+		assertTrue(path.contains(2, 4, 8));
+		assertFalse(path.contains(2, 4, 7));
+		StringBuilder visited = new StringBuilder();
+		path.forEachStep((x, y, t) -> visited.append(x));
+		assertEquals("43210", visited.toString());
+	}
+	
+	@Test
+	public void testQueue() {
+		PackedPath queue = new PackedPath(2);
+		queue.appendStep(1, 1, 0);
+		queue.appendStep(2, 2, 0);
+		queue.removeFirst();
+		// reuses the space of the removed step
+		queue.prependStep(0, 0, 0);
+		assertEquals("[(0, 0, 0), (2, 2, 0)]", queue.toString());
+		queue.removeFirst();
+		queue.appendStep(3, 3, 0);
+		queue.appendStep(4, 4, 0);
+		assertEquals("[(2, 2, 0), (3, 3, 0), (4, 4, 0)]", queue.toString());
+		queue.keepFirst();
+		assertEquals("[(2, 2, 0)]", queue.toString());
+		queue.removeFirst();
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testEquality() {
+		PackedPath path1 = new PackedPath();
+		PackedPath path2 = new PackedPath();
+		path2.appendStep(9, 9, 9);
+		path2.removeFirst();
+		for (int i = 0; i < 3; i++) {
+			path1.appendStep(i, i, i);
+			path2.appendStep(i, i, i);
+		}
+		assertEquals(path1, path2);
+		assertEquals(path1.hashCode(), path2.hashCode());
+		assertEquals(path1, new PackedPath(path2));
+		// diagonal steps don't collide
+		PackedPath diagonal1 = new PackedPath();
+		diagonal1.appendStep(1, 2, 0);
+		PackedPath diagonal2 = new PackedPath();
+		diagonal2.appendStep(2, 1, 0);
+		assertNotEquals(diagonal1, diagonal2);
+		assertNotEquals(diagonal1.hashCode(), diagonal2.hashCode());
+	}
+	
+}
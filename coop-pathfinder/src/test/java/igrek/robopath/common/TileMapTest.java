@@ -0,0 +1,105 @@
+package igrek.robopath.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class TileMapTest {
+	
+	@Test
+	public void testCells() {
+		// 7 x 11 = 77 cells - 2 words, the last one not full
+		TileMap map = new TileMap(7, 11);
+		map.setCell(6, 10, true);
+		map.setCell(0, 9, true);
+		map.setCell(7, 0, true); // out of the map - ignored
+		assertTrue(map.blocked(6, 10));
+		assertTrue(map.getCell(0, 9));
+		assertFalse(map.getCell(1, 9));
+		assertNull(map.getCell(7, 0));
+		assertEquals(2, map.countBlockedCells());
+		assertEquals(75, map.countFreeCells());
+		TileMap copy = new TileMap(map);
+		assertTrue(copy.contentEquals(map));
+		assertEquals(map.getVersion(), copy.getVersion());
+		copy.setCell(0, 9, false);
+		assertFalse(copy.contentEquals(map));
+		assertTrue(map.blocked(0, 9));
+		map.fill(true);
+		assertEquals(0, map.countFreeCells());
+		map.fill(false);
+		assertEquals(77, map.countFreeCells());
+	}
+	
+	@Test
+	public void testBulkOperationsNotifyInForeachOrder() {
+		TileMap source = new TileMap(5, 4);
+		source.setCell(3, 0, true);
+		source.setCell(1, 2, true);
+		source.setCell(1, 1, true);
+		TileMap map = new TileMap(5, 4);
+		map.setCell(4, 3, true);
+		List<String> changes = new ArrayList<>();
+		map.addCellListener((x, y, occupied) -> changes.add(x + "," + y + (occupied ? "+" : "-")));
+		long version = map.getVersion();
+		map.copyFrom(source);
+		assertEquals("[1,1+, 1,2+, 3,0+, 4,3-]", changes.toString());
+		assertTrue(map.contentEquals(source));
+		assertEquals(source.getVersion(), map.getVersion());
+		changes.clear();
+		map.fill(true);
+		assertEquals(17, changes.size());
+		assertEquals("0,0+", changes.get(0));
+		assertEquals(20, map.countBlockedCells());
+		assertTrue(map.getVersion() != version && map.getVersion() != source.getVersion());
+	}
+	
+	@Test
+	public void testRowAndColumnScans() {
+		Random random = new Random(1);
+		// rows crossing the words bounds
+		TileMap map = new TileMap(150, 5);
+		for (int i = 0; i < 600; i++) {
+			map.setCell(random.nextInt(150), random.nextInt(5), true);
+		}
+		for (int y = 0; y < 5; y++) {
+			for (int x = 0; x < 150; x++) {
+				assertEquals(naiveNextInRow(map, x, y, false), map.nextFreeInRow(x, y));
+				assertEquals(naiveNextInRow(map, x, y, true), map.nextBlockedInRow(x, y));
+			}
+		}
+		for (int x = 0; x < 150; x++) {
+			for (int y = 0; y < 5; y++) {
+				assertEquals(naiveNextInColumn(map, x, y, false), map.nextFreeInColumn(x, y));
+				assertEquals(naiveNextInColumn(map, x, y, true), map.nextBlockedInColumn(x, y));
+			}
+		}
+		assertEquals(-1, map.nextFreeInRow(0, 5));
+		assertEquals(-1, map.nextBlockedInRow(150, 0));
+	}
+	
+	private int naiveNextInRow(TileMap map, int x, int y, boolean occupied) {
+		for (; x < map.getWidthInTiles(); x++) {
+			if (map.blocked(x, y) == occupied)
+				return x;
+		}
+		return -1;
+	}
+	
+	private int naiveNextInColumn(TileMap map, int x, int y, boolean occupied) {
+		for (; y < map.getHeightInTiles(); y++) {
+			if (map.blocked(x, y) == occupied)
+				return y;
+		}
+		return -1;
+	}
+	
+}
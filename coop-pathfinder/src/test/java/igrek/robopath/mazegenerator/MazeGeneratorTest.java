@@ -0,0 +1,79 @@
+package igrek.robopath.mazegenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import igrek.robopath.common.Point;
+import igrek.robopath.common.TileMap;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MazeGeneratorTest {
+	
+	@Test
+	public void testSameAsListsGenerator() {
+		int[][] sizes = {{1, 1}, {2, 2}, {3, 3}, {10, 10}, {21, 21}, {15, 13}, {31, 7}, {8, 33}, {51, 51}};
+		for (long seed = 1; seed <= 3; seed++) {
+			Random random = new Random(seed);
+			Random expectedRandom = new Random(seed);
+			MazeGenerator mazegen = new MazeGenerator(random);
+			for (int[] size : sizes) {
+				TileMap map = new TileMap(size[0], size[1]);
+				mazegen.generateMaze(map);
+				TileMap expected = new TileMap(size[0], size[1]);
+				generateWithLists(expected, expectedRandom);
+				assertEquals(expected.toString(), map.toString());
+			}
+			// the same random numbers used
+			assertEquals(expectedRandom.nextInt(), random.nextInt());
+		}
+	}
+	
+	/**
+	 * the first version of the generator - O(n^2)
+	 */
+	private void generateWithLists(TileMap map, Random random) {
+		for (int x = 0; x < map.getWidthInTiles(); x++) {
+			for (int y = 0; y < map.getHeightInTiles(); y++) {
+				map.setCell(x, y, true);
+			}
+		}
+		List<Point> unvisited = new ArrayList<>();
+		List<Point> visited = new ArrayList<>();
+		for (int x = 0; x < map.getWidthInTiles(); x += 2) {
+			for (int y = 0; y < map.getHeightInTiles(); y += 2) {
+				unvisited.add(new Point(x, y));
+				map.setCell(x, y, false);
+			}
+		}
+		visited.add(unvisited.remove(random.nextInt(unvisited.size())));
+		while (!unvisited.isEmpty()) {
+			Point p1 = unvisited.remove(random.nextInt(unvisited.size()));
+			Point p2 = visited.get(0);
+			for (Point p : visited) {
+				if (distance(p1, p) < distance(p1, p2))
+					p2 = p;
+			}
+			int x = p1.x;
+			int y = p1.y;
+			while (x != p2.x) {
+				map.setCell(x, y, false);
+				x += Integer.signum(p2.x - x);
+			}
+			while (y != p2.y) {
+				map.setCell(x, y, false);
+				y += Integer.signum(p2.y - y);
+			}
+			visited.add(p1);
+		}
+	}
+	
+	private int distance(Point p1, Point p2) {
+		return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+	}
+	
+}
@@ -0,0 +1,86 @@
+package igrek.robopath.pathfinder.astar;
+
+import org.junit.Test;
+
+import igrek.robopath.common.TileMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+public class Astar2DPathFinderTest {
+	
+	@Test
+	public void testSimplePath() {
+		/*
+		 * TileMap:
+		 * S .  .
+		 * . X  .
+		 * . X  G
+		 */
+		TileMap map = new TileMap(3, 3);
+		map.setCell(1, 1, true);
+		map.setCell(1, 2, true);
+		Astar2DPathFinder pathFinder = new Astar2DPathFinder(map);
+		Path path = pathFinder.findPath(0, 0, 2, 2);
+		assertNotNull(path);
+		assertEquals("[(0, 0), (1, 0), (2, 0), (2, 1), (2, 2)]", path.toString());
+	}
+	
+	@Test
+	public void testNoPath() {
+		/*
+		 * TileMap:
+		 * S X .
+		 * . X .
+		 * . X G
+		 */
+		TileMap map = new TileMap(3, 3);
+		map.setCell(1, 0, true);
+		map.setCell(1, 1, true);
+		map.setCell(1, 2, true);
+		Astar2DPathFinder pathFinder = new Astar2DPathFinder(map);
+		assertNull(pathFinder.findPath(0, 0, 2, 2));
+		// target blocked
+		assertNull(pathFinder.findPath(0, 0, 1, 1));
+		// start = target
+		assertNull(pathFinder.findPath(0, 0, 0, 0));
+	}
+	
+	@Test
+	public void testReusingSearchBuffers() {
+		TileMap map = new TileMap(5, 5);
+		Astar2DPathFinder pathFinder = new Astar2DPathFinder(map);
+		assertEquals(5, pathFinder.findPath(0, 0, 4, 4).getLength());
+		// block the diagonal - the next search can't see any state of the previous one
+		for (int i = 1; i < 4; i++) {
+			map.setCell(i, i, true);
+		}
+		assertEquals(7, pathFinder.findPath(0, 0, 4, 4).getLength());
+		// and unblock it again
+		for (int i = 1; i < 4; i++) {
+			map.setCell(i, i, false);
+		}
+		assertEquals(5, pathFinder.findPath(0, 0, 4, 4).getLength());
+		// bigger map with the same finder
+		TileMap map2 = new TileMap(10, 3);
+		pathFinder.setMap(map2);
+		assertEquals(10, pathFinder.findPath(0, 0, 9, 2).getLength());
+	}
+	
+	@Test
+	public void testDynamicObstacles() {
+		// the same obstacles as in testSimplePath, but not on the map
+		TileMap map = new TileMap(3, 3);
+		long version = map.getVersion();
+		Astar2DPathFinder pathFinder = new Astar2DPathFinder(map);
+		pathFinder.setDynamicObstacles((x, y) -> x == 1 && y >= 1);
+		assertEquals("[(0, 0), (1, 0), (2, 0), (2, 1), (2, 2)]", pathFinder.findPath(0, 0, 2, 2).toString());
+		assertNull(pathFinder.findPath(0, 0, 1, 2));
+		assertEquals(version, map.getVersion());
+		pathFinder.setDynamicObstacles(null);
+		assertEquals(3, pathFinder.findPath(0, 0, 2, 2).getLength());
+	}
+	
+}
@@ -0,0 +1,103 @@
+package igrek.robopath.pathfinder.dstar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.metrics.PlanningMetrics;
+import igrek.robopath.pathfinder.astar.Astar2DPathFinder;
+import igrek.robopath.pathfinder.astar.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class DStarLitePathFinderTest {
+	
+	@Test
+	public void testSimplePath() {
+		/*
+		 * TileMap:
+		 * S .  .
+		 * . X  .
+		 * . X  G
+		 */
+		TileMap map = new TileMap(3, 3);
+		map.setCell(1, 1, true);
+		map.setCell(1, 2, true);
+		DStarLitePathFinder pathFinder = new DStarLitePathFinder(map);
+		Path path = pathFinder.findPath(0, 0, 2, 2, new int[0], 0);
+		assertNotNull(path);
+		assertEquals("[(0, 0), (1, 0), (2, 0), (2, 1), (2, 2)]", path.toString());
+		// robot on the way
+		assertNull(pathFinder.findPath(0, 0, 2, 2, new int[]{1}, 1));
+		// target blocked
+		assertNull(pathFinder.findPath(0, 0, 2, 2, new int[]{8}, 1));
+		assertEquals(5, pathFinder.findPath(0, 0, 2, 2, new int[0], 0).getLength());
+	}
+	
+	@Test
+	public void testSameCostsAsAstar() {
+		Random random = new Random(1);
+		for (int m = 0; m < 5; m++) {
+			TileMap map = new TileMap(15, 13);
+			new MazeGenerator(random).generateMaze(map);
+			// some random holes to get diagonal moves
+			for (int i = 0; i < 30; i++) {
+				map.setCell(random.nextInt(15), random.nextInt(13), false);
+			}
+			int tx = 2 * random.nextInt(7);
+			int ty = 2 * random.nextInt(6);
+			int sx = 2 * random.nextInt(7);
+			int sy = 2 * random.nextInt(6);
+			DStarLitePathFinder dstar = new DStarLitePathFinder(map);
+			PlanningMetrics metrics = new PlanningMetrics();
+			dstar.setMetrics(metrics);
+			Astar2DPathFinder astar = new Astar2DPathFinder(map);
+			int[] robots = new int[6];
+			boolean[] blocked = new boolean[15 * 13];
+			astar.setDynamicObstacles((x, y) -> blocked[y * 15 + x]);
+			// robot moves along its path, other robots appear in random cells
+			for (int step = 0; step < 20 && (sx != tx || sy != ty); step++) {
+				for (int i = 0; i < robots.length; i++) {
+					blocked[robots[i]] = false;
+				}
+				for (int i = 0; i < robots.length; i++) {
+					int cell;
+					do {
+						cell = random.nextInt(15 * 13);
+					} while (cell == sy * 15 + sx);
+					robots[i] = cell;
+					blocked[cell] = true;
+				}
+				Path expected = astar.findPath(sx, sy, tx, ty);
+				Path path = dstar.findPath(sx, sy, tx, ty, robots, robots.length);
+				if (expected == null) {
+					assertNull(path);
+					continue;
+				}
+				assertNotNull(path);
+				assertEquals(cost(expected), cost(path), 1e-3);
+				for (int i = 1; i < path.getLength(); i++) {
+					assertTrue(!map.blocked(path.getX(i), path.getY(i)) && !blocked[path.getY(i) * 15 + path.getX(i)]);
+				}
+				sx = path.getX(1);
+				sy = path.getY(1);
+			}
+			assertTrue(metrics.getNodesExpanded() > 0);
+		}
+	}
+	
+	private double cost(Path path) {
+		double cost = 0;
+		for (int i = 1; i < path.getLength(); i++) {
+			cost += Math.hypot(path.getX(i) - path.getX(i - 1), path.getY(i) - path.getY(i - 1));
+		}
+		return cost;
+	}
+	
+}
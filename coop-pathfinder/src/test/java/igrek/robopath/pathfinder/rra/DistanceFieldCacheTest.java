@@ -0,0 +1,73 @@
+package igrek.robopath.pathfinder.rra;
+
+import org.junit.Test;
+
+import igrek.robopath.common.TileMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class DistanceFieldCacheTest {
+	
+	@Test
+	public void testSharedField() {
+		TileMap map = new TileMap(10, 10);
+		DistanceFieldCache cache = new DistanceFieldCache();
+		ReverseResumableAstar field = cache.get(map, 5, 5, 0, 0);
+		// another robot, the same target
+		assertSame(field, cache.get(map, 5, 5, 9, 9));
+		// copy of the map (e.g. in the next simulation step) has the same version
+		assertSame(field, cache.get(new TileMap(map), 5, 5, 0, 0));
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+		
+		map.setCell(3, 3, true);
+		ReverseResumableAstar field2 = cache.get(map, 5, 5, 0, 0);
+		assertNotSame(field, field2);
+		assertTrue(field2.matches(map, 5, 5));
+	}
+	
+	@Test
+	public void testCompactField() {
+		TileMap map = new TileMap(10, 10);
+		map.setCell(5, 0, true);
+		ReverseResumableAstar field = new ReverseResumableAstar(map, 0, 0, 9, 9);
+		long searchSize = field.getMemorySize();
+		assertEquals(9, field.getDistance(9, 9));
+		assertFalse(field.isFinished());
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				field.getDistance(x, y);
+			}
+		}
+		assertTrue(field.isFinished());
+		assertEquals(2 * 10 * 10, field.getMemorySize());
+		assertTrue(field.getMemorySize() < searchSize);
+		assertEquals(9, field.getDistance(9, 9));
+		assertEquals(5, field.getDistance(5, 0)); // blocked cell
+		assertEquals(0, field.getDistance(0, 0));
+	}
+	
+	@Test
+	public void testEviction() {
+		TileMap map = new TileMap(10, 10);
+		long fieldSize = new ReverseResumableAstar(map, 0, 0, 0, 0).getMemorySize();
+		DistanceFieldCache cache = new DistanceFieldCache(3 * fieldSize);
+		ReverseResumableAstar field1 = cache.get(map, 1, 1, 0, 0);
+		cache.get(map, 2, 2, 0, 0);
+		cache.get(map, 3, 3, 0, 0);
+		cache.get(map, 1, 1, 0, 0); // recently used
+		cache.get(map, 4, 4, 0, 0); // evicts (2, 2)
+		assertEquals(3, cache.size());
+		assertTrue(cache.getMemoryUsed() <= cache.getMemoryBudget());
+		assertSame(field1, cache.get(map, 1, 1, 0, 0));
+		long misses = cache.getMisses();
+		cache.get(map, 2, 2, 0, 0);
+		assertEquals(misses + 1, cache.getMisses());
+	}
+	
+}
@@ -0,0 +1,76 @@
+package igrek.robopath.pathfinder.rra;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import igrek.robopath.common.TileMap;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.pathfinder.astar.Astar2DPathFinder;
+import igrek.robopath.pathfinder.astar.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ReverseResumableAstarTest {
+	
+	@Test
+	public void testSameDistancesAsAstar() {
+		Random random = new Random(1);
+		for (int m = 0; m < 5; m++) {
+			TileMap map = new TileMap(15, 13);
+			new MazeGenerator(random).generateMaze(map);
+			// some random holes to get diagonal moves
+			for (int i = 0; i < 20; i++) {
+				map.setCell(random.nextInt(15), random.nextInt(13), false);
+			}
+			int tx = 2 * random.nextInt(7);
+			int ty = 2 * random.nextInt(6);
+			Astar2DPathFinder astar = new Astar2DPathFinder(map);
+			ReverseResumableAstar rra = new ReverseResumableAstar(map, tx, ty, 0, 0);
+			for (int x = 0; x < map.getWidthInTiles(); x++) {
+				for (int y = 0; y < map.getHeightInTiles(); y++) {
+					if (map.blocked(x, y) || (x == tx && y == ty))
+						continue;
+					Path path = astar.findPath(x, y, tx, ty);
+					int expected = path == null ? ReverseResumableAstar.UNREACHABLE : path.getLength() - 1;
+					assertEquals("distance from (" + x + ", " + y + ")", expected, rra.getDistance(x, y));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testUnreachable() {
+		/*
+		 * TileMap:
+		 * . X .
+		 * . X G
+		 */
+		TileMap map = new TileMap(3, 2);
+		map.setCell(1, 0, true);
+		map.setCell(1, 1, true);
+		ReverseResumableAstar rra = new ReverseResumableAstar(map, 2, 1, 0, 0);
+		assertEquals(ReverseResumableAstar.UNREACHABLE, rra.getDistance(0, 0));
+		assertEquals(1, rra.getDistance(2, 0));
+		assertEquals(0, rra.getDistance(2, 1));
+	}
+	
+	@Test
+	public void testMapVersion() {
+		TileMap map = new TileMap(4, 4);
+		ReverseResumableAstar rra = new ReverseResumableAstar(map, 3, 3, 0, 0);
+		assertTrue(rra.matches(map, 3, 3));
+		assertFalse(rra.matches(map, 3, 2));
+		TileMap copy = new TileMap(map);
+		assertTrue(rra.matches(copy, 3, 3));
+		map.setCell(1, 1, true);
+		assertFalse(rra.matches(map, 3, 3));
+		// setting the same value doesn't change the map
+		copy.setCell(1, 1, false);
+		assertTrue(rra.matches(copy, 3, 3));
+	}
+	
+}
@@ -0,0 +1,366 @@
+package igrek.robopath.pathfinder.whca;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import igrek.robopath.common.TileMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ReservationTableTest {
+	
+	private boolean sparse = false;
+	private boolean rolling = false;
+	
+	private ReservationTable newTable(int width, int height, int tDim) {
+		if (sparse)
+			return new SparseReservationTable(width, height, tDim, 1);
+		if (rolling) {
+			RollingReservationTable table = new RollingReservationTable(width, height, tDim);
+			// rolled window should behave the same
+			for (int i = 0; i < 3; i++) {
+				table.setBlocked(0, 0, 0);
+				table.advance();
+			}
+			table.clearReservations();
+			return table;
+		}
+		return new DenseReservationTable(width, height, tDim);
+	}
+	
+	@Test
+	public void testSparseTable() {
+		sparse = true;
+		testSingleReservations();
+		testBlockedAllTheTime();
+		testTimeRanges();
+	}
+	
+	@Test
+	public void testRollingTable() {
+		rolling = true;
+		testSingleReservations();
+		testBlockedAllTheTime();
+		testTimeRanges();
+	}
+	
+	@Test
+	public void testRollingTimeWindow() {
+		TileMap map = new TileMap(5, 4);
+		map.setCell(4, 3, true);
+		RollingReservationTable table = new RollingReservationTable(5, 4, 3);
+		table.setBlocked(map);
+		table.setBlocked(1, 1, 0);
+		table.setBlocked(2, 2, 1);
+		table.setBlocked(3, 3, 2);
+		table.advance();
+		assertFalse(table.isBlocked(1, 1, 0));
+		assertTrue(table.isBlocked(2, 2, 0));
+		assertTrue(table.isBlocked(3, 3, 1));
+		assertTrue(table.isFreeFrom(3, 3, 2));
+		assertTrue(table.isBlocked(4, 3, 2));
+		table.setBlocked(1, 1, 2);
+		table.advance();
+		assertTrue(table.isBlocked(3, 3, 0));
+		assertTrue(table.isBlocked(1, 1, 1));
+		assertFalse(table.isBlocked(2, 2, 0));
+		// map changes are noticed
+		map.setCell(4, 3, false);
+		table.setBlocked(map);
+		assertTrue(table.isFreeFrom(4, 3, 0));
+		table.clearReservations();
+		for (int t = 0; t < 3; t++) {
+			assertFalse(table.isBlocked(1, 1, t));
+			assertFalse(table.isBlocked(3, 3, t));
+		}
+	}
+	
+	@Test
+	public void testBlockedAfterAdvance() {
+		for (boolean sparseTable : new boolean[]{false, true}) {
+			TaggedReservationTable table = sparseTable ? new SparseReservationTable(4, 4, 6, 2) : new RollingReservationTable(4, 4, 6);
+			table.setBlocked(new TileMap(4, 4));
+			table.setBlocked(1, 2);
+			table.setBlocked(2, 2, 0, 6);
+			for (int i = 0; i < 8; i++) {
+				table.advance();
+			}
+			// blocked all the time - also in the time steps, which came after the reservation
+			assertTrue(table.isBlocked(1, 2));
+			assertTrue(table.isBlocked(1, 2, 5));
+			assertFalse(table.isFreeFrom(1, 2, 5));
+			// blocked only in the time window of the reservation
+			assertFalse(table.isBlocked(2, 2, 5));
+			table.clearReservations();
+			assertTrue(table.isFreeFrom(1, 2, 0));
+		}
+	}
+	
+	@Test
+	public void testOwners() {
+		for (boolean sparseTable : new boolean[]{false, true}) {
+			TaggedReservationTable table = sparseTable ? new SparseReservationTable(4, 4, 6, 2) : new RollingReservationTable(4, 4, 6);
+			table.setBlocked(new TileMap(4, 4));
+			assertEquals(TaggedReservationTable.NO_OWNER, table.getOwner(1, 1, 0));
+			assertTrue(table.reserve(1, 1, 1, 0));
+			assertTrue(table.reserve(1, 1, 1, 0)); // already its own
+			assertFalse(table.reserve(2, 1, 1, 0)); // first owner wins
+			assertEquals(1, table.getOwner(1, 1, 0));
+			table.setBlocked(2, 2, 3);
+			assertEquals(TaggedReservationTable.ANONYMOUS, table.getOwner(2, 2, 3));
+			assertEquals(TaggedReservationTable.ANONYMOUS, table.takeOver(2, 2, 2, 3));
+			assertEquals(TaggedReservationTable.ANONYMOUS, table.getOwner(2, 2, 3));
+			
+			// reservations of robot 1 are ignored
+			assertFalse(table.isBlocked(1, 1, 0, owner -> owner != 1));
+			assertTrue(table.isBlocked(2, 2, 3, owner -> owner != 1));
+			assertTrue(table.isBlocked(1, 1, 0, null));
+			assertTrue(table.isBlocked(1, 1, 0));
+			
+			table.release(1);
+			assertFalse(table.isBlocked(1, 1, 0));
+			assertEquals(TaggedReservationTable.NO_OWNER, table.getOwner(1, 1, 0));
+			assertTrue(table.isBlocked(2, 2, 3));
+			table.clearReservations();
+			assertFalse(table.isBlocked(2, 2, 3));
+		}
+	}
+	
+	@Test
+	public void testRollingOwnersWindow() {
+		Random random = new Random(7);
+		for (int tDim : new int[]{6, 64, 70}) {
+			RollingReservationTable table = new RollingReservationTable(3, 3, tDim);
+			table.setBlocked(new TileMap(3, 3));
+			for (int step = 0; step < 20; step++) {
+				for (int i = 0; i < 3 * tDim; i++) {
+					int owner = random.nextInt(4);
+					int x = random.nextInt(3);
+					int y = random.nextInt(3);
+					int t = random.nextInt(tDim);
+					if (owner == 0) {
+						table.setBlocked(x, y, t);
+					} else {
+						table.takeOver(owner, x, y, t);
+					}
+				}
+				int ignored = random.nextInt(4);
+				IntPredicate blockingOwners = step % 2 == 0 ? null : owner -> owner != ignored;
+				// queries through the window should agree with the single time steps
+				for (int x = 0; x < 3; x++) {
+					for (int y = 0; y < 3; y++) {
+						boolean blockedAll = true;
+						boolean free = true;
+						for (int t = tDim - 1; t >= 0; t--) {
+							boolean blocked = table.isBlocked(x, y, t, blockingOwners);
+							blockedAll &= blocked;
+							free &= !blocked;
+							assertEquals(free, table.isFreeFrom(x, y, t, blockingOwners));
+						}
+						if (blockingOwners == null) {
+							assertEquals(blockedAll, table.isBlocked(x, y));
+							assertEquals(free, table.isFreeFrom(x, y, 0));
+						}
+					}
+				}
+				table.release(random.nextInt(3) + 1);
+				table.advance();
+			}
+		}
+	}
+	
+	@Test
+	public void testReplacePath() {
+		for (boolean sparseTable : new boolean[]{false, true}) {
+			TaggedReservationTable table = sparseTable ? new SparseReservationTable(4, 4, 6, 2) : new RollingReservationTable(4, 4, 6);
+			table.setBlocked(new TileMap(4, 4));
+			Path path1 = new Path();
+			path1.appendStep(0, 0, 0);
+			path1.appendStep(1, 0, 1);
+			path1.appendStep(2, 0, 2);
+			assertTrue(table.replacePath(1, path1).isEmpty());
+			assertEquals(1, table.getOwner(0, 0, 1));
+			assertEquals(1, table.getOwner(2, 0, 5)); // holds the last position
+			assertTrue(table.isFreeFrom(0, 0, 2));
+			
+			Path path2 = new Path();
+			path2.appendStep(2, 1, 0);
+			path2.appendStep(2, 0, 1);
+			// robot 1 can give way - its nodes next to the path are taken over too
+			Set<Integer> displaced = table.replacePath(2, path2, true, owner -> true);
+			assertEquals(Collections.singleton(1), displaced);
+			assertEquals(2, table.getOwner(2, 0, 4));
+			
+			// new path of robot 1 replaces the old one
+			Path path3 = new Path();
+			path3.appendStep(1, 1, 0);
+			path3.appendStep(2, 1, 1);
+			assertEquals(Collections.singleton(2), table.replacePath(1, path3));
+			assertEquals(TaggedReservationTable.NO_OWNER, table.getOwner(1, 0, 1));
+			assertEquals(1, table.getOwner(2, 1, 5));
+			assertEquals(2, table.getOwner(2, 0, 5));
+			
+			// time window moves forward with the owners
+			table.advance();
+			assertEquals(1, table.getOwner(2, 1, 0));
+			assertEquals(TaggedReservationTable.NO_OWNER, table.getOwner(2, 1, 5));
+			assertTrue(table.reserve(1, 2, 1, 5));
+			table.release(2);
+			for (int t = 0; t < 6; t++) {
+				assertEquals(TaggedReservationTable.NO_OWNER, table.getOwner(2, 0, t));
+				assertEquals(1, table.getOwner(2, 1, t));
+			}
+		}
+	}
+	
+	@Test
+	public void testReplacePathNextToHigherPriority() {
+		for (boolean sparseTable : new boolean[]{false, true}) {
+			TaggedReservationTable table = sparseTable ? new SparseReservationTable(5, 5, 6, 2) : new RollingReservationTable(5, 5, 6);
+			table.setBlocked(new TileMap(5, 5));
+			// robot 1 has higher priority and keeps its plan
+			Path path1 = new Path();
+			path1.appendStep(0, 0, 0);
+			path1.appendStep(1, 0, 1);
+			path1.appendStep(2, 0, 2);
+			path1.appendStep(3, 0, 3);
+			table.replacePath(1, path1);
+			// robot 2 passes the cell (3, 0) right before robot 1 enters it
+			Path path2 = new Path();
+			path2.appendStep(3, 2, 0);
+			path2.appendStep(3, 1, 1);
+			path2.appendStep(3, 0, 2);
+			path2.appendStep(4, 0, 3);
+			assertTrue(table.replacePath(2, path2, true, owner -> owner != 1).isEmpty());
+			assertEquals(1, table.getOwner(3, 0, 3));
+			assertEquals(2, table.getOwner(3, 0, 2));
+			// robot 2 is replanned
+			table.release(2);
+			for (int t = 3; t < 6; t++) {
+				assertEquals(1, table.getOwner(3, 0, t));
+			}
+			assertEquals(1, table.getOwner(2, 0, 3));
+		}
+	}
+	
+	@Test
+	public void testOverlay() {
+		TileMap map = new TileMap(6, 6);
+		map.setCell(5, 5, true);
+		RollingReservationTable base = new RollingReservationTable(6, 6, 5);
+		base.setBlocked(map);
+		Path path1 = new Path();
+		path1.appendStep(0, 0, 0);
+		path1.appendStep(1, 0, 1);
+		base.replacePath(1, path1);
+		base.setBlocked(3, 3, 2);
+		
+		ReservationOverlay overlay = new ReservationOverlay(base, 8);
+		assertTrue(overlay.isBlocked(5, 5, 0));
+		assertTrue(overlay.isBlocked(3, 3, 2));
+		assertEquals(1, overlay.getOwner(1, 0, 4));
+		Path path2 = new Path();
+		path2.appendStep(2, 0, 0);
+		path2.appendStep(1, 0, 1);
+		assertEquals(Collections.singleton(1), overlay.replacePath(2, path2, true, owner -> true));
+		assertEquals(2, overlay.getOwner(1, 0, 3));
+		overlay.release(1);
+		assertFalse(overlay.isBlocked(0, 0, 0));
+		assertEquals(2, overlay.getOwner(1, 0, 1));
+		assertTrue(overlay.isFreeFrom(1, 0, 0, owner -> owner != 2));
+		assertFalse(overlay.isFreeFrom(1, 0, 0));
+		// base is not changed until commit
+		assertEquals(1, base.getOwner(1, 0, 3));
+		assertEquals(1, base.getOwner(0, 0, 0));
+		overlay.commit();
+		assertEquals(TaggedReservationTable.NO_OWNER, base.getOwner(1, 0, 0));
+		for (int t = 1; t < 5; t++) {
+			assertEquals(2, base.getOwner(1, 0, t));
+			assertEquals(TaggedReservationTable.NO_OWNER, base.getOwner(0, 0, t));
+		}
+		assertTrue(base.isBlocked(3, 3, 2));
+	}
+	
+	@Test
+	public void testCreateByDensity() {
+		TileMap map = new TileMap(1000, 1000);
+		map.setCell(10, 20, true);
+		ReservationTable table = ReservationTable.create(map, 32, 100);
+		assertTrue(table instanceof SparseReservationTable);
+		assertTrue(table.isBlocked(10, 20));
+		assertTrue(table.isBlocked(10, 20, 31));
+		assertFalse(table.isFreeFrom(10, 20, 5));
+		table.setBlocked(999, 999, 31);
+		assertTrue(table.isBlocked(999, 999, 31));
+		assertFalse(table.isBlocked(999, 999, 30));
+		
+		table = ReservationTable.create(new TileMap(15, 15), 20, 100);
+		assertTrue(table instanceof DenseReservationTable);
+	}
+	
+	@Test
+	public void testSingleReservations() {
+		for (int tDim : new int[]{1, 10, 64, 65, 130}) {
+			ReservationTable table = newTable(3, 2, tDim);
+			table.setBlocked(1, 1, tDim - 1);
+			table.setBlocked(1, 1, tDim); // out of the window - ignored
+			table.setBlocked(3, 0, 0); // out of the map - ignored
+			for (int t = 0; t < tDim; t++) {
+				assertEquals(t == tDim - 1, table.isBlocked(1, 1, t));
+				assertFalse(table.isBlocked(0, 1, t));
+				assertFalse(table.isBlocked(2, 1, t));
+			}
+			assertEquals(tDim == 1, table.isBlocked(1, 1));
+			assertFalse(table.isFreeFrom(1, 1, 0));
+			assertTrue(table.isFreeFrom(1, 1, tDim));
+			assertTrue(table.isFreeFrom(0, 1, 0));
+		}
+	}
+	
+	@Test
+	public void testBlockedAllTheTime() {
+		for (int tDim : new int[]{1, 10, 64, 65, 130}) {
+			TileMap map = new TileMap(3, 2);
+			map.setCell(2, 0, true);
+			ReservationTable table = newTable(3, 2, tDim);
+			table.setBlocked(map);
+			table.setBlocked(0, 0);
+			assertTrue(table.isBlocked(0, 0));
+			assertTrue(table.isBlocked(2, 0));
+			assertFalse(table.isBlocked(1, 0));
+			assertFalse(table.isBlocked(0, 1));
+			for (int t = 0; t < tDim; t++) {
+				assertTrue(table.isBlocked(2, 0, t));
+				assertFalse(table.isFreeFrom(2, 0, t));
+				assertFalse(table.isBlocked(1, 0, t));
+			}
+		}
+	}
+	
+	@Test
+	public void testTimeRanges() {
+		int tDim = 200;
+		int[][] ranges = {{0, 1}, {5, 64}, {63, 65}, {64, 128}, {70, 200}, {3, 150}, {-5, 300}};
+		for (int[] range : ranges) {
+			ReservationTable table = newTable(2, 2, tDim);
+			table.setBlocked(1, 0, range[0], range[1]);
+			int from = Math.max(range[0], 0);
+			int to = Math.min(range[1], tDim);
+			for (int t = 0; t < tDim; t++) {
+				assertEquals("t = " + t, t >= from && t < to, table.isBlocked(1, 0, t));
+				assertEquals("t = " + t, t >= to, table.isFreeFrom(1, 0, t));
+				assertFalse(table.isBlocked(0, 0, t));
+				assertFalse(table.isBlocked(1, 1, t));
+			}
+			assertEquals(from == 0 && to == tDim, table.isBlocked(1, 0));
+		}
+	}
+	
+}
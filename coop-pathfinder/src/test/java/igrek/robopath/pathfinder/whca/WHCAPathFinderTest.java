@@ -6,12 +6,15 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import igrek.robopath.common.Point;
 import igrek.robopath.common.TileMap;
+import igrek.robopath.metrics.PlanningMetrics;
 import igrek.robopath.simulation.whca.MobileRobot;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -46,6 +49,104 @@ public class WHCAPathFinderTest {
 				.toString());
 	}
 	
+	@Test
+	public void testSearchMetrics() {
+		TileMap map = new TileMap(3, 3);
+		map.setCell(1, 1, true);
+		DenseReservationTable reservationTable = new DenseReservationTable(3, 3, 4);
+		reservationTable.setBlocked(map);
+		WHCAPathFinder pathFinder = new WHCAPathFinder(reservationTable, map);
+		PlanningMetrics metrics = new PlanningMetrics();
+		pathFinder.setMetrics(metrics);
+		pathFinder.findPath(0, 0, 2, 0);
+		assertEquals(1, metrics.getSearches());
+		assertTrue(metrics.getNodesExpanded() > 0);
+		assertTrue(metrics.getNodesGenerated() >= metrics.getNodesExpanded() - 1);
+		assertEquals(metrics.getNodesExpanded() + metrics.getNodesGenerated(), metrics.getHeapOperations());
+		assertTrue(metrics.getReservationLookups() > 0);
+		// distance field to the target is computed once, then reused
+		assertEquals(1, metrics.getHeuristicMisses());
+		pathFinder.findPath(0, 2, 2, 0);
+		assertEquals(2, metrics.getSearches());
+		assertEquals(1, metrics.getHeuristicHits());
+		assertEquals(PlanningMetrics.csvHeader().split(",").length, metrics.csvRow().split(",").length);
+		metrics.reset();
+		assertEquals(0, metrics.getNodesExpanded());
+	}
+	
+	@Test
+	public void testPathValidation() {
+		TileMap map = new TileMap(3, 3);
+		map.setCell(1, 1, true);
+		DenseReservationTable reservationTable = new DenseReservationTable(3, 3, 4);
+		reservationTable.setBlocked(map);
+		WHCAPathFinder pathFinder = new WHCAPathFinder(reservationTable, map);
+		Path path = pathFinder.findPath(0, 0, 2, 0);
+		assertEquals("[(0, 0, 0), (1, 0, 1), (2, 0, 2), (2, 0, 3)]", path.toString());
+		assertTrue(pathFinder.isValidPath(path));
+		// planned before another robot has reserved its path
+		reservationTable.setBlocked(1, 0, 1);
+		assertFalse(pathFinder.isValidPath(path));
+		reservationTable = new DenseReservationTable(3, 3, 4);
+		reservationTable.setBlocked(map);
+		reservationTable.setBlocked(2, 0, 3);
+		pathFinder.setReservationTable(reservationTable);
+		assertFalse(pathFinder.isValidPath(path));
+	}
+	
+	@Test
+	public void testReusedFinder() {
+		Random random = new Random(11);
+		WHCAPathFinder reused = new WHCAPathFinder(null, null);
+		for (int i = 0; i < 200; i++) {
+			int size = 4 + random.nextInt(10);
+			int tDim = 1 + random.nextInt(12);
+			TileMap map = new TileMap(size, size);
+			DenseReservationTable reservationTable = new DenseReservationTable(size, size, tDim);
+			for (int j = 0; j < size * size / 5; j++) {
+				map.setCell(random.nextInt(size), random.nextInt(size), true);
+				reservationTable.setBlocked(random.nextInt(size), random.nextInt(size), random.nextInt(tDim));
+			}
+			int sx = random.nextInt(size);
+			int sy = random.nextInt(size);
+			int tx = random.nextInt(size);
+			int ty = random.nextInt(size);
+			map.setCell(sx, sy, false);
+			map.setCell(tx, ty, false);
+			reservationTable.setBlocked(map);
+			// buffers of the previous searches (other sizes, time windows and reservations) mustn't affect the result
+			reused.setReservationTable(reservationTable);
+			reused.setMap(map);
+			Path path = reused.findPath(sx, sy, tx, ty);
+			Path expected = new WHCAPathFinder(reservationTable, map).findPath(sx, sy, tx, ty);
+			assertEquals(String.valueOf(expected), String.valueOf(path));
+		}
+	}
+	
+	@Test
+	public void testLargeMapSearchState() {
+		int tDim = 32;
+		TileMap map = new TileMap(1000, 1000);
+		map.setCell(505, 500, true);
+		SparseReservationTable reservationTable = new SparseReservationTable(1000, 1000, tDim, 2);
+		reservationTable.setBlocked(map);
+		reservationTable.setBlocked(502, 500, 2);
+		WHCAPathFinder pathFinder = new WHCAPathFinder(reservationTable, map);
+		Path path = pathFinder.findPath(500, 500, 510, 500);
+		assertNotNull(path);
+		assertEquals(tDim, path.getLength());
+		assertTrue(path.toString().startsWith("[(500, 500, 0)"));
+		assertTrue(path.toString().endsWith("(510, 500, 31)]"));
+		assertTrue(pathFinder.isValidPath(path));
+		// next to the map corner
+		path = pathFinder.findPath(999, 0, 990, 3);
+		assertTrue(path.toString().startsWith("[(999, 0, 0)"));
+		assertTrue(path.toString().endsWith("(990, 3, 31)]"));
+		// search state is kept only for the cells reachable within the time window
+		int box = 2 * tDim - 1;
+		assertTrue(pathFinder.nodesCapacity() <= box * box * tDim);
+	}
+	
 	@Test
 	public void test2RobotsPath() {
 		/*
@@ -245,9 +346,8 @@ public class WHCAPathFinderTest {
 		assertTrue(path.getLength() > 0);
 		try {
 			for (int i = 0; i < path.getLength(); i++) {
-				Path.Step step = path.getStep(i);
-				assertEquals(expectedX, step.getX());
-				assertEquals(expectedY, step.getY());
+				assertEquals(expectedX, path.getX(i));
+				assertEquals(expectedY, path.getY(i));
 			}
 		} catch (AssertionError e) {
 			String message = "Expected static position: (" + expectedX + ", " + expectedY + ")\n";
@@ -265,7 +365,7 @@ public class WHCAPathFinderTest {
 	private List<Path> findPaths(TileMap map, List<MobileRobot> robots, int tDim) {
 		List<Path> paths = new ArrayList<>();
 		TileMap map2 = new TileMap(map);
-		ReservationTable reservationTable = new ReservationTable(map2.getWidthInTiles(), map2.getHeightInTiles(), tDim);
+		ReservationTable reservationTable = new DenseReservationTable(map2.getWidthInTiles(), map2.getHeightInTiles(), tDim);
 		map2.foreach((x, y, occupied) -> {
 			if (occupied)
 				reservationTable.setBlocked(x, y);
@@ -285,18 +385,17 @@ public class WHCAPathFinderTest {
 					int t = 0;
 					reservationTable.setBlocked(start.x, start.y, t);
 					reservationTable.setBlocked(start.x, start.y, t + 1);
-					Path.Step step = null;
 					for (int i = 1; i < path.getLength(); i++) {
-						step = path.getStep(i);
-						robot.enqueueMove(step.getX(), step.getY());
+						robot.enqueueMove(path.getX(i), path.getY(i));
 						t++;
-						reservationTable.setBlocked(step.getX(), step.getY(), t);
-						reservationTable.setBlocked(step.getX(), step.getY(), t + 1);
+						reservationTable.setBlocked(path.getX(i), path.getY(i), t);
+						reservationTable.setBlocked(path.getX(i), path.getY(i), t + 1);
 					}
 					// fill the rest with last position
-					if (step != null) {
+					if (path.getLength() > 1) {
+						int last = path.getLength() - 1;
 						for (int i = t + 1; i < reservationTable.getTimeDimension(); i++) {
-							reservationTable.setBlocked(step.getX(), step.getY(), i);
+							reservationTable.setBlocked(path.getX(last), path.getY(last), i);
 						}
 					}
 				} else {
@@ -0,0 +1,78 @@
+package igrek.robopath.simulation.potentialfield;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ObstacleForceFieldTest {
+	
+	@Test
+	public void testInterpolatedForce() {
+		Random random = new Random(1);
+		TestTileMap map = new TestTileMap(12, 10);
+		for (int i = 0; i < 15; i++) {
+			map.set(random.nextInt(12), random.nextInt(10), TileCellType.BLOCKED);
+		}
+		ObstacleForceField field = ObstacleForceField.of(map, 4);
+		double[] force = new double[2];
+		double[] expected = new double[2];
+		for (int i = 0; i < 1000; i++) {
+			double px = random.nextDouble() * 12;
+			double py = random.nextDouble() * 10;
+			if (nearObstacle(map, px, py))
+				continue;
+			exactForce(map, px, py, expected);
+			field.forceAt(px, py, force);
+			double tolerance = 0.05 * Math.hypot(expected[0], expected[1]) + 0.05;
+			assertEquals(expected[0], force[0], tolerance);
+			assertEquals(expected[1], force[1], tolerance);
+		}
+	}
+	
+	@Test
+	public void testUpdates() {
+		TestTileMap map = new TestTileMap(10, 10);
+		ObstacleForceField field = ObstacleForceField.of(map, 2);
+		double[] force = new double[2];
+		field.forceAt(5, 5, force);
+		assertEquals(0, force[0], 0);
+		assertEquals(0, force[1], 0);
+		// obstacle on the left pushes to the right
+		field.addObstacle(3, 4);
+		field.forceAt(5, 5, force);
+		assertEquals(true, force[0] > 0);
+		field.removeObstacle(3, 4);
+		field.forceAt(5, 5, force);
+		assertEquals(0, force[0], 1e-9);
+		assertEquals(0, force[1], 1e-9);
+	}
+	
+	private boolean nearObstacle(TestTileMap map, double px, double py) {
+		for (int x = (int) px - 1; x <= (int) px + 1; x++) {
+			for (int y = (int) py - 1; y <= (int) py + 1; y++) {
+				if (x >= 0 && y >= 0 && x < 12 && y < 10 && map.blocked(x, y))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	private void exactForce(TestTileMap map, double px, double py, double[] out) {
+		double[] force = new double[2];
+		out[0] = 0;
+		out[1] = 0;
+		for (int x = 0; x < map.getWidthInTiles(); x++) {
+			for (int y = 0; y < map.getHeightInTiles(); y++) {
+				if (map.blocked(x, y)) {
+					ObstacleForceField.obstacleForce(px, py, x, y, force);
+					out[0] += force[0];
+					out[1] += force[1];
+				}
+			}
+		}
+	}
+	
+}
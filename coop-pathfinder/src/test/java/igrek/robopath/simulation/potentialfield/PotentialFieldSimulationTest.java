@@ -0,0 +1,118 @@
+package igrek.robopath.simulation.potentialfield;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import igrek.robopath.simulation.potentialfield.robot.MobileRobot;
+import igrek.robopath.simulation.potentialfield.robot.RobotsPhysics;
+import igrek.robopath.simulation.potentialfield.robot.Vector2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class PotentialFieldSimulationTest {
+	
+	@Test
+	public void testFixedTimeSteps() {
+		TestTileMap map = new TestTileMap(10, 10);
+		map.set(5, 4, TileCellType.BLOCKED);
+		PotentialFieldSimulation substeps = simulation(map);
+		PotentialFieldSimulation steps = simulation(map);
+		// frame time is divided into the fixed steps, the rest waits for the next frame
+		assertEquals(4, substeps.timeLapse(0.11));
+		assertEquals(0, substeps.timeLapse(0.01));
+		assertEquals(1, substeps.timeLapse(0.01));
+		for (int i = 0; i < 5; i++) {
+			steps.step(0.025);
+		}
+		for (int i = 0; i < 2; i++) {
+			Vector2 expected = steps.getRobots().get(i).getPosition();
+			assertEquals(expected, substeps.getRobots().get(i).getPosition());
+		}
+		// robot without target doesn't move
+		assertEquals(new Vector2(8, 8), steps.getRobots().get(2).getPosition());
+		// robot goes to the target not faster than max speed
+		for (int i = 0; i < 100; i++) {
+			steps.step(0.025);
+			assertTrue(steps.getRobots().get(0).getVelocity().length() <= MobileRobot.MAX_SPEED + 1e-9);
+		}
+		assertTrue(steps.getRobots().get(0).getPosition().distance(new Vector2(8, 2)) < 1);
+	}
+	
+	@Test
+	public void testRobotsRepulsion() {
+		PotentialFieldSimulation simulation = new PotentialFieldSimulation(ObstacleForceField.of(new TestTileMap(10, 5), 2));
+		MobileRobot robot1 = simulation.addRobot(new Vector2(2, 2.5), null);
+		MobileRobot robot2 = simulation.addRobot(new Vector2(8, 2.5), null);
+		robot1.setTarget(new Vector2(8, 2.6));
+		robot2.setTarget(new Vector2(2, 2.4));
+		// robots going against each other avoid the collision
+		double minDistance = Double.MAX_VALUE;
+		for (int i = 0; i < 600; i++) {
+			simulation.step(0.01);
+			minDistance = Math.min(minDistance, robot1.getPosition().distance(robot2.getPosition()));
+		}
+		assertTrue(minDistance > 0.3);
+		// and they pass each other
+		assertTrue(robot1.getPosition().distance(robot1.getTarget()) < 0.2);
+		assertTrue(robot2.getPosition().distance(robot2.getTarget()) < 0.2);
+	}
+	
+	@Test
+	public void testParallelStep() {
+		Random random = new Random(1);
+		TestTileMap map = new TestTileMap(40, 30);
+		for (int i = 0; i < 100; i++) {
+			map.set(random.nextInt(40), random.nextInt(30), TileCellType.BLOCKED);
+		}
+		PotentialFieldSimulation sequential = new PotentialFieldSimulation(ObstacleForceField.of(map, 4));
+		PotentialFieldSimulation parallel = new PotentialFieldSimulation(ObstacleForceField.of(map, 4));
+		sequential.setParallel(false);
+		parallel.setPool(new ForkJoinPool(4));
+		for (int i = 0; i < 2000; i++) {
+			Vector2 position = new Vector2(random.nextDouble() * 40, random.nextDouble() * 30);
+			Vector2 target = new Vector2(random.nextDouble() * 40, random.nextDouble() * 30);
+			sequential.addRobot(position, null).setTarget(target);
+			parallel.addRobot(position, null).setTarget(target);
+		}
+		for (int i = 0; i < 20; i++) {
+			sequential.step(0.02);
+			parallel.step(0.02);
+		}
+		for (int i = 0; i < 2000; i++) {
+			assertEquals(sequential.getRobots().get(i).getPosition(), parallel.getRobots().get(i).getPosition());
+		}
+	}
+	
+	@Test
+	public void testRemovingRobots() {
+		RobotsPhysics physics = new RobotsPhysics(1);
+		MobileRobot robot1 = physics.add(new Vector2(1, 1), null);
+		MobileRobot robot2 = physics.add(new Vector2(2, 2), null);
+		MobileRobot robot3 = physics.add(new Vector2(3, 3), null);
+		robot3.setTarget(new Vector2(0, 3));
+		physics.remove(robot1);
+		assertEquals(2, physics.size());
+		// the last robot takes the free index, views stay valid
+		assertEquals(0, robot3.getIndex());
+		assertEquals(new Vector2(3, 3), robot3.getPosition());
+		assertEquals(new Vector2(0, 3), robot3.getTarget());
+		assertEquals(new Vector2(2, 2), robot2.getPosition());
+		assertNull(robot2.getTarget());
+		assertEquals(-1, robot1.getIndex());
+	}
+	
+	private PotentialFieldSimulation simulation(TestTileMap map) {
+		PotentialFieldSimulation simulation = new PotentialFieldSimulation(ObstacleForceField.of(map, 4));
+		simulation.setTimeStep(0.025);
+		simulation.addRobot(new Vector2(2, 2), null).setTarget(new Vector2(8, 2));
+		simulation.addRobot(new Vector2(3, 6), null).setTarget(new Vector2(6, 3));
+		simulation.addRobot(new Vector2(8, 8), null);
+		return simulation;
+	}
+	
+}
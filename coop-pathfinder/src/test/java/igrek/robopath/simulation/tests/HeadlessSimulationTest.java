@@ -0,0 +1,63 @@
+package igrek.robopath.simulation.tests;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import igrek.robopath.mazegenerator.NoNextFieldException;
+import igrek.robopath.simulation.headless.HeadlessSimulation;
+import igrek.robopath.simulation.headless.Scenario;
+import igrek.robopath.simulation.headless.SimulationResult;
+import igrek.robopath.simulation.headless.StepState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeadlessSimulationTest {
+	
+	@Test
+	public void testSameSeedSameRun() {
+		for (Scenario.Algorithm algorithm : Scenario.Algorithm.values()) {
+			Scenario scenario = new Scenario();
+			scenario.algorithm = algorithm;
+			scenario.mapSizeW = 11;
+			scenario.mapSizeH = 11;
+			scenario.robotsCount = 4;
+			scenario.seed = 7;
+			List<String> states1 = new ArrayList<>();
+			List<String> states2 = new ArrayList<>();
+			SimulationResult result1 = new HeadlessSimulation(scenario).run(state -> states1.add(state.getPositions().toString()));
+			SimulationResult result2 = new HeadlessSimulation(scenario).run(state -> states2.add(state.getPositions().toString()));
+			assertEquals(result1.getSteps(), result2.getSteps());
+			assertEquals(result1.isSuccessful(), result2.isSuccessful());
+			assertEquals(states1, states2);
+			assertTrue(result1.getSteps() <= scenario.getMaxSteps());
+		}
+	}
+	
+	@Test
+	public void testStepsLimit() {
+		Scenario scenario = new Scenario();
+		scenario.maze = false;
+		scenario.robotsCount = 3;
+		scenario.maxSteps = 2;
+		HeadlessSimulation simulation = new HeadlessSimulation(scenario);
+		StepState state = simulation.step();
+		assertEquals(1, state.getStep());
+		assertEquals(3, state.getPositions().size());
+		SimulationResult result = simulation.run(null);
+		assertEquals(2, result.getSteps());
+	}
+	
+	@Test(expected = NoNextFieldException.class)
+	public void testTooManyRobots() {
+		Scenario scenario = new Scenario();
+		scenario.mapSizeW = 3;
+		scenario.mapSizeH = 3;
+		scenario.maze = false;
+		scenario.robotsCount = 10;
+		new HeadlessSimulation(scenario);
+	}
+	
+}
@@ -68,7 +68,7 @@ public class LRAEffectivenessTest {
 		params.mapSizeW = mapW;
 		params.mapSizeH = mapH;
 		params.robotsCount = robotsCount;
-		LRAController controller = new LRAController(null, params);
+		LRAController controller = new LRAController(params);
 		controller.setRandom(random);
 		controller.setMazegen(new MazeGenerator(random));
 		
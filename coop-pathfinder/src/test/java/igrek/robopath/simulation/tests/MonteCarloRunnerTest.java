@@ -0,0 +1,57 @@
+package igrek.robopath.simulation.tests;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import igrek.robopath.simulation.headless.MonteCarloRunner;
+import igrek.robopath.simulation.headless.Scenario;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MonteCarloRunnerTest {
+	
+	@Test
+	public void testSameResultsForAnyThreadsCount() throws IOException {
+		List<String> table1 = runTable(1, new StringWriter());
+		StringWriter out = new StringWriter();
+		List<String> table3 = runTable(3, out);
+		assertEquals(2, table1.size());
+		assertTrue(table1.get(0).startsWith("map 5x5, robots 3, successfulls: "));
+		// times may differ
+		assertEquals(withoutTimes(table1), withoutTimes(table3));
+		// header and one line per scenario
+		assertEquals(1 + 2 * 4, out.toString().split("\n").length);
+	}
+	
+	private List<String> runTable(int threads, StringWriter out) throws IOException {
+		MonteCarloRunner runner = new MonteCarloRunner();
+		runner.masterSeed = 42;
+		runner.simsCount = 4;
+		runner.threads = threads;
+		List<Scenario> rows = new ArrayList<>();
+		for (int robots : new int[]{3, 4}) {
+			Scenario row = new Scenario();
+			row.mapSizeW = 5;
+			row.mapSizeH = 5;
+			row.robotsCount = robots;
+			row.maze = false;
+			rows.add(row);
+		}
+		return runner.run(rows, out);
+	}
+	
+	private List<String> withoutTimes(List<String> table) {
+		String[] lines = new String[table.size()];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = table.get(i).substring(0, table.get(i).indexOf(", time:"));
+		}
+		return Arrays.asList(lines);
+	}
+	
+}
@@ -177,7 +177,7 @@ public class PlanningEffectivenessTest {
 		params.mapSizeW = mapW;
 		params.mapSizeH = mapH;
 		params.robotsCount = robotsCount;
-		LRAController controller = new LRAController(null, params);
+		LRAController controller = new LRAController(params);
 		controller.setRandom(random);
 		controller.setMazegen(new MazeGenerator(random));
 		return controller;
@@ -188,7 +188,7 @@ public class PlanningEffectivenessTest {
 		params.mapSizeW = mapW;
 		params.mapSizeH = mapH;
 		params.robotsCount = robotsCount;
-		WHCAController controller = new WHCAController(null, params);
+		WHCAController controller = new WHCAController(params);
 		controller.setRandom(random);
 		controller.setMazegen(new MazeGenerator(random));
 		return controller;
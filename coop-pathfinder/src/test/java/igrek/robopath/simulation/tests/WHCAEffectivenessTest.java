@@ -71,7 +71,7 @@ public class WHCAEffectivenessTest {
 		params.mapSizeW = mapW;
 		params.mapSizeH = mapH;
 		params.robotsCount = robotsCount;
-		WHCAController controller = new WHCAController(null, params);
+		WHCAController controller = new WHCAController(params);
 		controller.setRandom(random);
 		controller.setMazegen(new MazeGenerator(random));
 		
@@ -0,0 +1,49 @@
+package igrek.robopath.simulation.whca;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import igrek.robopath.common.Point;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RobotClustersTest {
+	
+	private static final int T = 8;
+	
+	@Test
+	public void testRangeBoundary() {
+		// distance 2T - the robots may meet within the time window
+		List<List<MobileRobot>> clusters = RobotClusters.split(robots(new Point(3, 5), new Point(3 + 2 * T, 5 + 4)), 2 * T);
+		assertEquals(1, clusters.size());
+		clusters = RobotClusters.split(robots(new Point(3, 5), new Point(3 + 2 * T + 1, 5)), 2 * T);
+		assertEquals(2, clusters.size());
+		clusters = RobotClusters.split(robots(new Point(20, 40), new Point(25, 40 - 2 * T - 1)), 2 * T);
+		assertEquals(2, clusters.size());
+	}
+	
+	@Test
+	public void testChainedRobots() {
+		MobileRobot r0 = new MobileRobot(new Point(0, 0), null, 0, 0);
+		MobileRobot r1 = new MobileRobot(new Point(100, 0), null, 1, 1);
+		MobileRobot r2 = new MobileRobot(new Point(2 * T, 0), null, 2, 2);
+		MobileRobot r3 = new MobileRobot(new Point(4 * T, 1), null, 3, 3);
+		// r0 - r2 - r3 are joined through r2, the priority order is kept
+		List<List<MobileRobot>> clusters = RobotClusters.split(Arrays.asList(r0, r1, r2, r3), 2 * T);
+		assertEquals(2, clusters.size());
+		assertEquals(Arrays.asList(r0, r2, r3), clusters.get(0));
+		assertEquals(Arrays.asList(r1), clusters.get(1));
+	}
+	
+	private List<MobileRobot> robots(Point... positions) {
+		MobileRobot[] robots = new MobileRobot[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			robots[i] = new MobileRobot(positions[i], null, i, i);
+		}
+		return Arrays.asList(robots);
+	}
+	
+}
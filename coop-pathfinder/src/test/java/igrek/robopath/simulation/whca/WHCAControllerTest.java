@@ -0,0 +1,183 @@
+package igrek.robopath.simulation.whca;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import igrek.robopath.common.PackedPath;
+import igrek.robopath.common.Point;
+import igrek.robopath.mazegenerator.MazeGenerator;
+import igrek.robopath.pathfinder.whca.TaggedReservationTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class WHCAControllerTest {
+	
+	@Test
+	public void testStepSummaryWithoutPaths() {
+		WHCASimulationParams params = new WHCASimulationParams();
+		params.mapSizeW = 5;
+		params.mapSizeH = 5;
+		WHCAController controller = new WHCAController(params);
+		controller.setRandom(new Random(1));
+		// target inside the walls - no path, the other robot has no target
+		for (int i = 0; i < 5; i++) {
+			controller.getMap().setCell(2, i, true);
+		}
+		MobileRobot robot = controller.createMobileRobot(new Point(0, 0));
+		robot.setTarget(new Point(4, 4));
+		controller.createMobileRobot(new Point(0, 4));
+		controller.setStepSummary(true);
+		controller.stepSimulation();
+		assertEquals(new Point(0, 0), robot.getPosition());
+	}
+	
+	@Test
+	public void testIncrementalReplanning() {
+		for (int seed : new int[]{2, 5}) {
+			for (boolean incremental : new boolean[]{false, true}) {
+				WHCAController controller = seededScenario(seed, 16, 12, 8);
+				controller.setIncrementalReplanning(incremental);
+				for (int step = 0; step < 60; step++) {
+					Map<Integer, Integer> previous = cells(controller);
+					controller.stepSimulation();
+					assertNoCollisions(previous, cells(controller));
+					assertPlansReserved(controller);
+				}
+				assertEquals(0, controller.getMetrics().getVertexConflicts());
+				assertEquals(0, controller.getMetrics().getSwapConflicts());
+			}
+		}
+	}
+	
+	@Test
+	public void testSpatialClustering() {
+		for (boolean incremental : new boolean[]{false, true}) {
+			WHCAController sequential = seededScenario(3, 48, 20, 4);
+			sequential.setIncrementalReplanning(incremental);
+			WHCAController clustered = seededScenario(3, 48, 20, 4);
+			clustered.setIncrementalReplanning(incremental);
+			clustered.setSpatialClustering(true);
+			int maxClusters = 0;
+			for (int step = 0; step < 40; step++) {
+				sequential.stepSimulation();
+				clustered.stepSimulation();
+				maxClusters = Math.max(maxClusters, clustered.getClustersCount());
+				assertEquals("step " + step, plans(sequential), plans(clustered));
+			}
+			assertTrue(maxClusters > 1);
+		}
+	}
+	
+	@Test
+	public void testParallelPlanning() {
+		for (boolean incremental : new boolean[]{false, true}) {
+			WHCAController sequential = seededScenario(3, 20, 32, 8);
+			sequential.setIncrementalReplanning(incremental);
+			WHCAController parallel = seededScenario(3, 20, 32, 8);
+			parallel.setIncrementalReplanning(incremental);
+			parallel.setParallelPlanning(true);
+			long replanned = 0;
+			long retried = 0;
+			for (int step = 0; step < 40; step++) {
+				Map<Integer, Integer> previous = cells(parallel);
+				sequential.stepSimulation();
+				parallel.stepSimulation();
+				replanned += parallel.getReplannedCount();
+				retried += parallel.getRetriedCount();
+				assertEquals("step " + step, plans(sequential), plans(parallel));
+				assertNoCollisions(previous, cells(parallel));
+			}
+			// some of the optimistic paths are accepted
+			assertTrue(retried < replanned);
+		}
+	}
+	
+	/**
+	 * @return positions and planned moves of all the robots
+	 */
+	private String plans(WHCAController controller) {
+		StringBuilder plans = new StringBuilder();
+		for (MobileRobot robot : controller.getRobots()) {
+			plans.append(robot.getId()).append(": ").append(robot.getPosition()).append(" ").append(robot.getMovesQue()).append("\n");
+		}
+		return plans.toString();
+	}
+	
+	/**
+	 * random obstacles and robots with the automatically assigned targets
+	 */
+	private WHCAController seededScenario(int seed, int mapSize, int robotsCount, int timeDimension) {
+		Random random = new Random(seed);
+		WHCASimulationParams params = new WHCASimulationParams();
+		params.mapSizeW = mapSize;
+		params.mapSizeH = mapSize;
+		params.robotsCount = robotsCount;
+		params.robotAutoTarget = true;
+		params.timeDimension = timeDimension;
+		WHCAController controller = new WHCAController(params);
+		controller.setRandom(random);
+		controller.setMazegen(new MazeGenerator(random));
+		controller.setStepSummary(false);
+		for (int i = 0; i < mapSize * mapSize / 8; i++) {
+			controller.getMap().setCell(random.nextInt(mapSize), random.nextInt(mapSize), true);
+		}
+		controller.placeRobots();
+		controller.randomTargetPressed();
+		return controller;
+	}
+	
+	/**
+	 * robot id -> index of its cell
+	 */
+	private Map<Integer, Integer> cells(WHCAController controller) {
+		Map<Integer, Integer> cells = new HashMap<>();
+		for (MobileRobot robot : controller.getRobots()) {
+			cells.put(robot.getId(), robot.getY() * controller.getMap().getWidthInTiles() + robot.getX());
+		}
+		return cells;
+	}
+	
+	/**
+	 * robots never share a cell and never swap their cells
+	 */
+	private void assertNoCollisions(Map<Integer, Integer> previous, Map<Integer, Integer> current) {
+		Map<Integer, Integer> previousOwners = new HashMap<>();
+		for (Map.Entry<Integer, Integer> entry : previous.entrySet()) {
+			previousOwners.put(entry.getValue(), entry.getKey());
+		}
+		Set<Integer> occupied = new HashSet<>();
+		for (Map.Entry<Integer, Integer> entry : current.entrySet()) {
+			int id = entry.getKey();
+			int cell = entry.getValue();
+			assertTrue("vertex conflict in cell " + cell, occupied.add(cell));
+			Integer other = previousOwners.get(cell);
+			if (other != null && other != id)
+				assertFalse("robots " + id + " and " + other + " swapped", current.get(other).equals(previous.get(id)));
+		}
+	}
+	
+	/**
+	 * nodes of all the planned moves are reserved by their robots
+	 */
+	private void assertPlansReserved(WHCAController controller) {
+		TaggedReservationTable reservations = controller.getReservations();
+		for (MobileRobot robot : controller.getRobots()) {
+			if (robot.getTarget() == null)
+				continue;
+			assertEquals("robot " + robot.getId() + " at t = 0", robot.getId(), reservations.getOwner(robot.getX(), robot.getY(), 0));
+			PackedPath moves = robot.getMovesQue();
+			for (int i = 0; i < moves.getLength(); i++) {
+				assertEquals("robot " + robot.getId() + " at t = " + (i + 1), robot.getId(), reservations.getOwner(moves.getX(i), moves.getY(i), i + 1));
+			}
+		}
+	}
+	
+}